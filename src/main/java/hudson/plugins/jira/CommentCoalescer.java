@@ -0,0 +1,170 @@
+package hudson.plugins.jira;
+
+import hudson.plugins.jira.remote.JiraInteractionSession;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Collects the comments for the issues of a {@link JiraSite} for a while, and posts all
+ * comments an issue got from any job within that time as a single comment.
+ * <p>
+ * Comments which fail to be posted for a reason that may go away are queued again for another window,
+ * up to {@link #ATTEMPTS} times. Those still waiting when the site is replaced or Jenkins shuts down
+ * are posted right away, see {@link #flushAll()}.
+ */
+final class CommentCoalescer {
+    private final JiraSite site;
+    private final long windowMillis;
+
+    /**
+     * Comments waiting to be posted, by issue key. Guarded by {@code this}.
+     */
+    private final Map<String, Pending> pending = new HashMap<String, Pending>();
+
+    /**
+     * The comments waiting for an issue, and how often posting them failed.
+     */
+    private static final class Pending {
+        final Set<String> comments = new LinkedHashSet<String>();
+        int failures;
+    }
+
+    CommentCoalescer(JiraSite site, int windowSeconds) {
+        this.site = site;
+        this.windowMillis = TimeUnit.SECONDS.toMillis(windowSeconds);
+    }
+
+    /**
+     * Queues a comment for the given issue. The window of the issue starts with its first comment.
+     */
+    void add(String issueId, String comment) {
+        final String key = issueId.toUpperCase();
+        synchronized (this) {
+            Pending p = pending.get(key);
+            if (p != null) {
+                p.comments.add(comment);
+                return;
+            }
+            p = new Pending();
+            p.comments.add(comment);
+            pending.put(key, p);
+        }
+
+        SCHEDULER.schedule(new Runnable() {
+            public void run() {
+                flush(key);
+            }
+        }, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Number of issues with comments waiting to be posted.
+     */
+    synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Posts the comments of all issues right away, rather than at the end of their windows.
+     */
+    void flushAll() {
+        List<String> keys;
+        synchronized (this) {
+            keys = new ArrayList<String>(pending.keySet());
+        }
+        for (String key : keys) {
+            flush(key);
+        }
+    }
+
+    void flush(String issueId) {
+        Pending p;
+        synchronized (this) {
+            p = pending.remove(issueId);
+        }
+        if (p == null) {
+            return;
+        }
+        Set<String> comments = p.comments;
+
+        StringBuilder comment = new StringBuilder();
+        for (String c : comments) {
+            if (comment.length() > 0) {
+                comment.append('\n');
+            }
+            comment.append(c);
+        }
+
+        try {
+            JiraInteractionSession session = site.getSession();
+            if (session == null) {
+                LOGGER.warning("No remote access to " + site.getName() + " to add the comment for " + issueId);
+                requeue(issueId, p);
+                return;
+            }
+            session.addComment(issueId, comment.toString(), site.groupVisibility, site.roleVisibility);
+        } catch (Exception e) {
+            if (!JiraBulkTransition.isTransient(e)) {
+                // like a missing issue, or one the user can't see or comment on, trying again won't help
+                LOGGER.log(Level.WARNING, "JIRA refused the comment of " + comments.size() + " build(s) for " + issueId
+                        + ", looks like it is no valid issue or the user isn't allowed to comment on it", e);
+                return;
+            }
+            LOGGER.log(Level.WARNING, "Failed to add the comment of " + comments.size() + " build(s) to " + issueId, e);
+            requeue(issueId, p);
+        }
+    }
+
+    /**
+     * Queues the comments of a failed flush again, ahead of those added to the issue meanwhile,
+     * unless they failed too often already.
+     */
+    private void requeue(final String issueId, Pending p) {
+        if (site.isDestroyed()) {
+            LOGGER.warning("Dropping the comment of " + p.comments.size() + " build(s) for " + issueId
+                    + ", " + site.getName() + " was removed");
+            return;
+        }
+        if (++p.failures >= ATTEMPTS) {
+            LOGGER.warning("Dropping the comment of " + p.comments.size() + " build(s) for " + issueId
+                    + " after " + p.failures + " failed attempts");
+            return;
+        }
+        synchronized (this) {
+            Pending added = pending.put(issueId, p);
+            if (added != null) {
+                // a flush is scheduled for these already
+                p.comments.addAll(added.comments);
+                return;
+            }
+        }
+
+        SCHEDULER.schedule(new Runnable() {
+            public void run() {
+                flush(issueId);
+            }
+        }, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Number of times posting the comments of an issue is attempted.
+     */
+    static final int ATTEMPTS = Integer.getInteger(CommentCoalescer.class.getName() + ".attempts", 5);
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newScheduledThreadPool(4,
+            new NamingThreadFactory(new DaemonThreadFactory(), "JIRA comment coalescer"));
+
+    private static final Logger LOGGER = Logger.getLogger(CommentCoalescer.class.getName());
+}
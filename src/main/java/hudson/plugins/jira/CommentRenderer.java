@@ -0,0 +1,284 @@
+package hudson.plugins.jira;
+
+import hudson.Util;
+import hudson.model.AbstractBuild;
+import hudson.scm.ChangeLogSet;
+import hudson.scm.ChangeLogSet.AffectedFile;
+import hudson.scm.ChangeLogSet.Entry;
+import hudson.scm.RepositoryBrowser;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.google.common.base.Optional;
+
+/**
+ * Renders the comments {@link Updater} adds to the issues of a build.
+ * <p>
+ * The changelog is walked once to group the changes by issue key, and every change
+ * is rendered at most once, no matter how many issues it mentions.
+ */
+final class CommentRenderer {
+    private static final Template WIKI_TEMPLATE =
+            Template.compile("%6$s: Integrated in !%1$simages/16x16/%3$s! [%2$s|%4$s]\n%5$s");
+    private static final Template PLAIN_TEMPLATE =
+            Template.compile("%6$s: Integrated in %2$s (See [%4$s])\n%5$s");
+
+    /**
+     * {@code getRevision()} methods of {@link Entry} classes which don't implement {@link Entry#getCommitId()}.
+     */
+    private static final ConcurrentMap<Class<?>, Optional<Method>> REVISION_METHODS =
+            new ConcurrentHashMap<Class<?>, Optional<Method>>();
+
+    private final AbstractBuild<?, ?> build;
+    private final String jenkinsRootUrl;
+    private final boolean wikiStyle;
+    private final boolean recordScmChanges;
+
+    private final List<Entry> changes = new ArrayList<Entry>();
+    private final Map<String, List<Integer>> changesByKey = new HashMap<String, List<Integer>>();
+    private final String[] renderedChanges;
+    private RepositoryBrowser<?> repoBrowser;
+    private boolean repoBrowserResolved;
+
+    CommentRenderer(AbstractBuild<?, ?> build, String jenkinsRootUrl, boolean wikiStyle,
+                    boolean recordScmChanges, Pattern pattern) {
+        this.build = build;
+        this.jenkinsRootUrl = jenkinsRootUrl;
+        this.wikiStyle = wikiStyle;
+        this.recordScmChanges = recordScmChanges;
+
+        ChangeLogSet<? extends Entry> changeSet = build.getChangeSet();
+        JiraChangeLogIndex index = build.getAction(JiraChangeLogIndex.class);
+        if (index != null && !index.isBuiltWith(pattern)) {
+            index = null;
+        }
+        for (Entry change : changeSet) {
+            int i = changes.size();
+            changes.add(change);
+
+            JiraChangeLogIndex.EntryIssues indexed = index != null ? index.getEntry(changeSet, change) : null;
+            if (indexed != null) {
+                for (int k = 0; k < indexed.size(); k++) {
+                    addChange(indexed.getKey(k), i);
+                }
+            } else if (change.getMsg() != null) {
+                Matcher m = pattern.matcher(change.getMsg());
+                while (m.find()) {
+                    if (m.groupCount() >= 1) {
+                        addChange(m.group(1), i);
+                    }
+                }
+            }
+        }
+        renderedChanges = new String[changes.size()];
+    }
+
+    private void addChange(String key, int change) {
+        key = StringUtils.upperCase(key);
+        List<Integer> list = changesByKey.get(key);
+        if (list == null) {
+            list = new ArrayList<Integer>(2);
+            changesByKey.put(key, list);
+        } else if (list.get(list.size() - 1).intValue() == change) {
+            return; // mentioned twice in the same message
+        }
+        list.add(change);
+    }
+
+    /**
+     * Creates a comment to be used in JIRA for the build.
+     */
+    String render(JiraIssue issue) {
+        return (wikiStyle ? WIKI_TEMPLATE : PLAIN_TEMPLATE).render(
+                jenkinsRootUrl,
+                build,
+                build.getResult().color.getImage(),
+                Util.encode(jenkinsRootUrl + build.getUrl()),
+                getScmComments(issue),
+                build.getResult().toString());
+    }
+
+    String getScmComments(JiraIssue issue) {
+        StringBuilder comment = new StringBuilder();
+        if (issue == null) {
+            for (int i = 0; i < changes.size(); i++) {
+                comment.append(getRenderedChange(i));
+            }
+            return comment.toString();
+        }
+
+        List<Integer> mentioned = changesByKey.get(StringUtils.upperCase(issue.id));
+        if (mentioned != null) {
+            for (Integer i : mentioned) {
+                comment.append(getRenderedChange(i));
+            }
+        } else {
+            // the issue wasn't found by the pattern, e.g. carried over from an earlier build,
+            // so fall back to looking for its id in the messages
+            for (int i = 0; i < changes.size(); i++) {
+                if (StringUtils.containsIgnoreCase(changes.get(i).getMsg(), issue.id)) {
+                    comment.append(getRenderedChange(i));
+                }
+            }
+        }
+        return comment.toString();
+    }
+
+    private String getRenderedChange(int i) {
+        String rendered = renderedChanges[i];
+        if (rendered == null) {
+            rendered = renderChange(changes.get(i));
+            renderedChanges[i] = rendered;
+        }
+        return rendered;
+    }
+
+    private String renderChange(Entry change) {
+        StringBuilder comment = new StringBuilder();
+        comment.append(change.getMsg());
+        String revision = getRevision(change);
+        if (revision != null) {
+            URL url = null;
+            RepositoryBrowser repoBrowser = getRepositoryBrowser();
+            if (repoBrowser != null) {
+                try {
+                    url = repoBrowser.getChangeSetLink(change);
+                } catch (IOException e) {
+                    LOGGER.warning("Failed to calculate SCM repository browser link " + e.getMessage());
+                }
+            }
+            comment.append(" (");
+            String uid = change.getAuthor().getId();
+            if (StringUtils.isNotBlank(uid)) {
+                comment.append(uid).append(": ");
+            }
+            String link = url != null ? url.toExternalForm() : null;
+            if (StringUtils.isNotBlank(link)) {
+                if (wikiStyle) {
+                    comment.append("[").append(revision).append("|");
+                    comment.append(link).append("]");
+                } else {
+                    comment.append(link);
+                }
+            } else {
+                comment.append("rev ").append(revision);
+            }
+            comment.append(")");
+        }
+        comment.append("\n");
+        if (recordScmChanges) {
+            // see http://issues.jenkins-ci.org/browse/JENKINS-2508
+            // added additional try .. catch; getAffectedFiles is not supported by all SCM implementations
+            try {
+                for (AffectedFile affectedFile : change.getAffectedFiles()) {
+                    comment.append("* ").append(affectedFile.getPath()).append("\n");
+                }
+            } catch (UnsupportedOperationException e) {
+                LOGGER.warning("Unsupported SCM operation 'getAffectedFiles'. Fall back to getAffectedPaths.");
+                for (String affectedPath : change.getAffectedPaths()) {
+                    comment.append("* ").append(affectedPath).append("\n");
+                }
+            }
+        }
+        return comment.toString();
+    }
+
+    private RepositoryBrowser<?> getRepositoryBrowser() {
+        if (!repoBrowserResolved) {
+            if (build.getProject().getScm() != null) {
+                repoBrowser = build.getProject().getScm().getEffectiveBrowser();
+            }
+            repoBrowserResolved = true;
+        }
+        return repoBrowser;
+    }
+
+    static String getRevision(Entry entry) {
+        String commitId = entry.getCommitId();
+        if (commitId != null) {
+            return commitId;
+        }
+
+        // fall back to old SVN-specific solution, if we have only installed an old subversion-plugin
+        // which doesn't implement getCommitId, yet
+        Class<?> clazz = entry.getClass();
+        Optional<Method> method = REVISION_METHODS.get(clazz);
+        if (method == null) {
+            try {
+                method = Optional.fromNullable(clazz.getMethod("getRevision", (Class[]) null));
+            } catch (NoSuchMethodException e) {
+                method = Optional.absent();
+            } catch (SecurityException e) {
+                method = Optional.absent();
+            }
+            REVISION_METHODS.putIfAbsent(clazz, method);
+        }
+        if (!method.isPresent()) {
+            return null;
+        }
+        try {
+            Object revObj = method.get().invoke(entry, (Object[]) null);
+            return (revObj != null) ? revObj.toString() : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * A {@link String#format(String, Object...)} pattern which only uses {@code %n$s} placeholders,
+     * parsed once.
+     */
+    static final class Template {
+        private final String[] literals;
+        private final int[] args;
+
+        private Template(String[] literals, int[] args) {
+            this.literals = literals;
+            this.args = args;
+        }
+
+        static Template compile(String format) {
+            Matcher m = PLACEHOLDER.matcher(format);
+            List<String> literals = new ArrayList<String>();
+            List<Integer> args = new ArrayList<Integer>();
+            int last = 0;
+            while (m.find()) {
+                literals.add(format.substring(last, m.start()));
+                args.add(Integer.parseInt(m.group(1)) - 1);
+                last = m.end();
+            }
+            literals.add(format.substring(last));
+
+            int[] argIndexes = new int[args.size()];
+            for (int i = 0; i < argIndexes.length; i++) {
+                argIndexes[i] = args.get(i);
+            }
+            return new Template(literals.toArray(new String[literals.size()]), argIndexes);
+        }
+
+        String render(Object... values) {
+            StringBuilder buf = new StringBuilder();
+            for (int i = 0; i < args.length; i++) {
+                buf.append(literals[i]).append(values[args[i]]);
+            }
+            return buf.append(literals[args.length]).toString();
+        }
+
+        private static final Pattern PLACEHOLDER = Pattern.compile("%([1-9][0-9]*)\\$s");
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(CommentRenderer.class.getName());
+}
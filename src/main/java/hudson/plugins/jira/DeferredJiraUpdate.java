@@ -0,0 +1,228 @@
+package hudson.plugins.jira;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.maven.MavenBuild;
+import hudson.maven.MavenModuleSetBuild;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.RunAction2;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A JIRA update which runs once the build has completed, on a thread of the plugin,
+ * so that the build doesn't hold its executor while comments are posted.
+ * <p>
+ * The issue ids are collected while the build runs, the update itself waits for the final result.
+ * Its outcome is recorded here, and shown on the build page.
+ */
+public class DeferredJiraUpdate implements RunAction2 {
+    private static final Logger LOGGER = Logger.getLogger(DeferredJiraUpdate.class.getName());
+
+    public enum State {
+        PENDING, RUNNING, DONE, FAILED
+    }
+
+    /**
+     * ','-separated IDs, for compact persistence.
+     */
+    private volatile String ids;
+
+    private volatile State state = State.PENDING;
+
+    /**
+     * What the update logged, as it can't write to the console of the completed build.
+     */
+    private volatile String log;
+
+    private transient AbstractBuild<?, ?> build;
+
+    DeferredJiraUpdate(Set<String> ids) {
+        this.ids = Util.join(ids, ",");
+    }
+
+    /**
+     * Collects the issue ids of the build and attaches an update for them, to be run once the build has completed.
+     */
+    static void schedule(AbstractBuild<?, ?> build, BuildListener listener) {
+        Set<String> ids = Updater.collectIssueIds(build, listener);
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
+        listener.getLogger().println(Messages.Updater_Deferred(ids.size()));
+        build.addAction(new DeferredJiraUpdate(ids));
+    }
+
+    /**
+     * Adds the issue ids of a Maven module to the update of its module set build, so that the issues
+     * of all modules are updated once. The first module attaches the update, with the issues the previous
+     * module set build carried over.
+     */
+    static void merge(AbstractBuild<?, ?> moduleSetBuild, Set<String> ids) {
+        synchronized (DeferredJiraUpdate.class) {
+            DeferredJiraUpdate update = moduleSetBuild.getAction(DeferredJiraUpdate.class);
+            if (update != null) {
+                update.addIDs(ids);
+                return;
+            }
+
+            Set<String> all = new LinkedHashSet<String>(ids);
+            Run<?, ?> prev = moduleSetBuild.getPreviousBuild();
+            JiraCarryOverAction carriedOver = prev != null ? prev.getAction(JiraCarryOverAction.class) : null;
+            if (carriedOver != null) {
+                all.addAll(carriedOver.getIDs());
+            }
+            if (!all.isEmpty()) {
+                moduleSetBuild.addAction(new DeferredJiraUpdate(all));
+            }
+        }
+    }
+
+    private synchronized void addIDs(Set<String> more) {
+        Set<String> all = getIDs();
+        if (all.addAll(more)) {
+            ids = Util.join(all, ",");
+        }
+    }
+
+    public Set<String> getIDs() {
+        return new LinkedHashSet<String>(Arrays.asList(Util.tokenize(ids, ",")));
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public String getLog() {
+        return log;
+    }
+
+    public String getIconFileName() {
+        return null;
+    }
+
+    public String getDisplayName() {
+        return Messages.DeferredJiraUpdate_DisplayName();
+    }
+
+    public String getUrlName() {
+        return null;
+    }
+
+    public void onAttached(Run<?, ?> r) {
+        build = (AbstractBuild<?, ?>) r;
+    }
+
+    public void onLoad(Run<?, ?> r) {
+        build = (AbstractBuild<?, ?>) r;
+        // Jenkins was restarted before the update had run
+        if (state != State.DONE && state != State.FAILED && !r.isBuilding()) {
+            state = State.PENDING;
+            submit();
+        }
+    }
+
+    /**
+     * Runs the update on a thread of the plugin, unless it was already started.
+     */
+    void submit() {
+        synchronized (this) {
+            if (state != State.PENDING) {
+                return;
+            }
+            state = State.RUNNING;
+        }
+        UPDATER.submit(new Runnable() {
+            public void run() {
+                DeferredJiraUpdate.this.run();
+            }
+        });
+    }
+
+    private void run() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        boolean success = false;
+        try {
+            PrintStream logger = new PrintStream(out, true, "UTF-8");
+            success = Updater.update(build, getIDs(), logger);
+            logger.close();
+            log = out.toString("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to update JIRA for " + build, e);
+            log = out.toString() + e;
+        } finally {
+            state = success ? State.DONE : State.FAILED;
+            try {
+                build.save();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to record the JIRA update of " + build, e);
+            }
+        }
+    }
+
+    /**
+     * Number of threads updating JIRA for completed builds.
+     */
+    private static final int THREADS = Integer.getInteger(DeferredJiraUpdate.class.getName() + ".threads", 2);
+
+    private static final ExecutorService UPDATER = createUpdater();
+
+    private static ExecutorService createUpdater() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), "JIRA deferred updater"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Starts the pending updates of a build once it has completed.
+     * The module builds of a Maven build are only final once the whole module set build is.
+     */
+    @Extension
+    public static final class Listener extends RunListener<AbstractBuild> {
+        public Listener() {
+            super(AbstractBuild.class);
+        }
+
+        @Override
+        public void onCompleted(AbstractBuild build, TaskListener listener) {
+            if (build instanceof MavenBuild) {
+                return;     // waits for the module set build
+            }
+            submit(build);
+            if (build instanceof MavenModuleSetBuild) {
+                for (MavenBuild moduleBuild : ((MavenModuleSetBuild) build).getModuleLastBuilds().values()) {
+                    submit(moduleBuild);
+                }
+            }
+        }
+
+        private static void submit(AbstractBuild<?, ?> build) {
+            DeferredJiraUpdate update = build.getAction(DeferredJiraUpdate.class);
+            if (update != null) {
+                update.submit();
+            }
+        }
+    }
+}
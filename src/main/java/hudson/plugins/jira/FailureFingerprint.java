@@ -0,0 +1,187 @@
+package hudson.plugins.jira;
+
+import hudson.Util;
+import hudson.model.AbstractBuild;
+import hudson.tasks.test.AbstractTestResultAction;
+import hudson.tasks.test.TestResult;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Signature of the way a build failed, so that jobs which fail for the same reason,
+ * e.g. during an infrastructure outage, can share one JIRA issue.
+ * <p>
+ * The signature is derived from the first of these that is available:
+ * <ol>
+ * <li>the names of the failed tests,
+ * <li>the exceptions and errors named in the tail of the console log, with their normalized messages
+ * and top application stack frames, unless none of them has either,
+ * <li>the normalized lines of the tail of the console log which look like errors.
+ * </ol>
+ */
+final class FailureFingerprint {
+    /**
+     * Number of console lines looked at.
+     */
+    static final int CONSOLE_TAIL = 100;
+
+    /**
+     * Number of last console lines used if none of them looks like an error.
+     */
+    private static final int FALLBACK_LINES = 10;
+
+    private static final Pattern EXCEPTION = Pattern.compile("\\b((?:[a-zA-Z_$][\\w$]*\\.)+[A-Z][\\w$]*(?:Exception|Error))\\b");
+    private static final Pattern FRAME = Pattern.compile("\\s*at ((?:[\\w$]+\\.)+[\\w$<>]+)\\(.*");
+    private static final Pattern JDK_FRAME = Pattern.compile("(java|javax|sun|com\\.sun|jdk)\\..*");
+    private static final Pattern ERROR_LINE = Pattern.compile("(?i).*\\b(error|exception|fail(ed|ure)?|refused|timed? ?out|unknown host|denied)\\b.*");
+    private static final Pattern HEX_ID = Pattern.compile("\\b(0x)?[0-9a-fA-F]{8,}\\b");
+    private static final Pattern NUMBER = Pattern.compile("[0-9]+");
+    private static final Pattern PATH = Pattern.compile("(/|[a-zA-Z]:\\\\)[^\\s:'\"]+");
+
+    /**
+     * Lines which say nothing about the failure itself.
+     */
+    private static final Pattern IGNORED_LINE = Pattern.compile("^(\\[JIRA\\]|Build step |Finished: ).*");
+
+    private final String kind;
+    private final String signature;
+
+    private FailureFingerprint(String kind, Collection<String> parts) {
+        this.kind = kind;
+        this.signature = kind + ":" + sha1(parts);
+    }
+
+    /**
+     * How the signature was derived: "tests", "exceptions" or "console".
+     */
+    String getKind() {
+        return kind;
+    }
+
+    String getSignature() {
+        return signature;
+    }
+
+    @Override
+    public String toString() {
+        return signature;
+    }
+
+    static FailureFingerprint of(AbstractBuild<?, ?> build) throws IOException {
+        AbstractTestResultAction<?> tests = build.getAction(AbstractTestResultAction.class);
+        if (tests != null && tests.getFailCount() > 0) {
+            List<String> names = new ArrayList<String>();
+            for (Object test : tests.getFailedTests()) {
+                names.add(((TestResult) test).getFullName());
+            }
+            if (!names.isEmpty()) {
+                return ofTests(names);
+            }
+        }
+        return ofConsole(build.getLog(CONSOLE_TAIL), build.getProject().getName());
+    }
+
+    static FailureFingerprint ofTests(Collection<String> failedTests) {
+        return new FailureFingerprint("tests", new TreeSet<String>(failedTests));
+    }
+
+    /**
+     * @param jobName removed from the lines, so that the same failure matches across jobs
+     */
+    static FailureFingerprint ofConsole(List<String> tail, String jobName) {
+        List<String> exceptions = new ArrayList<String>();
+        boolean framed = false;     // whether the last exception has its top frame already
+        boolean telling = false;    // whether any exception has a message or a frame
+        List<String> errors = new ArrayList<String>();
+        List<String> lines = new ArrayList<String>();
+        for (String line : tail) {
+            if (IGNORED_LINE.matcher(line).matches() || line.trim().length() == 0) {
+                continue;
+            }
+            lines.add(line);
+            Matcher frame = FRAME.matcher(line);
+            if (frame.matches()) {
+                if (!exceptions.isEmpty() && !framed && !JDK_FRAME.matcher(frame.group(1)).matches()) {
+                    int last = exceptions.size() - 1;
+                    exceptions.set(last, exceptions.get(last) + " at " + frame.group(1));
+                    framed = true;
+                    telling = true;
+                }
+                continue;
+            }
+            Matcher m = EXCEPTION.matcher(line);
+            while (m.find()) {
+                String exception = exception(m.group(1), line.substring(m.end()), jobName);
+                exceptions.add(exception);
+                framed = false;
+                telling |= !exception.equals(m.group(1));
+            }
+            if (ERROR_LINE.matcher(line).matches()) {
+                errors.add(normalize(line, jobName));
+            }
+        }
+
+        if (telling) {
+            return new FailureFingerprint("exceptions", new TreeSet<String>(exceptions));
+        }
+        // an exception without message or frame, like a bare NullPointerException, says too little
+        if (errors.isEmpty()) {
+            // nothing looks like an error, so the last lines have to do
+            for (String line : lines.subList(Math.max(0, lines.size() - FALLBACK_LINES), lines.size())) {
+                errors.add(normalize(line, jobName));
+            }
+        }
+        return new FailureFingerprint("console", new TreeSet<String>(errors));
+    }
+
+    /**
+     * The exception class with the message that follows it on the line, if any,
+     * so that the same exception failing for different reasons doesn't match.
+     */
+    private static String exception(String className, String rest, String jobName) {
+        if (!rest.startsWith(":")) {
+            return className;
+        }
+        String message = normalize(rest.substring(1), jobName);
+        return message.length() > 0 ? className + ": " + message : className;
+    }
+
+    /**
+     * Drops what differs between builds and jobs failing for the same reason:
+     * numbers, ids, paths and the job name.
+     */
+    static String normalize(String line, String jobName) {
+        String normalized = line;
+        if (jobName != null && jobName.length() > 0) {
+            normalized = normalized.replace(jobName, "<job>");
+        }
+        normalized = PATH.matcher(normalized).replaceAll("<path>");
+        normalized = HEX_ID.matcher(normalized).replaceAll("#");
+        normalized = NUMBER.matcher(normalized).replaceAll("#");
+        return normalized.trim().replaceAll("\\s+", " ").toLowerCase();
+    }
+
+    private static String sha1(Collection<String> parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            for (String part : parts) {
+                digest.update(part.getBytes("UTF-8"));
+                digest.update((byte) '\n');
+            }
+            return Util.toHexString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package hudson.plugins.jira;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Remembers which JIRA issue was created for a {@link FailureFingerprint}, so that jobs failing
+ * the same way join that issue instead of creating their own, without searching JIRA.
+ * <p>
+ * Signatures are forgotten some hours after they were last seen.
+ */
+final class FailureSignatureIndex {
+    static final FailureSignatureIndex INSTANCE = new FailureSignatureIndex(
+            Long.getLong(FailureSignatureIndex.class.getName() + ".expiryMinutes", 6 * 60));
+
+    private final Cache<String, Group> groups;
+
+    FailureSignatureIndex(long expiryMinutes) {
+        groups = CacheBuilder.newBuilder()
+                .expireAfterAccess(expiryMinutes, TimeUnit.MINUTES)
+                .maximumSize(10000)
+                .build();
+    }
+
+    /**
+     * Gets the group of failures with the given signature in the given JIRA project.
+     * Callers lock the group while they create or join its issue.
+     */
+    Group get(String projectKey, FailureFingerprint fingerprint) {
+        try {
+            return groups.get(projectKey + '/' + fingerprint.getSignature(), new Callable<Group>() {
+                public Group call() {
+                    return new Group();
+                }
+            });
+        } catch (ExecutionException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Failures sharing a signature, and the issue created for them.
+     */
+    static final class Group {
+        private String issueKey;
+        private final Set<String> jobs = new LinkedHashSet<String>();
+
+        /**
+         * @return null if no issue was created for the group yet
+         */
+        synchronized String getIssueKey() {
+            return issueKey;
+        }
+
+        synchronized void setIssueKey(String issueKey) {
+            this.issueKey = issueKey;
+        }
+
+        /**
+         * Forgets the issue, e.g. because it was closed.
+         */
+        synchronized void clear(String issueKey) {
+            if (issueKey.equals(this.issueKey)) {
+                this.issueKey = null;
+                jobs.clear();
+            }
+        }
+
+        /**
+         * @return whether the job wasn't part of the group before
+         */
+        synchronized boolean addJob(String jobName) {
+            return jobs.add(jobName);
+        }
+
+        synchronized Set<String> getJobs() {
+            return Collections.unmodifiableSet(new LinkedHashSet<String>(jobs));
+        }
+    }
+}
@@ -1,24 +1,103 @@
 package hudson.plugins.jira;
 
 import hudson.model.AbstractBuild;
-import hudson.model.Action;
+import hudson.model.Run;
+import jenkins.model.RunAction2;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * JIRA issues related to the build.
+ * <p>
+ * The issues are not part of the build record, but kept in a separate file in the
+ * build directory, which is only read when somebody actually looks at them.
  *
  * @author Kohsuke Kawaguchi
  */
-public class JiraBuildAction implements Action {
-    public final AbstractBuild<?, ?> owner;
+public class JiraBuildAction implements RunAction2 {
+    private static final Logger LOGGER = Logger.getLogger(JiraBuildAction.class.getName());
 
-    public JiraIssue[] issues;
+    /**
+     * Name of the file in the build directory holding the issues, one per line.
+     */
+    static final String ISSUES_FILE = "jira-issues.txt";
+
+    public transient AbstractBuild<?, ?> owner;
+
+    /**
+     * Issues of build records written before they were kept in {@link #ISSUES_FILE}.
+     * Only read to migrate them.
+     */
+    private JiraIssue[] issues;
+
+    /**
+     * The issues sorted by id, or null if not loaded yet.
+     */
+    private transient JiraIssue[] loaded;
 
+    /**
+     * @param issues the issues of the build, or null to read them from the build directory on demand
+     */
     public JiraBuildAction(AbstractBuild<?, ?> owner, Collection<JiraIssue> issues) {
         this.owner = owner;
-        this.issues = issues.toArray(new JiraIssue[issues.size()]);
-        Arrays.sort(this.issues);
+        this.loaded = issues != null ? sortedUnique(issues) : null;
+    }
+
+    /**
+     * Adds the issues to the action of the build, and attaches one if the build has none yet.
+     *
+     * @return true if an action was attached, so that the build record needs to be saved
+     */
+    static boolean record(AbstractBuild<?, ?> build, Collection<JiraIssue> issues) {
+        synchronized (build) {
+            JiraBuildAction action = build.getAction(JiraBuildAction.class);
+            if (action != null) {
+                action.addIssues(new HashSet<JiraIssue>(issues));
+                return false;
+            }
+            build.addAction(new JiraBuildAction(build, issues));
+            return true;
+        }
+    }
+
+    public void onAttached(Run<?, ?> r) {
+        owner = (AbstractBuild<?, ?>) r;
+        synchronized (this) {
+            if (loaded != null) {
+                // keep the issues another action of the build may have written already
+                List<JiraIssue> all = new ArrayList<JiraIssue>(Arrays.asList(read()));
+                all.addAll(Arrays.asList(loaded));
+                loaded = sortedUnique(all);
+                write(Arrays.asList(loaded), false);
+            }
+        }
+    }
+
+    public void onLoad(Run<?, ?> r) {
+        owner = (AbstractBuild<?, ?>) r;
+        synchronized (this) {
+            if (issues == null) {
+                return;
+            }
+            // migrate the issues out of the build record, keeping those added to the file since;
+            // the next save of the build drops them from the record, until then merging again does no harm
+            List<JiraIssue> all = new ArrayList<JiraIssue>(Arrays.asList(read()));
+            all.addAll(Arrays.asList(issues));
+            loaded = sortedUnique(all);
+            write(Arrays.asList(loaded), false);
+            issues = null;
+        }
     }
 
     public String getIconFileName() {
@@ -33,23 +112,174 @@ public class JiraBuildAction implements Action {
         return "jira";
     }
 
+    /**
+     * Gets the issues related to the build, sorted by id.
+     */
+    public synchronized JiraIssue[] getIssues() {
+        if (loaded == null) {
+            loaded = read();
+        }
+        return loaded.clone();
+    }
+
     /**
      * Finds {@link JiraIssue} whose ID matches the given one.
      */
     public JiraIssue getIssue(String id) {
-        for (JiraIssue issue : issues) {
-            if (issue.id.equals(id)) {
-                return issue;
+        JiraIssue[] sorted;
+        synchronized (this) {
+            if (loaded == null) {
+                loaded = read();
             }
+            sorted = loaded;
         }
-        return null;
+        int idx = Arrays.binarySearch(sorted, new JiraIssue(id, null));
+        return idx >= 0 ? sorted[idx] : null;
     }
 
-    public void addIssues(Set<JiraIssue> issuesToBeSaved) {
-        SortedSet<JiraIssue> allIssues = new TreeSet<JiraIssue>();
-        allIssues.addAll(issuesToBeSaved);
-        allIssues.addAll(Arrays.asList(this.issues));
+    public synchronized void addIssues(Set<JiraIssue> issuesToBeSaved) {
+        if (loaded == null) {
+            loaded = read();
+        }
 
-        this.issues = allIssues.toArray(new JiraIssue[allIssues.size()]);
+        List<JiraIssue> added = new ArrayList<JiraIssue>(issuesToBeSaved.size());
+        for (JiraIssue issue : issuesToBeSaved) {
+            if (Arrays.binarySearch(loaded, issue) < 0) {
+                added.add(issue);
+            }
+        }
+        if (added.isEmpty()) {
+            return;
+        }
+
+        // merge the new issues into the sorted array, and only append them to the file
+        JiraIssue[] sortedAdded = sortedUnique(added);
+        JiraIssue[] merged = new JiraIssue[loaded.length + sortedAdded.length];
+        int i = 0, j = 0, k = 0;
+        while (i < loaded.length && j < sortedAdded.length) {
+            merged[k++] = loaded[i].compareTo(sortedAdded[j]) < 0 ? loaded[i++] : sortedAdded[j++];
+        }
+        while (i < loaded.length) {
+            merged[k++] = loaded[i++];
+        }
+        while (j < sortedAdded.length) {
+            merged[k++] = sortedAdded[j++];
+        }
+        loaded = merged;
+
+        write(Arrays.asList(sortedAdded), true);
+    }
+
+    private static JiraIssue[] sortedUnique(Collection<JiraIssue> issues) {
+        SortedSet<JiraIssue> sorted = new TreeSet<JiraIssue>(issues);
+        return sorted.toArray(new JiraIssue[sorted.size()]);
+    }
+
+    private File getIssuesFile() {
+        if (owner == null || owner.getRootDir() == null) {
+            return null;
+        }
+        return new File(owner.getRootDir(), ISSUES_FILE);
+    }
+
+    private JiraIssue[] read() {
+        File file = getIssuesFile();
+        if (file == null) {
+            return new JiraIssue[0];
+        }
+
+        List<JiraIssue> issues = new ArrayList<JiraIssue>();
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab > 0) {
+                    issues.add(new JiraIssue(line.substring(0, tab), unescape(line.substring(tab + 1))));
+                }
+            }
+        } catch (FileNotFoundException e) {
+            // no issues recorded
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to read JIRA issues from " + file, e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+        return sortedUnique(issues);
+    }
+
+    private void write(List<JiraIssue> issues, boolean append) {
+        File file = getIssuesFile();
+        if (file == null) {
+            return;
+        }
+
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(file, append), "UTF-8");
+            for (JiraIssue issue : issues) {
+                writer.write(issue.id);
+                writer.write('\t');
+                writer.write(escape(issue.title));
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to write JIRA issues to " + file, e);
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Failed to write JIRA issues to " + file, e);
+                }
+            }
+        }
+    }
+
+    static String escape(String title) {
+        if (title == null) {
+            return "\\0";
+        }
+        StringBuilder buf = new StringBuilder(title.length());
+        for (int i = 0; i < title.length(); i++) {
+            char c = title.charAt(i);
+            switch (c) {
+            case '\\': buf.append("\\\\"); break;
+            case '\n': buf.append("\\n"); break;
+            case '\r': buf.append("\\r"); break;
+            case '\t': buf.append("\\t"); break;
+            default: buf.append(c);
+            }
+        }
+        return buf.toString();
+    }
+
+    static String unescape(String title) {
+        if (title.equals("\\0")) {
+            return null;
+        }
+        StringBuilder buf = new StringBuilder(title.length());
+        for (int i = 0; i < title.length(); i++) {
+            char c = title.charAt(i);
+            if (c == '\\' && i + 1 < title.length()) {
+                char next = title.charAt(++i);
+                switch (next) {
+                case 'n': buf.append('\n'); break;
+                case 'r': buf.append('\r'); break;
+                case 't': buf.append('\t'); break;
+                default: buf.append(next);
+                }
+            } else {
+                buf.append(c);
+            }
+        }
+        return buf.toString();
     }
 }
@@ -0,0 +1,304 @@
+package hudson.plugins.jira;
+
+import hudson.plugins.jira.remote.JiraInteractionSession;
+import hudson.plugins.jira.remote.rest.RestErrors;
+import hudson.plugins.jira.soap.RemoteIssue;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.io.PrintStream;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.apache.commons.lang.StringUtils.isEmpty;
+import static org.apache.commons.lang.StringUtils.isNotEmpty;
+
+/**
+ * Comments on and progresses every issue matching a JQL search, see
+ * {@link JiraSite#progressMatchingIssues(String, String, String, boolean, PrintStream)}.
+ * <p>
+ * All matches are collected page by page before the first one is updated, as updating them
+ * may change what the search matches. The issues are then updated in parallel, with failed
+ * searches and transitions retried unless JIRA refused them. Comments are never retried,
+ * as a call that timed out may still have added them, and transitions only while the issue
+ * is still in its old status.
+ */
+final class JiraBulkTransition {
+    private static final Logger LOGGER = Logger.getLogger(JiraBulkTransition.class.getName());
+
+    private enum Outcome {
+        TRANSITIONED, COMMENTED, CHECKED, FAILED
+    }
+
+    private final JiraInteractionSession session;
+    private final String workflowActionName;
+    private final String comment;
+    private final boolean dryRun;
+    private final PrintStream console;
+
+    private final AtomicInteger retries = new AtomicInteger();
+
+    JiraBulkTransition(JiraInteractionSession session, String workflowActionName, String comment,
+            boolean dryRun, PrintStream console) {
+        this.session = session;
+        this.workflowActionName = workflowActionName;
+        this.comment = comment;
+        this.dryRun = dryRun;
+        this.console = console;
+    }
+
+    /**
+     * @return true if every matching issue was (or in a dry run, could be) updated
+     */
+    boolean run(String jqlSearch) throws RemoteException, InterruptedException {
+        long start = System.nanoTime();
+        Collection<RemoteIssue> issues = search(jqlSearch);
+        console.println(Messages.JiraIssueUpdateBuilder_Found(issues.size(), millisSince(start)));
+
+        if (isEmpty(workflowActionName)) {
+            console.println("[JIRA] No workflow action was specified, " +
+                    "thus no status update will be made for any of the matching issues.");
+            if (isEmpty(comment)) {
+                return true;
+            }
+        }
+
+        start = System.nanoTime();
+        List<Future<Outcome>> updates = new ArrayList<Future<Outcome>>(issues.size());
+        for (final RemoteIssue issue : issues) {
+            updates.add(UPDATER.submit(new Callable<Outcome>() {
+                public Outcome call() {
+                    return update(issue);
+                }
+            }));
+        }
+
+        int[] counts = new int[Outcome.values().length];
+        try {
+            for (Future<Outcome> update : updates) {
+                counts[update.get().ordinal()]++;
+            }
+        } catch (InterruptedException e) {
+            for (Future<Outcome> update : updates) {
+                update.cancel(true);
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            throw new AssertionError(e);    // update() doesn't fail
+        }
+
+        long millis = millisSince(start);
+        int failed = counts[Outcome.FAILED.ordinal()];
+        if (dryRun) {
+            console.println(Messages.JiraIssueUpdateBuilder_DryRunSummary(issues.size(), millis,
+                    counts[Outcome.CHECKED.ordinal()], failed));
+        } else {
+            String perSecond = String.format("%.1f", issues.size() * 1000.0 / Math.max(millis, 1));
+            console.println(Messages.JiraIssueUpdateBuilder_Summary(issues.size(), millis, perSecond,
+                    counts[Outcome.TRANSITIONED.ordinal()], counts[Outcome.COMMENTED.ordinal()], failed,
+                    retries.get()));
+        }
+        return failed == 0;
+    }
+
+    /**
+     * Collects all issues matching the search, by key, in the order JIRA returns them.
+     */
+    Collection<RemoteIssue> search(final String jqlSearch) throws RemoteException, InterruptedException {
+        Map<String, RemoteIssue> issues = new LinkedHashMap<String, RemoteIssue>();
+        int startAt = 0;
+        while (true) {
+            final int from = startAt;
+            RemoteIssue[] page = retry(new Callable<RemoteIssue[]>() {
+                public RemoteIssue[] call() throws RemoteException {
+                    return session.getIssuesFromJqlSearch(jqlSearch, from, PAGE_SIZE);
+                }
+            });
+            if (page == null) {
+                break;
+            }
+            int known = issues.size();
+            for (RemoteIssue issue : page) {
+                issues.put(issue.getKey(), issue);
+            }
+            if (page.length < PAGE_SIZE || issues.size() == known) {
+                // the last page, or JIRA ignores startAt
+                break;
+            }
+            startAt += page.length;
+        }
+        return issues.values();
+    }
+
+    private Outcome update(RemoteIssue issue) {
+        final String issueKey = issue.getKey();
+        try {
+            if (dryRun) {
+                return check(issue);
+            }
+
+            if (isNotEmpty(comment)) {
+                session.addComment(issueKey, comment, null, null);
+            }
+
+            if (isEmpty(workflowActionName)) {
+                return Outcome.COMMENTED;
+            }
+
+            final String actionId = getActionId(issue);
+            if (actionId == null) {
+                return Outcome.FAILED;
+            }
+
+            String newStatus = transition(issue, actionId);
+
+            console.println(String.format("[JIRA] Issue %s transitioned to \"%s\" due to action \"%s\".",
+                    issueKey, newStatus, workflowActionName));
+            return Outcome.TRANSITIONED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Outcome.FAILED;
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to update " + issueKey, e);
+            console.println(Messages.JiraIssueUpdateBuilder_IssueFailed(issueKey, e.getMessage()));
+            return Outcome.FAILED;
+        }
+    }
+
+    /**
+     * Checks what {@link #update(RemoteIssue)} would do, without changing the issue.
+     */
+    private Outcome check(RemoteIssue issue) throws RemoteException, InterruptedException {
+        if (isNotEmpty(workflowActionName) && getActionId(issue) == null) {
+            return Outcome.FAILED;
+        }
+        console.println(Messages.JiraIssueUpdateBuilder_DryRunIssue(issue.getKey()));
+        return Outcome.CHECKED;
+    }
+
+    /**
+     * @return null, after telling so, if the workflow action isn't available for the issue
+     */
+    private String getActionId(RemoteIssue issue) throws RemoteException, InterruptedException {
+        final String issueKey = issue.getKey();
+        String actionId = retry(new Callable<String>() {
+            public String call() throws RemoteException {
+                return session.getActionIdForIssue(issueKey, workflowActionName);
+            }
+        });
+        if (actionId == null) {
+            LOGGER.fine(String.format("Invalid workflow action %s for issue %s; issue status = %s",
+                    workflowActionName, issueKey, issue.getStatus()));
+            console.println(Messages.JiraIssueUpdateBuilder_UnknownWorkflowAction(issueKey, workflowActionName));
+        }
+        return actionId;
+    }
+
+    /**
+     * Progresses the issue. A failed transition is only made again if the issue is still in the status
+     * it was found in, as a call that timed out may have progressed it already.
+     */
+    private String transition(RemoteIssue issue, String actionId) throws RemoteException, InterruptedException {
+        String issueKey = issue.getKey();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return session.progressWorkflowAction(issueKey, actionId, null);
+            } catch (RemoteException e) {
+                if (attempt > RETRIES || !isTransient(e) || issue.getStatus() == null
+                        || Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                RemoteIssue current = session.getIssueByKey(issueKey);
+                if (current != null && !issue.getStatus().equals(current.getStatus())) {
+                    LOGGER.log(Level.FINE, "The failed transition of " + issueKey + " went through", e);
+                    return current.getStatus();
+                }
+                retries.incrementAndGet();
+                LOGGER.log(Level.FINE, "Retrying the transition of " + issueKey + ", attempt " + attempt, e);
+                Thread.sleep(RETRY_DELAY_MILLIS * attempt);
+            }
+        }
+    }
+
+    /**
+     * Makes the call, and makes it again a few times if it failed for a reason that may go away.
+     */
+    private <T> T retry(Callable<T> call) throws RemoteException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.call();
+            } catch (RemoteException e) {
+                if (attempt > RETRIES || !isTransient(e) || Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                retries.incrementAndGet();
+                LOGGER.log(Level.FINE, "Retrying a failed JIRA call, attempt " + attempt, e);
+                Thread.sleep(RETRY_DELAY_MILLIS * attempt);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new AssertionError(e);    // the calls only throw RemoteException
+            }
+        }
+    }
+
+    /**
+     * Whether a failed call may succeed when made again, which isn't the case if JIRA itself refused it,
+     * like for missing permissions or invalid input. Only server errors and failures to get an answer
+     * at all are retried.
+     */
+    static boolean isTransient(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof hudson.plugins.jira.soap.RemoteException) {
+                return false;
+            }
+        }
+        int status = RestErrors.getStatusCode(e);
+        return status == 0 || status >= 500;
+    }
+
+    private static long millisSince(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - nanos);
+    }
+
+    /**
+     * Number of issues asked for at once.
+     */
+    static final int PAGE_SIZE = Integer.getInteger(JiraBulkTransition.class.getName() + ".pageSize", 100);
+
+    /**
+     * Number of times a call is made again after it failed.
+     */
+    private static final int RETRIES = Integer.getInteger(JiraBulkTransition.class.getName() + ".retries", 2);
+
+    private static final long RETRY_DELAY_MILLIS = 500;
+
+    /**
+     * Number of issues updated at the same time, shared by all builds.
+     */
+    private static final int THREADS = Integer.getInteger(JiraBulkTransition.class.getName() + ".threads", 8);
+
+    private static final ExecutorService UPDATER = createUpdater();
+
+    private static ExecutorService createUpdater() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), "JIRA bulk transition"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
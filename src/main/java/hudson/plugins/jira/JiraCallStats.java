@@ -0,0 +1,329 @@
+package hudson.plugins.jira;
+
+import hudson.plugins.jira.remote.JiraInteractionSession;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.io.PrintStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The JIRA calls made for a build: how many of each operation, how long they took,
+ * how they ended, and the slowest of them.
+ * <p>
+ * Recorded by a session from {@link #instrument(JiraInteractionSession)}, and kept with the build
+ * by {@link JiraCallsAction}.
+ */
+@ExportedBean
+public final class JiraCallStats {
+    /**
+     * Number of slowest calls kept.
+     */
+    private static final int SLOWEST = 5;
+
+    private final Map<String, Operation> operations = new TreeMap<String, Operation>();
+
+    private final List<Call> slowest = new ArrayList<Call>();
+
+    /**
+     * Wraps the session so that every call made through it is recorded here.
+     */
+    public JiraInteractionSession instrument(final JiraInteractionSession session) {
+        return (JiraInteractionSession) Proxy.newProxyInstance(JiraInteractionSession.class.getClassLoader(),
+                new Class<?>[]{JiraInteractionSession.class}, new InvocationHandler() {
+                    /**
+                     * Calls which failed, as a call made again with the same arguments is a retry.
+                     */
+                    private final Set<String> failed = Collections.synchronizedSet(new HashSet<String>());
+
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        String name = method.getName();
+                        if (method.getDeclaringClass() == Object.class || name.endsWith("Async")) {
+                            // not a call, or one which completes later
+                            return invoke(method, args);
+                        }
+
+                        String signature = name + Arrays.deepToString(args);
+                        boolean retry = failed.contains(signature);
+                        long start = System.nanoTime();
+                        String outcome = null;
+                        try {
+                            Object result = invoke(method, args);
+                            failed.remove(signature);
+                            return result;
+                        } catch (Throwable t) {
+                            outcome = t.getClass().getSimpleName();
+                            failed.add(signature);
+                            throw t;
+                        } finally {
+                            record(name, args != null && args.length > 0 ? args[0] : null,
+                                    System.nanoTime() - start, outcome, retry);
+                        }
+                    }
+
+                    private Object invoke(Method method, Object[] args) throws Throwable {
+                        try {
+                            return method.invoke(session, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }
+                });
+    }
+
+    /**
+     * @param subject first argument of the call, like the issue key
+     * @param failure simple name of what the call threw, or null if it succeeded
+     */
+    synchronized void record(String operation, Object subject, long nanos, String failure, boolean retry) {
+        Operation o = operations.get(operation);
+        if (o == null) {
+            o = new Operation(operation);
+            operations.put(operation, o);
+        }
+        o.add(nanos, failure != null, retry);
+        addSlowest(new Call(operation, subject, nanos, failure));
+    }
+
+    private void addSlowest(Call call) {
+        if (slowest.size() == SLOWEST && slowest.get(SLOWEST - 1).nanos >= call.nanos) {
+            return;
+        }
+        slowest.add(call);
+        Collections.sort(slowest, SLOWEST_FIRST);
+        if (slowest.size() > SLOWEST) {
+            slowest.remove(SLOWEST);
+        }
+    }
+
+    /**
+     * Adds the calls recorded by the other stats to these.
+     */
+    synchronized void add(JiraCallStats other) {
+        synchronized (other) {
+            for (Operation o : other.operations.values()) {
+                Operation mine = operations.get(o.name);
+                if (mine == null) {
+                    mine = new Operation(o.name);
+                    operations.put(o.name, mine);
+                }
+                mine.add(o);
+            }
+            for (Call call : other.slowest) {
+                addSlowest(call);
+            }
+        }
+    }
+
+    @Exported
+    public synchronized int getCalls() {
+        int calls = 0;
+        for (Operation o : operations.values()) {
+            calls += o.calls;
+        }
+        return calls;
+    }
+
+    @Exported
+    public synchronized long getTotalMillis() {
+        long nanos = 0;
+        for (Operation o : operations.values()) {
+            nanos += o.nanos;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    @Exported
+    public synchronized int getFailures() {
+        int failures = 0;
+        for (Operation o : operations.values()) {
+            failures += o.failures;
+        }
+        return failures;
+    }
+
+    @Exported
+    public synchronized int getRetries() {
+        int retries = 0;
+        for (Operation o : operations.values()) {
+            retries += o.retries;
+        }
+        return retries;
+    }
+
+    @Exported
+    public synchronized List<Operation> getOperations() {
+        List<Operation> copy = new ArrayList<Operation>(operations.size());
+        for (Operation o : operations.values()) {
+            Operation c = new Operation(o.name);
+            c.add(o);
+            copy.add(c);
+        }
+        return copy;
+    }
+
+    @Exported
+    public synchronized List<Call> getSlowestCalls() {
+        return new ArrayList<Call>(slowest);
+    }
+
+    /**
+     * Prints the totals and the slowest calls, if any calls were made.
+     */
+    public synchronized void printSummary(PrintStream logger) {
+        int calls = getCalls();
+        if (calls == 0) {
+            return;
+        }
+        StringBuilder slowestCalls = new StringBuilder();
+        for (Call call : slowest) {
+            if (slowestCalls.length() > 0) {
+                slowestCalls.append(", ");
+            }
+            slowestCalls.append(call);
+        }
+        logger.println(Messages.JiraCallStats_Summary(calls, getTotalMillis(), getFailures(),
+                getRetries(), slowestCalls));
+    }
+
+    /**
+     * The calls of one operation, like "getIssue".
+     */
+    @ExportedBean(defaultVisibility = 2)
+    public static final class Operation {
+        private final String name;
+        private int calls;
+        private long nanos;
+        private long maxNanos;
+        private int failures;
+        private int retries;
+
+        Operation(String name) {
+            this.name = name;
+        }
+
+        void add(long nanos, boolean failed, boolean retry) {
+            calls++;
+            this.nanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            failures += failed ? 1 : 0;
+            retries += retry ? 1 : 0;
+        }
+
+        void add(Operation other) {
+            calls += other.calls;
+            nanos += other.nanos;
+            maxNanos = Math.max(maxNanos, other.maxNanos);
+            failures += other.failures;
+            retries += other.retries;
+        }
+
+        @Exported
+        public String getName() {
+            return name;
+        }
+
+        @Exported
+        public int getCalls() {
+            return calls;
+        }
+
+        @Exported
+        public long getTotalMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(nanos);
+        }
+
+        @Exported
+        public long getMaxMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(maxNanos);
+        }
+
+        @Exported
+        public int getFailures() {
+            return failures;
+        }
+
+        @Exported
+        public int getRetries() {
+            return retries;
+        }
+    }
+
+    /**
+     * A single call, kept if it was one of the slowest.
+     */
+    @ExportedBean(defaultVisibility = 2)
+    public static final class Call {
+        private final String operation;
+        private final String subject;
+        private final long nanos;
+        private final String failure;
+
+        Call(String operation, Object subject, long nanos, String failure) {
+            this.operation = operation;
+            this.subject = abbreviate(subject);
+            this.nanos = nanos;
+            this.failure = failure;
+        }
+
+        private static String abbreviate(Object subject) {
+            if (subject == null) {
+                return null;
+            }
+            String s = subject.toString();
+            return s.length() > 60 ? s.substring(0, 57) + "..." : s;
+        }
+
+        @Exported
+        public String getOperation() {
+            return operation;
+        }
+
+        /**
+         * @return the first argument, like the issue key or the JQL search
+         */
+        @Exported
+        public String getSubject() {
+            return subject;
+        }
+
+        @Exported
+        public long getMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(nanos);
+        }
+
+        /**
+         * @return what the call threw, or null if it succeeded
+         */
+        @Exported
+        public String getFailure() {
+            return failure;
+        }
+
+        @Override
+        public String toString() {
+            return operation + "(" + (subject != null ? subject : "") + ") " + getMillis() + " ms"
+                    + (failure != null ? " " + failure : "");
+        }
+    }
+
+    private static final Comparator<Call> SLOWEST_FIRST = new Comparator<Call>() {
+        public int compare(Call a, Call b) {
+            return a.nanos < b.nanos ? 1 : a.nanos > b.nanos ? -1 : 0;
+        }
+    };
+}
@@ -0,0 +1,39 @@
+package hudson.plugins.jira;
+
+import hudson.model.AbstractBuild;
+import hudson.model.InvisibleAction;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * The JIRA calls made for a build by all its steps, exposed through the remote API
+ * so that they can be compared across builds.
+ */
+@ExportedBean
+public class JiraCallsAction extends InvisibleAction {
+    private final JiraCallStats stats = new JiraCallStats();
+
+    @Exported(inline = true)
+    public JiraCallStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Adds the calls of a step to those of its build.
+     */
+    static void add(AbstractBuild<?, ?> build, JiraCallStats calls) {
+        if (calls.getCalls() == 0) {
+            return;
+        }
+        JiraCallsAction action;
+        synchronized (JiraCallsAction.class) {
+            action = build.getAction(JiraCallsAction.class);
+            if (action == null) {
+                action = new JiraCallsAction();
+                build.addAction(action);
+            }
+        }
+        action.stats.add(calls);
+    }
+}
@@ -1,5 +1,8 @@
 package hudson.plugins.jira;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import hudson.Extension;
 import hudson.MarkupText;
 import hudson.Util;
@@ -11,8 +14,11 @@ import hudson.scm.ChangeLogSet.Entry;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -32,11 +38,6 @@ public class JiraChangeLogAnnotator extends ChangeLogAnnotator {
         JiraSite site = getSiteForProject(build.getProject());
         if (site == null) return;    // not configured with JIRA
 
-        // if there's any recorded detail information, try to use that, too.
-        JiraBuildAction a = build.getAction(JiraBuildAction.class);
-
-        Set<JiraIssue> issuesToBeSaved = new HashSet<JiraIssue>();
-
         Pattern pattern = site.getIssuePattern();
 
         if (LOGGER.isLoggable(Level.FINE)) {
@@ -45,80 +46,161 @@ public class JiraChangeLogAnnotator extends ChangeLogAnnotator {
 
         String plainText = text.getText();
 
-        Matcher m = pattern.matcher(plainText);
+        // the changelog of a completed build doesn't change, nor does its markup
+        String buildKey = getBuildKey(build);
+        AnnotationKey key = buildKey != null ? new AnnotationKey(buildKey, plainText, site, pattern) : null;
+        List<Span> spans = key != null ? ANNOTATIONS.getIfPresent(key) : null;
+        if (spans == null) {
+            spans = new ArrayList<Span>();
+            boolean complete = computeSpans(build, change, site, pattern, plainText, spans);
+            if (key != null && complete) {
+                ANNOTATIONS.put(key, spans);
+            }
+        }
 
-        while (m.find()) {
-            if (m.groupCount() >= 1) {
+        for (Span span : spans) {
+            text.addMarkup(span.start, span.end, span.startTag, span.endTag);
+        }
+    }
 
-                String id = m.group(1);
+    /**
+     * Finds the issues in the text, and how to mark them up.
+     *
+     * @return false if the details of some issue couldn't be fetched, and the spans may be better next time
+     */
+    private boolean computeSpans(AbstractBuild<?, ?> build, Entry change, JiraSite site, Pattern pattern,
+            String plainText, List<Span> spans) {
+        // if there's any recorded detail information, try to use that, too.
+        JiraBuildAction a = build.getAction(JiraBuildAction.class);
 
-                if (!site.existsIssue(id)) {
-                    LOGGER.log(Level.INFO, "No known JIRA project corresponding to id: ''{0}''", id);
-                    continue;
-                }
+        Set<JiraIssue> issuesToBeSaved = new HashSet<JiraIssue>();
+        boolean complete = true;
 
-                LOGGER.log(Level.INFO, "Annotating JIRA id: ''{0}''", id);
+        // prefer the offsets recorded when the changelog was parsed over matching the pattern again
+        JiraChangeLogIndex.EntryIssues indexed = getIndexedIssues(build, change, pattern, plainText);
+        if (indexed != null) {
+            for (int i = 0; i < indexed.size(); i++) {
+                int start = indexed.getStart(i);
+                int end = indexed.getEnd(i);
+                complete &= annotate(site, a, plainText.substring(start, end), start, end, spans, issuesToBeSaved);
+            }
+        } else {
+            Matcher m = pattern.matcher(plainText);
 
-                URL url, alternativeUrl;
-                try {
-                    url = site.getUrl(id);
-                } catch (MalformedURLException e) {
-                    throw new AssertionError(e); // impossible
+            while (m.find()) {
+                if (m.groupCount() >= 1) {
+                    complete &= annotate(site, a, m.group(1), m.start(1), m.end(1), spans, issuesToBeSaved);
+                } else {
+                    LOGGER.log(Level.WARNING, "The JIRA pattern " + pattern + " doesn't define a capturing group!");
                 }
+            }
+        }
 
-                try {
-                    alternativeUrl = site.getAlternativeUrl(id);
-                    if (alternativeUrl != null) {
-                        url = alternativeUrl;
-                    }
-                } catch (MalformedURLException e) {
-                    LOGGER.log(Level.WARNING, "Failed to construct alternative URL for JIRA link. " + e.getMessage());
-                    // This should not fail, since we already have an URL object. Exceptions would happen elsewhere.
-                    throw new AssertionError(e);
-                }
+        if (!issuesToBeSaved.isEmpty()) {
+            saveIssues(build, issuesToBeSaved);
+        }
+        return complete;
+    }
 
-                JiraIssue issue = null;
-                if (a != null) {
-                    issue = a.getIssue(id);
-                }
+    /**
+     * @return false if the details of the issue couldn't be fetched, or it's not known yet which site it belongs to
+     */
+    private boolean annotate(JiraSite site, JiraBuildAction a, String id, int start, int end,
+            List<Span> spans, Set<JiraIssue> issuesToBeSaved) {
+        if (!site.existsIssue(id)) {
+            // the issue may belong to another configured JIRA
+            JiraSiteRouter router = getRouter();
+            JiraSite other = router.route(id);
+            if (other == null) {
+                LOGGER.log(Level.INFO, "No known JIRA project corresponding to id: ''{0}''", id);
+                // settled only once the projects of every site are known
+                return site.hasProjectKeys() && router.isComplete();
+            }
+            site = other;
+        }
 
-                if (issue == null) {
-                    try {
-                        issue = site.getIssue(id);
-                        if (issue != null) {
-                            issuesToBeSaved.add(issue);
-                        }
-                    } catch (Exception e) {
-                        LOGGER.log(Level.WARNING, "Error getting remote issue " + id, e);
-                    }
-                }
+        LOGGER.log(Level.INFO, "Annotating JIRA id: ''{0}''", id);
 
-                if (issue == null) {
-                    text.addMarkup(m.start(1), m.end(1), "<a href='" + url + "'>", "</a>");
-                } else {
-                    text.addMarkup(m.start(1), m.end(1),
-                            String.format("<a href='%s' tooltip='%s'>", url, Util.escape(issue.title)), "</a>");
-                }
+        URL url, alternativeUrl;
+        try {
+            url = site.getUrl(id);
+        } catch (MalformedURLException e) {
+            throw new AssertionError(e); // impossible
+        }
 
-            } else {
-                LOGGER.log(Level.WARNING, "The JIRA pattern " + pattern + " doesn't define a capturing group!");
+        try {
+            alternativeUrl = site.getAlternativeUrl(id);
+            if (alternativeUrl != null) {
+                url = alternativeUrl;
             }
+        } catch (MalformedURLException e) {
+            LOGGER.log(Level.WARNING, "Failed to construct alternative URL for JIRA link. " + e.getMessage());
+            // This should not fail, since we already have an URL object. Exceptions would happen elsewhere.
+            throw new AssertionError(e);
         }
 
-        if (!issuesToBeSaved.isEmpty()) {
-            saveIssues(build, a, issuesToBeSaved);
+        JiraIssue issue = null;
+        if (a != null) {
+            issue = a.getIssue(id);
         }
-    }
 
-    private void saveIssues(AbstractBuild<?, ?> build, JiraBuildAction a,
-            Set<JiraIssue> issuesToBeSaved) {
-        if (a != null) {
-            a.addIssues(issuesToBeSaved);
+        boolean complete = true;
+        if (issue == null) {
+            try {
+                issue = site.getIssue(id);
+                if (issue != null) {
+                    issuesToBeSaved.add(issue);
+                }
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Error getting remote issue " + id, e);
+                complete = false;
+            }
+        }
+
+        if (issue == null) {
+            spans.add(new Span(start, end, "<a href='" + url + "'>", "</a>"));
         } else {
-            JiraBuildAction action = new JiraBuildAction(build, issuesToBeSaved);
-            build.addAction(action);
+            spans.add(new Span(start, end,
+                    String.format("<a href='%s' tooltip='%s'>", url, Util.escape(issue.title)), "</a>"));
+        }
+        return complete;
+    }
+
+    /**
+     * Gets the issue keys recorded for the given entry when the changelog was parsed.
+     *
+     * @return null if there's no usable record, and the text must be matched against the pattern
+     */
+    private JiraChangeLogIndex.EntryIssues getIndexedIssues(AbstractBuild<?, ?> build, Entry change,
+            Pattern pattern, String plainText) {
+        if (change == null) {
+            return null;
+        }
+        JiraChangeLogIndex index = build.getAction(JiraChangeLogIndex.class);
+        if (index == null || !index.isBuiltWith(pattern)) {
+            return null;
         }
+        JiraChangeLogIndex.EntryIssues issues = index.getEntry(build.getChangeSet(), change);
+        if (issues == null) {
+            return null;
+        }
+        // make sure the offsets still fit the text we're asked to annotate
+        for (int i = 0; i < issues.size(); i++) {
+            String key = issues.getKey(i);
+            int start = issues.getStart(i);
+            if (issues.getEnd(i) > plainText.length()
+                    || !plainText.regionMatches(true, start, key, 0, key.length())) {
+                return null;
+            }
+        }
+        return issues;
+    }
 
+    private void saveIssues(AbstractBuild<?, ?> build, Set<JiraIssue> issuesToBeSaved) {
+        // the issues are kept outside of the build record, which only needs saving for a new action
+        if (!JiraBuildAction.record(build, issuesToBeSaved)) {
+            return;
+        }
         try {
             build.save();
         } catch (final IOException e) {
@@ -129,4 +211,83 @@ public class JiraChangeLogAnnotator extends ChangeLogAnnotator {
     JiraSite getSiteForProject(AbstractProject<?, ?> project) {
         return JiraSite.get(project);
     }
+
+    /**
+     * Identifies a build whose changelog markup can be kept.
+     *
+     * @return null if the build is still running
+     */
+    String getBuildKey(AbstractBuild<?, ?> build) {
+        AbstractProject<?, ?> project = build.getProject();
+        if (project == null || build.isBuilding()) {
+            return null;
+        }
+        return project.getFullName() + '#' + build.getNumber();
+    }
+
+    JiraSiteRouter getRouter() {
+        return JiraProjectProperty.DESCRIPTOR.getRegistry().getRouter();
+    }
+
+    /**
+     * Forgets all markup, as the sites or their patterns changed.
+     */
+    static void invalidateAnnotations() {
+        ANNOTATIONS.invalidateAll();
+    }
+
+    /**
+     * Markup of the issue keys in one changelog entry.
+     */
+    private static final class Span {
+        final int start;
+        final int end;
+        final String startTag;
+        final String endTag;
+
+        Span(int start, int end, String startTag, String endTag) {
+            this.start = start;
+            this.end = end;
+            this.startTag = startTag;
+            this.endTag = endTag;
+        }
+    }
+
+    /**
+     * An entry of a completed build, annotated for a site and pattern.
+     * Entries are told apart by their text, which is all the markup depends on.
+     */
+    private static final class AnnotationKey {
+        private final String build;
+        private final String text;
+        private final JiraSite site;
+        private final String pattern;
+
+        AnnotationKey(String build, String text, JiraSite site, Pattern pattern) {
+            this.build = build;
+            this.text = text;
+            this.site = site;
+            this.pattern = pattern.pattern();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof AnnotationKey)) {
+                return false;
+            }
+            AnnotationKey that = (AnnotationKey) o;
+            return build.equals(that.build) && text.equals(that.text)
+                    && site == that.site && pattern.equals(that.pattern);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * build.hashCode() + text.hashCode()) + pattern.hashCode();
+        }
+    }
+
+    private static final Cache<AnnotationKey, List<Span>> ANNOTATIONS = CacheBuilder.newBuilder()
+            .maximumSize(Integer.getInteger(JiraChangeLogAnnotator.class.getName() + ".cacheSize", 10000))
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .build();
 }
@@ -0,0 +1,235 @@
+package hudson.plugins.jira;
+
+import hudson.model.AbstractBuild;
+import hudson.model.InvisibleAction;
+import hudson.scm.ChangeLogSet;
+import hudson.scm.ChangeLogSet.Entry;
+
+import org.apache.commons.lang.StringUtils;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * JIRA issue keys found in the changelog of a build, per changelog entry and with
+ * the position of each key in the entry's message.
+ * Written once when the changelog is parsed, or when a downstream build first looks at it,
+ * so that neither {@link Updater}, {@link JiraChangeLogAnnotator} nor {@link JiraIssueBuildIndex}
+ * need to scan the changelog again.
+ *
+ * @see JiraSCMListener
+ */
+@ExportedBean
+public class JiraChangeLogIndex extends InvisibleAction {
+    private static final Logger LOGGER = Logger.getLogger(JiraChangeLogIndex.class.getName());
+
+    /**
+     * The issue pattern the changelog was scanned with.
+     */
+    private final String pattern;
+
+    /**
+     * One item per changelog entry, in changelog order.
+     */
+    private final EntryIssues[] entries;
+
+    /**
+     * Maps the entries of the (cached) changelog to {@link #entries}, computed on first use.
+     */
+    private transient volatile Map<Entry, EntryIssues> entriesByChange;
+
+    private JiraChangeLogIndex(Pattern pattern, EntryIssues[] entries) {
+        this.pattern = pattern.pattern();
+        this.entries = entries;
+    }
+
+    /**
+     * Scans the given changelog for issue keys.
+     *
+     * @return null if the pattern doesn't define a capturing group for the issue key
+     */
+    public static JiraChangeLogIndex create(ChangeLogSet<?> changelog, Pattern pattern) {
+        if (pattern.matcher("").groupCount() < 1) {
+            return null;
+        }
+
+        List<EntryIssues> entries = new ArrayList<EntryIssues>();
+        for (Entry change : changelog) {
+            entries.add(EntryIssues.scan(change.getMsg(), pattern));
+        }
+        return new JiraChangeLogIndex(pattern, entries.toArray(new EntryIssues[entries.size()]));
+    }
+
+    /**
+     * Indexes the changelog of the given build with the pattern, unless it already is.
+     *
+     * @param save whether to persist the build record right away
+     */
+    static void index(AbstractBuild<?, ?> build, Pattern pattern, boolean save) {
+        synchronized (build) {
+            JiraChangeLogIndex index = build.getAction(JiraChangeLogIndex.class);
+            if (index != null) {
+                if (index.isBuiltWith(pattern)) {
+                    return;
+                }
+                build.getActions().remove(index);
+            }
+            ChangeLogSet<?> changelog = build.getChangeSet();
+            index = changelog != null ? create(changelog, pattern) : null;
+            if (index == null) {
+                return;
+            }
+            build.addAction(index);
+        }
+
+        if (save) {
+            try {
+                build.save();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to remember the JIRA issues of " + build, e);
+            }
+        }
+    }
+
+    /**
+     * @return true if the changelog was scanned with the given pattern, and this index is thus still valid
+     */
+    public boolean isBuiltWith(Pattern pattern) {
+        return this.pattern.equals(pattern.pattern());
+    }
+
+    /**
+     * All issue keys found in the changelog, upper case.
+     */
+    @Exported
+    public Set<String> getIssueKeys() {
+        Set<String> keys = new LinkedHashSet<String>();
+        for (EntryIssues entry : entries) {
+            keys.addAll(Arrays.asList(entry.keys));
+        }
+        return keys;
+    }
+
+    /**
+     * The issues found per changelog entry, in changelog order.
+     */
+    @Exported
+    public List<EntryIssues> getEntries() {
+        return Collections.unmodifiableList(Arrays.asList(entries));
+    }
+
+    /**
+     * Gets the issues found in the given entry of the build's changelog.
+     *
+     * @return null if the entry isn't part of the given changelog, or the changelog changed since it was indexed
+     */
+    public EntryIssues getEntry(ChangeLogSet<?> changelog, Entry change) {
+        Map<Entry, EntryIssues> map = entriesByChange;
+        if (map == null || !map.containsKey(change)) {
+            // the changelog is loaded lazily, and may have been reloaded since
+            map = new IdentityHashMap<Entry, EntryIssues>();
+            int i = 0;
+            for (Entry e : changelog) {
+                if (i >= entries.length) {
+                    return null;
+                }
+                map.put(e, entries[i++]);
+            }
+            if (i != entries.length) {
+                return null;
+            }
+            entriesByChange = map;
+        }
+        return map.get(change);
+    }
+
+    /**
+     * The issue keys found in one changelog entry.
+     */
+    @ExportedBean(defaultVisibility = 2)
+    public static final class EntryIssues {
+        private static final String[] NO_KEYS = new String[0];
+        private static final int[] NO_OFFSETS = new int[0];
+
+        /**
+         * Upper case issue keys, in the order they appear in the message.
+         */
+        private final String[] keys;
+
+        /**
+         * Start and end offsets of each of {@link #keys} in the message.
+         */
+        private final int[] starts, ends;
+
+        private EntryIssues(String[] keys, int[] starts, int[] ends) {
+            this.keys = keys;
+            this.starts = starts;
+            this.ends = ends;
+        }
+
+        static EntryIssues scan(String msg, Pattern pattern) {
+            List<String> keys = new ArrayList<String>();
+            List<Integer> offsets = new ArrayList<Integer>();
+            Matcher m = pattern.matcher(StringUtils.defaultString(msg));
+            while (m.find()) {
+                if (m.group(1) == null) {
+                    continue;
+                }
+                keys.add(StringUtils.upperCase(m.group(1)));
+                offsets.add(m.start(1));
+                offsets.add(m.end(1));
+            }
+            if (keys.isEmpty()) {
+                return new EntryIssues(NO_KEYS, NO_OFFSETS, NO_OFFSETS);
+            }
+
+            int[] starts = new int[keys.size()];
+            int[] ends = new int[keys.size()];
+            for (int i = 0; i < starts.length; i++) {
+                starts[i] = offsets.get(2 * i);
+                ends[i] = offsets.get(2 * i + 1);
+            }
+            return new EntryIssues(keys.toArray(new String[keys.size()]), starts, ends);
+        }
+
+        @Exported
+        public List<String> getKeys() {
+            return Collections.unmodifiableList(Arrays.asList(keys));
+        }
+
+        public int size() {
+            return keys.length;
+        }
+
+        public String getKey(int i) {
+            return keys[i];
+        }
+
+        /**
+         * Offset of the i-th key in the entry's message.
+         */
+        public int getStart(int i) {
+            return starts[i];
+        }
+
+        /**
+         * Offset right after the i-th key in the entry's message.
+         */
+        public int getEnd(int i) {
+            return ends[i];
+        }
+    }
+}
@@ -22,8 +22,9 @@ import org.kohsuke.stapler.StaplerRequest;
 
 import javax.xml.rpc.ServiceException;
 
-import java.io.*;
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.logging.Logger;
 
 /**
@@ -43,14 +44,26 @@ public class JiraCreateIssueNotifier extends Notifier {
     private String assignee;
     private String component;
 
-    @DataBoundConstructor
+    /**
+     * Whether jobs failing the same way share one issue.
+     */
+    private boolean groupBySignature;
+
+    @Deprecated
     public JiraCreateIssueNotifier(String projectKey, String testDescription, String assignee, String component) {
+        this(projectKey, testDescription, assignee, component, false);
+    }
+
+    @DataBoundConstructor
+    public JiraCreateIssueNotifier(String projectKey, String testDescription, String assignee, String component,
+                                   boolean groupBySignature) {
         if (projectKey == null) throw new IllegalArgumentException("Project key cannot be null");
         this.projectKey = projectKey;
 
         this.testDescription = testDescription;
         this.assignee = assignee;
         this.component = component;
+        this.groupBySignature = groupBySignature;
     }
 
     public String getProjectKey() {
@@ -85,6 +98,14 @@ public class JiraCreateIssueNotifier extends Notifier {
         this.component = component;
     }
 
+    public boolean isGroupBySignature() {
+        return groupBySignature;
+    }
+
+    public void setGroupBySignature(boolean groupBySignature) {
+        this.groupBySignature = groupBySignature;
+    }
+
     @Override
     public BuildStepDescriptor<Publisher> getDescriptor() {
         return DESCRIPTOR;
@@ -94,326 +115,332 @@ public class JiraCreateIssueNotifier extends Notifier {
     public static final DescriptorImpl DESCRIPTOR = new DescriptorImpl();
 
     public BuildStepMonitor getRequiredMonitorService() {
-        return BuildStepMonitor.BUILD;
+        // concurrent builds coordinate through JiraCreateIssueState
+        return BuildStepMonitor.NONE;
+    }
+
+    /**
+     * Gets the state the builds of the given job share.
+     */
+    JiraCreateIssueState getState(AbstractProject<?, ?> project) throws IOException {
+        return JiraCreateIssueState.of(project);
     }
 
     @Override
     public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener) throws IOException, InterruptedException {
 
-        String jobDirPath = Jenkins.getInstance().getBuildDirFor(build.getProject()).getPath();
-        String filename = jobDirPath + File.separator + "issue.txt";
-
         EnvVars environmentVariable = build.getEnvironment(TaskListener.NULL);
 
         Result currentBuildResult = build.getResult();
 
         Result previousBuildResult = null;
-        AbstractBuild<?, ?> previousBuild = build.getPreviousBuild();
+        // builds may overlap, and only a completed build has a result
+        AbstractBuild<?, ?> previousBuild = build.getPreviousCompletedBuild();
 
         if (previousBuild != null) {
             previousBuildResult = previousBuild.getResult();
         }
 
         if (currentBuildResult != Result.ABORTED && previousBuild != null) {
-            if (currentBuildResult == Result.FAILURE) {
-                currentBuildResultFailure(build, listener, previousBuildResult, filename, environmentVariable);
-            }
+            Context context = new Context(build, listener, environmentVariable);
+            try {
+                if (currentBuildResult == Result.FAILURE) {
+                    context.currentBuildResultFailure(previousBuildResult);
+                }
 
-            if (currentBuildResult == Result.SUCCESS) {
-                currentBuildResultSuccess(build, listener, previousBuildResult, filename, environmentVariable);
+                if (currentBuildResult == Result.SUCCESS) {
+                    context.currentBuildResultSuccess(previousBuildResult);
+                }
+            } finally {
+                context.calls.printSummary(listener.getLogger());
+                JiraCallsAction.add(build, context.calls);
             }
         }
         return true;
     }
 
     /**
-     * It creates a issue in the given project, with the given description, assignee,components and summary.
-     * The created issue ID is saved to the file at "filename".
-     *
-     * @param build
-     * @param filename
-     * @return issue id
-     * @throws ServiceException
-     * @throws IOException
-     * @throws InterruptedException
+     * The JIRA interaction of a single build, which uses one session and looks up the status
+     * of an issue at most once.
      */
-    private RemoteIssue createJiraIssue(AbstractBuild<?, ?> build, String filename) throws ServiceException, IOException, InterruptedException {
-
-        EnvVars environmentVariable = build.getEnvironment(TaskListener.NULL);
-
-        String buildURL = environmentVariable.get("BUILD_URL");
-        String buildNumber = environmentVariable.get("BUILD_NUMBER");
-        String jobName = environmentVariable.get("JOB_NAME");
-        String jenkinsURL = Jenkins.getInstance().getRootUrl();
-
-        String checkDescription = (this.testDescription == "") ? "No description is provided" : this.testDescription;
-        String description = "The test " + jobName + " has failed." + "\n\n" + checkDescription + "\n\n" + "* First failed run : [" +
-                buildNumber + "|" + buildURL + "]" + "\n" + "** [console log|" + buildURL.concat("console") + "]";
-
-        RemoteComponent[] components = getJiraComponents(build, this.component);
+    private final class Context {
+        private final AbstractBuild<?, ?> build;
+        private final BuildListener listener;
+        private final EnvVars environmentVariable;
+        private final Map<String, String> statuses = new HashMap<String, String>();
+        private final JiraCallStats calls = new JiraCallStats();
+        private JiraInteractionSession session;
+
+        Context(AbstractBuild<?, ?> build, BuildListener listener, EnvVars environmentVariable) {
+            this.build = build;
+            this.listener = listener;
+            this.environmentVariable = environmentVariable;
+        }
 
-        String summary = "Test " + jobName + " failure - " + jenkinsURL;
+        /**
+         * It creates a issue in the given project, with the given description, assignee,components and summary.
+         * The created issue ID is recorded in the job's {@link JiraCreateIssueState}.
+         *
+         * @return issue id
+         */
+        private RemoteIssue createJiraIssue(JiraCreateIssueState state) throws ServiceException, IOException {
+
+            String buildURL = environmentVariable.get("BUILD_URL");
+            String buildNumber = environmentVariable.get("BUILD_NUMBER");
+            String jobName = environmentVariable.get("JOB_NAME");
+            String jenkinsURL = Jenkins.getInstance().getRootUrl();
+
+            String checkDescription = (testDescription == "") ? "No description is provided" : testDescription;
+            String description = "The test " + jobName + " has failed." + "\n\n" + checkDescription + "\n\n" + "* First failed run : [" +
+                    buildNumber + "|" + buildURL + "]" + "\n" + "** [console log|" + buildURL.concat("console") + "]";
 
-        JiraInteractionSession session = getJiraSession(build);
-        RemoteIssue issue = session.createIssue(projectKey, description, assignee, components, summary);
+            RemoteComponent[] components = getJiraComponents(component);
 
-        //writing the issue-id to the file, which is present in job's directory.
-        writeInFile(filename, issue);
-        return issue;
-    }
+            String summary = "Test " + jobName + " failure - " + jenkinsURL;
 
-    /**
-     * Returns the status of the issue.
-     *
-     * @param build
-     * @param id
-     * @return Status of the issue
-     * @throws ServiceException
-     * @throws IOException
-     */
-    private String getStatus(AbstractBuild<?, ?> build, String id) throws ServiceException, IOException {
+            RemoteIssue issue = getJiraSession().createIssue(projectKey, description, assignee, components, summary);
 
-        JiraInteractionSession session = getJiraSession(build);
-        RemoteIssue issue = session.getIssueByKey(id);
-        return issue.getStatus();
-    }
+            state.setIssueKey(issue.getKey(), build.getNumber());
+            return issue;
+        }
 
-    /**
-     * Adds a comment to the existing issue.
-     *
-     * @param build
-     * @param id
-     * @param comment
-     * @throws ServiceException
-     * @throws IOException
-     */
-    private void addComment(AbstractBuild<?, ?> build, String id, String comment) throws ServiceException, IOException {
+        /**
+         * Creates an issue like {@link #createJiraIssue(JiraCreateIssueState)}, unless {@link #groupBySignature}
+         * is set and another job failing the same way already has one. Then the job joins that issue
+         * and a comment listing the affected jobs is added to it.
+         *
+         * @return issue id
+         */
+        private String createOrJoinJiraIssue(JiraCreateIssueState state) throws ServiceException, IOException {
+            if (!groupBySignature) {
+                return createJiraIssue(state).getKey();
+            }
 
-        JiraInteractionSession session = getJiraSession(build);
-        session.addCommentWithoutConstrains(id, comment);
-    }
+            FailureFingerprint fingerprint = FailureFingerprint.of(build);
+            FailureSignatureIndex.Group group = FailureSignatureIndex.INSTANCE.get(projectKey, fingerprint);
+            String jobName = build.getProject().getFullName();
+            synchronized (group) {
+                String issueId = group.getIssueKey();
+                if (issueId != null && getStatus(issueId).equals("6")) {
+                    group.clear(issueId);
+                    issueId = null;
+                }
 
-    /**
-     * Returns an Array of componets given by the user
-     *
-     * @param build
-     * @param component
-     * @return Array of component
-     * @throws ServiceException
-     * @throws IOException
-     */
-    private RemoteComponent[] getJiraComponents(AbstractBuild<?, ?> build, String component) throws ServiceException, IOException {
+                if (issueId == null) {
+                    issueId = createJiraIssue(state).getKey();
+                    group.setIssueKey(issueId);
+                    group.addJob(jobName);
+                    return issueId;
+                }
 
-        if (Util.fixEmpty(component) == null) {
-            return null;
+                listener.getLogger().println("[JIRA] Failure signature " + fingerprint + " matches issue " + issueId);
+                if (group.addJob(jobName)) {
+                    String buildURL = environmentVariable.get("BUILD_URL");
+                    String buildNumber = environmentVariable.get("BUILD_NUMBER");
+                    String comment = "- Job " + jobName + " failed the same way." + "\n" + "- Failed run : [" +
+                            buildNumber + "|" + buildURL + "]" + "\n" + "** [console log|" + buildURL.concat("console") + "]" +
+                            "\n" + "- Jobs failing this way : " + Util.join(group.getJobs(), ", ");
+                    addComment(issueId, comment);
+                }
+                state.setIssueKey(issueId, build.getNumber());
+                return issueId;
+            }
         }
 
-        JiraInteractionSession session = getJiraSession(build);
-        RemoteComponent availableComponents[] = session.getComponents(projectKey);
-
-        //To store all the componets of the particular project
-        HashMap<String, String> components = new HashMap<String, String>();
+        /**
+         * Returns the status of the issue.
+         *
+         * @param id
+         * @return Status of the issue
+         * @throws ServiceException
+         * @throws IOException
+         */
+        private String getStatus(String id) throws ServiceException, IOException {
+            String status = statuses.get(id);
+            if (status == null) {
+                RemoteIssue issue = getJiraSession().getIssueByKey(id);
+                status = issue.getStatus();
+                statuses.put(id, status);
+            }
+            return status;
+        }
 
-        //converting the user input as a string array
-        String inputComponents[] = component.split(",");
-        int numberOfComponents = inputComponents.length;
-        RemoteComponent allcomponents[] = new RemoteComponent[numberOfComponents];
-        for (RemoteComponent rc : availableComponents) {
-            String name = rc.getName();
-            String id = rc.getId();
-            components.put(name, id);
+        /**
+         * Adds a comment to the existing issue.
+         */
+        private void addComment(String id, String comment) throws ServiceException, IOException {
+            getJiraSession().addCommentWithoutConstrains(id, comment);
         }
-        int i = 0;
-        while (i < numberOfComponents) {
-            RemoteComponent componentIssue = new RemoteComponent();
-            String userInput = inputComponents[i];
-            String id = "";
-            for (String key : components.keySet()) {
-                if (userInput.equalsIgnoreCase(key)) {
-                    id = components.get(key);
-                }
+
+        /**
+         * Returns an Array of componets given by the user
+         *
+         * @param component
+         * @return Array of component
+         * @throws ServiceException
+         * @throws IOException
+         */
+        private RemoteComponent[] getJiraComponents(String component) throws ServiceException, IOException {
+
+            if (Util.fixEmpty(component) == null) {
+                return null;
             }
-            componentIssue.setName(userInput);
-            componentIssue.setId(id);
-            allcomponents[i] = componentIssue;
-            i++;
-        }
-        return allcomponents;
-    }
 
-    /**
-     * Returns the issue id
-     *
-     * @param filename
-     * @return
-     * @throws IOException
-     * @throws InterruptedException
-     */
-    private String getIssue(String filename) throws IOException, InterruptedException {
+            RemoteComponent availableComponents[] = getJiraSession().getComponents(projectKey);
 
-        String issueId = "";
-        BufferedReader br = null;
-        try {
-            String issue;
-            br = new BufferedReader(new FileReader(filename));
+            //To store all the componets of the particular project
+            HashMap<String, String> components = new HashMap<String, String>();
 
-            while ((issue = br.readLine()) != null) {
-                issueId = issue;
+            //converting the user input as a string array
+            String inputComponents[] = component.split(",");
+            int numberOfComponents = inputComponents.length;
+            RemoteComponent allcomponents[] = new RemoteComponent[numberOfComponents];
+            for (RemoteComponent rc : availableComponents) {
+                String name = rc.getName();
+                String id = rc.getId();
+                components.put(name, id);
             }
-            return issueId;
-        } catch (FileNotFoundException e) {
-            System.out.println("There is no such file...!!");
-            return null;
-        } finally {
-            if (br != null) {
-                br.close();
+            int i = 0;
+            while (i < numberOfComponents) {
+                RemoteComponent componentIssue = new RemoteComponent();
+                String userInput = inputComponents[i];
+                String id = "";
+                for (String key : components.keySet()) {
+                    if (userInput.equalsIgnoreCase(key)) {
+                        id = components.get(key);
+                    }
+                }
+                componentIssue.setName(userInput);
+                componentIssue.setId(id);
+                allcomponents[i] = componentIssue;
+                i++;
             }
+            return allcomponents;
         }
 
-    }
+        /**
+         * Returns the jira session, which is looked up once per build.
+         *
+         * @return JiraSession
+         * @throws ServiceException
+         * @throws IOException
+         */
+        private JiraInteractionSession getJiraSession() throws ServiceException, IOException {
+            if (session != null) {
+                return session;
+            }
 
-    /**
-     * Returns the jira session.
-     *
-     * @param build
-     * @return JiraSession
-     * @throws ServiceException
-     * @throws IOException
-     */
-    private JiraInteractionSession getJiraSession(AbstractBuild<?, ?> build) throws ServiceException, IOException {
+            JiraSite site = JiraSite.get(build.getProject());
+            if (site == null) {
+                throw new IllegalStateException("JIRA site needs to be configured in the project " + build.getFullDisplayName());
+            }
 
-        JiraSite site = JiraSite.get(build.getProject());
-        if (site == null) {
-            throw new IllegalStateException("JIRA site needs to be configured in the project " + build.getFullDisplayName());
-        }
+            session = site.getSession();
+            if (session == null) {
+                throw new IllegalStateException("Remote SOAP access for JIRA isn't configured in Jenkins");
+            }
 
-        JiraInteractionSession session = site.getSession();
-        if (session == null) {
-            throw new IllegalStateException("Remote SOAP access for JIRA isn't configured in Jenkins");
+            session = calls.instrument(session);
+            return session;
         }
 
-        return session;
-    }
-
-    /**
-     * @param filename
-     */
-    private void deleteFile(String filename, TaskListener listener) {
-        File file = new File(filename);
-        if (file.exists()) {
-            if (!file.delete()) {
-                if (file.exists()) {
-                    listener.getLogger().println("WARNING: couldn't delete file: " + filename);
+        /**
+         * when the current build fails it checks for the previous build's result,
+         * creates jira issue if the result was "success" and adds comment if the result was "fail".
+         * It adds comment until the previously created issue is closed.
+         */
+        void currentBuildResultFailure(Result previousBuildResult) throws InterruptedException, IOException {
+
+            String buildURL = environmentVariable.get("BUILD_URL");
+            String buildNumber = environmentVariable.get("BUILD_NUMBER");
+            JiraCreateIssueState state = getState(build.getProject());
+            if (previousBuildResult == Result.FAILURE) {
+                String comment = "- Job is still failing." + "\n" + "- Failed run : [" +
+                        buildNumber + "|" + buildURL + "]" + "\n" + "** [console log|" + buildURL.concat("console") + "]";
+                //Get the issue-id which was filed when the previous built failed
+                String issueId = state.getIssueKey();
+                if (issueId != null) {
+                    listener.getLogger().println("*************************Test fails again******************************");
+                    try {
+                        //The status of the issue which was filed when the previous build failed
+                        String Status = getStatus(issueId);
+
+                        //Status=1=Open OR Status=5=Resolved
+                        if (Status.equals("1") || Status.equals("5")) {
+                            listener.getLogger().println("The previous build also failed creating issue with issue ID " + issueId);
+                            addComment(issueId, comment);
+                        }
+
+                        if (Status.equals("6")) {
+                            listener.getLogger().println("The previous build also failed but the issue is closed");
+                            synchronized (state) {
+                                // a concurrent build may have replaced the closed issue already
+                                if (state.clear(issueId, build.getNumber())) {
+                                    String newIssueId = createOrJoinJiraIssue(state);
+                                    listener.getLogger().println("Creating jira issue with issue ID " + newIssueId);
+                                }
+                            }
+                        }
+                    } catch (ServiceException e) {
+                        e.printStackTrace();
+                    }
                 }
-                // else: race condition? Someone else deleted it for us
             }
-        }
-    }
-
-    /**
-     * write's the issue id in the file, which is stored in the Job's directory
-     *
-     * @param Filename
-     * @param issue
-     * @throws FileNotFoundException
-     */
-    private void writeInFile(String Filename, RemoteIssue issue) throws FileNotFoundException {
-        PrintWriter writer = new PrintWriter(Filename);
-        writer.println(issue.getKey());
-        writer.close();
-    }
-
-    /**
-     * when the current build fails it checks for the previous build's result,
-     * creates jira issue if the result was "success" and adds comment if the result was "fail".
-     * It adds comment until the previously created issue is closed.
-     */
-    private void currentBuildResultFailure(AbstractBuild<?, ?> build, BuildListener listener, Result previousBuildResult,
-                                           String filename, EnvVars environmentVariable) throws InterruptedException, IOException {
 
-        String buildURL = environmentVariable.get("BUILD_URL");
-        String buildNumber = environmentVariable.get("BUILD_NUMBER");
-        if (previousBuildResult == Result.FAILURE) {
-            String comment = "- Job is still failing." + "\n" + "- Failed run : [" +
-                    buildNumber + "|" + buildURL + "]" + "\n" + "** [console log|" + buildURL.concat("console") + "]";
-            //Get the issue-id which was filed when the previous built failed
-            String issueId = getIssue(filename);
-            if (issueId != null) {
-                listener.getLogger().println("*************************Test fails again******************************");
+            if (previousBuildResult == Result.SUCCESS || previousBuildResult == Result.ABORTED) {
                 try {
-                    //The status of the issue which was filed when the previous build failed
-                    String Status = getStatus(build, issueId);
-
-                    //Status=1=Open OR Status=5=Resolved
-                    if (Status.equals("1") || Status.equals("5")) {
-                        listener.getLogger().println("The previous build also failed creating issue with issue ID " + issueId);
-                        addComment(build, issueId, comment);
+                    synchronized (state) {
+                        // don't file a second issue if a concurrent build already did for this failure
+                        if (state.getIssueKey() != null && state.getBuildNumber() >= build.getPreviousCompletedBuild().getNumber()) {
+                            listener.getLogger().println("Build #" + state.getBuildNumber()
+                                    + " already created jira issue with issue ID " + state.getIssueKey());
+                            return;
+                        }
+                        String issueId = createOrJoinJiraIssue(state);
+                        listener.getLogger().println("**************************Test Fails******************************");
+                        listener.getLogger().println("Creating jira issue with issue ID"
+                                + " " + issueId);
                     }
 
-                    if (Status.equals("6")) {
-                        listener.getLogger().println("The previous build also failed but the issue is closed");
-                        deleteFile(filename, listener);
-                        RemoteIssue issue = createJiraIssue(build, filename);
-                        listener.getLogger().println("Creating jira issue with issue ID " + issue.getKey());
-                    }
                 } catch (ServiceException e) {
-                    e.printStackTrace();
+                    listener.error("Error creating JIRA issue : " + e.getMessage());
+                    LOG.warning("Error creating JIRA issue\n" + e);
                 }
             }
         }
 
-        if (previousBuildResult == Result.SUCCESS || previousBuildResult == Result.ABORTED) {
-            try {
-                RemoteIssue issue = createJiraIssue(build, filename);
-                listener.getLogger().println("**************************Test Fails******************************");
-                listener.getLogger().println("Creating jira issue with issue ID"
-                        + " " + issue.getKey());
-
-            } catch (ServiceException e) {
-                listener.error("Error creating JIRA issue : " + e.getMessage());
-                LOG.warning("Error creating JIRA issue\n" + e);
-            }
-        }
-    }
-
-    /**
-     * when the current build's result is "success",
-     * it checks for the previous build's result and adds comment until the previously created issue is closed.
-     *
-     * @param build
-     * @param previousBuildResult
-     * @param filename
-     * @param environmentVariable
-     * @throws InterruptedException
-     * @throws IOException
-     */
-    private void currentBuildResultSuccess(AbstractBuild<?, ?> build, BuildListener listener, Result previousBuildResult,
-                                           String filename, EnvVars environmentVariable) throws InterruptedException, IOException {
-        String buildURL = environmentVariable.get("BUILD_URL");
-        String buildNumber = environmentVariable.get("BUILD_NUMBER");
-
-        if (previousBuildResult == Result.FAILURE || previousBuildResult == Result.SUCCESS) {
-            String comment = "- Job is not falling but the issue is still open." + "\n" + "- Passed run : [" +
-                    buildNumber + "|" + buildURL + "]" + "\n" + "** [console log|" + buildURL.concat("console") + "]";
-            String issueId = getIssue(filename);
-
-            //if issue exists it will check the status and comment or delete the file accordingly
-            if (issueId != null) {
-                try {
-                    String status = getStatus(build, issueId);
-
-                    //Status=1=Open OR Status=5=Resolved
-                    if (status.equals("1") || status.equals("5")) {
-                        addComment(build, issueId, comment);
+        /**
+         * when the current build's result is "success",
+         * it checks for the previous build's result and adds comment until the previously created issue is closed.
+         */
+        void currentBuildResultSuccess(Result previousBuildResult) throws InterruptedException, IOException {
+            String buildURL = environmentVariable.get("BUILD_URL");
+            String buildNumber = environmentVariable.get("BUILD_NUMBER");
+
+            if (previousBuildResult == Result.FAILURE || previousBuildResult == Result.SUCCESS) {
+                String comment = "- Job is not falling but the issue is still open." + "\n" + "- Passed run : [" +
+                        buildNumber + "|" + buildURL + "]" + "\n" + "** [console log|" + buildURL.concat("console") + "]";
+                JiraCreateIssueState state = getState(build.getProject());
+                String issueId = state.getIssueKey();
+
+                //if issue exists it will check the status and comment or forget it accordingly
+                if (issueId != null) {
+                    try {
+                        String status = getStatus(issueId);
+
+                        //Status=1=Open OR Status=5=Resolved
+                        if (status.equals("1") || status.equals("5")) {
+                            addComment(issueId, comment);
+                        }
+
+                        //if issue is in closed status
+                        if (status.equals("6")) {
+                            state.clear(issueId, build.getNumber());
+                        }
+                    } catch (ServiceException e) {
+                        listener.error("Error updating JIRA issue " + issueId + " : " + e.getMessage());
+                        LOG.warning("Error updating JIRA issue " + issueId + "\n" + e);
                     }
-
-                    //if issue is in closed status
-                    if (status.equals("6")) {
-                        deleteFile(filename, listener);
-                    }
-                } catch (ServiceException e) {
-                    listener.error("Error updating JIRA issue " + issueId + " : " + e.getMessage());
-                    LOG.warning("Error updating JIRA issue " + issueId + "\n" + e);
                 }
             }
         }
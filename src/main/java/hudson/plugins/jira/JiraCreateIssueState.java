@@ -0,0 +1,156 @@
+package hudson.plugins.jira;
+
+import hudson.XmlFile;
+import hudson.model.AbstractProject;
+import jenkins.model.Jenkins;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * The issue {@link JiraCreateIssueNotifier} created for the current failure of a job.
+ * <p>
+ * There is one instance per job, and builds of the job which run concurrently lock it while
+ * they decide on an issue, so that only one of them creates it.
+ * The state is written atomically to {@code jira-create-issue.xml} in the builds directory of the job.
+ */
+final class JiraCreateIssueState {
+    private static final Logger LOGGER = Logger.getLogger(JiraCreateIssueState.class.getName());
+
+    /**
+     * File the issue key was kept in by earlier versions.
+     */
+    private static final String LEGACY_FILE = "issue.txt";
+
+    /**
+     * Loaded states, as long as some build uses them.
+     */
+    private static final Cache<File, JiraCreateIssueState> STATES =
+            CacheBuilder.newBuilder().weakValues().build();
+
+    private transient XmlFile file;
+
+    private String issueKey;
+
+    /**
+     * Number of the build which last changed {@link #issueKey}.
+     */
+    private int buildNumber;
+
+    private JiraCreateIssueState(XmlFile file) {
+        this.file = file;
+    }
+
+    /**
+     * Gets the state of the given job.
+     */
+    static JiraCreateIssueState of(AbstractProject<?, ?> project) throws IOException {
+        return of(Jenkins.getInstance().getBuildDirFor(project));
+    }
+
+    /**
+     * Gets the state kept in the given builds directory.
+     */
+    static JiraCreateIssueState of(final File buildDir) throws IOException {
+        try {
+            return STATES.get(buildDir, new Callable<JiraCreateIssueState>() {
+                public JiraCreateIssueState call() throws IOException {
+                    return load(buildDir);
+                }
+            });
+        } catch (ExecutionException e) {
+            throw (IOException) new IOException("Failed to load the JIRA issue state from " + buildDir)
+                    .initCause(e.getCause());
+        }
+    }
+
+    private static JiraCreateIssueState load(File buildDir) throws IOException {
+        XmlFile file = new XmlFile(new File(buildDir, "jira-create-issue.xml"));
+        JiraCreateIssueState state = new JiraCreateIssueState(file);
+        if (file.exists()) {
+            file.unmarshal(state);
+            return state;
+        }
+
+        File legacy = new File(buildDir, LEGACY_FILE);
+        if (legacy.exists()) {
+            state.issueKey = readLegacyIssueKey(legacy);
+            if (state.issueKey != null) {
+                state.save();
+            }
+            if (!legacy.delete()) {
+                LOGGER.warning("Failed to delete " + legacy);
+            }
+        }
+        return state;
+    }
+
+    private static String readLegacyIssueKey(File legacy) throws IOException {
+        String issueKey = null;
+        BufferedReader reader = new BufferedReader(new FileReader(legacy));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().length() > 0) {
+                    issueKey = line.trim();
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return issueKey;
+    }
+
+    /**
+     * @return the key of the issue, or null if there is none
+     */
+    synchronized String getIssueKey() {
+        return issueKey;
+    }
+
+    synchronized int getBuildNumber() {
+        return buildNumber;
+    }
+
+    /**
+     * Records the issue created by the given build.
+     */
+    synchronized void setIssueKey(String issueKey, int buildNumber) throws IOException {
+        this.issueKey = issueKey;
+        this.buildNumber = buildNumber;
+        save();
+    }
+
+    /**
+     * Forgets the given issue, unless another build has already replaced it.
+     *
+     * @return whether the issue was forgotten
+     */
+    synchronized boolean clear(String issueKey, int buildNumber) {
+        if (this.issueKey == null || !this.issueKey.equals(issueKey)) {
+            return false;
+        }
+        this.issueKey = null;
+        this.buildNumber = buildNumber;
+        try {
+            save();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to save " + file, e);
+        }
+        return true;
+    }
+
+    private void save() throws IOException {
+        // XmlFile writes to a temporary file first and moves it in place
+        file.write(this);
+    }
+}
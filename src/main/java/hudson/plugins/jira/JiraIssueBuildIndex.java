@@ -0,0 +1,689 @@
+package hudson.plugins.jira;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.XmlFile;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Item;
+import hudson.model.ItemGroup;
+import hudson.model.Job;
+import hudson.model.Result;
+import hudson.model.RootAction;
+import hudson.model.TaskListener;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.RunListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Reverse index from JIRA issue keys to the builds that contained them, so that
+ * "which builds contained PROJ-123" can be answered without loading every build.
+ * <p>
+ * The index is kept in <tt>$JENKINS_HOME/jira-issue-builds</tt>, with one file per JIRA
+ * project, and is updated as builds complete or get deleted, and as jobs get renamed or deleted.
+ * Only a limited number of files is kept in memory. The index can be rebuilt from
+ * all existing builds with a POST to <tt>/jira-issue-builds/rebuild</tt>, and is queried
+ * with <tt>/jira-issue-builds/issue?key=PROJ-123&amp;start=0&amp;limit=50</tt>.
+ */
+@Extension
+public class JiraIssueBuildIndex implements RootAction {
+    private static final Logger LOGGER = Logger.getLogger(JiraIssueBuildIndex.class.getName());
+
+    private static final int DEFAULT_PAGE_SIZE = 50;
+
+    /**
+     * Number of shards kept in memory.
+     */
+    private static final int MAX_SHARDS = Integer.getInteger(JiraIssueBuildIndex.class.getName() + ".shards", 100);
+
+    /**
+     * Where the shards are kept, or null for the default location in <tt>$JENKINS_HOME</tt>.
+     */
+    private final File rootDir;
+
+    /**
+     * Loaded shards by JIRA project key, least recently used first. Guarded by this index,
+     * like the shard files.
+     */
+    private final Map<String, Shard> shards = new LinkedHashMap<String, Shard>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Shard> eldest) {
+            if (size() <= MAX_SHARDS) {
+                return false;
+            }
+            write(eldest.getKey(), eldest.getValue());
+            return true;
+        }
+    };
+
+    /**
+     * Changes made while the index is rebuilt, to be applied to the rebuilt index too.
+     * Null unless a rebuild is running. Guarded by this index.
+     */
+    private List<Change> changesDuringRebuild;
+
+    /**
+     * Allows one rebuild at a time.
+     */
+    private final Object rebuildLock = new Object();
+
+    /**
+     * Writes modified shards to disk, one at a time.
+     */
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(
+            new NamingThreadFactory(new DaemonThreadFactory(), "JIRA issue build index writer"));
+
+    public JiraIssueBuildIndex() {
+        this(null);
+    }
+
+    JiraIssueBuildIndex(File rootDir) {
+        this.rootDir = rootDir;
+    }
+
+    public String getIconFileName() {
+        return null;
+    }
+
+    public String getDisplayName() {
+        return "JIRA issue builds";
+    }
+
+    public String getUrlName() {
+        return "jira-issue-builds";
+    }
+
+    public static JiraIssueBuildIndex get() {
+        return Jenkins.getInstance().getExtensionList(RootAction.class).get(JiraIssueBuildIndex.class);
+    }
+
+    /**
+     * Gets the builds recorded for the given issue, oldest first.
+     */
+    public synchronized List<BuildRef> getBuilds(String issueKey) {
+        issueKey = issueKey.toUpperCase();
+        // looking up an unknown project doesn't create a shard for it
+        Shard shard = getShard(projectKeyOf(issueKey), false);
+        List<BuildRef> builds = shard != null ? shard.builds.get(issueKey) : null;
+        return builds == null ? new ArrayList<BuildRef>() : new ArrayList<BuildRef>(builds);
+    }
+
+    /**
+     * Returns one page of the builds that contained the given issue, newest first, as JSON.
+     * Builds of jobs the current user can't see are left out.
+     */
+    public void doIssue(StaplerResponse rsp, @QueryParameter String key, @QueryParameter int start,
+            @QueryParameter int limit) throws IOException {
+        key = Util.fixEmptyAndTrim(key);
+        if (key == null || key.indexOf('-') < 1) {
+            rsp.sendError(StaplerResponse.SC_BAD_REQUEST, "No JIRA issue key given");
+            return;
+        }
+        if (limit <= 0) {
+            limit = DEFAULT_PAGE_SIZE;
+        }
+        start = Math.max(0, start);
+
+        List<BuildRef> builds = getBuilds(key);
+        List<BuildRef> visible = new ArrayList<BuildRef>(builds.size());
+        Map<String, Boolean> readableJobs = new HashMap<String, Boolean>();
+        for (int i = builds.size() - 1; i >= 0; i--) {
+            BuildRef build = builds.get(i);
+            Boolean readable = readableJobs.get(build.job);
+            if (readable == null) {
+                // getItemByFullName only returns items the current user may read
+                readable = Jenkins.getInstance().getItemByFullName(build.job, Job.class) != null;
+                readableJobs.put(build.job, readable);
+            }
+            if (readable) {
+                visible.add(build);
+            }
+        }
+
+        JSONArray page = new JSONArray();
+        for (int i = start; i < visible.size() && i < start + limit; i++) {
+            BuildRef build = visible.get(i);
+            JSONObject json = new JSONObject();
+            json.put("job", build.job);
+            json.put("number", build.number);
+            json.put("result", build.result);
+            page.add(json);
+        }
+
+        JSONObject json = new JSONObject();
+        json.put("key", key.toUpperCase());
+        json.put("total", visible.size());
+        json.put("start", start);
+        json.put("builds", page);
+
+        rsp.setContentType("application/json;charset=UTF-8");
+        json.write(rsp.getWriter());
+    }
+
+    /**
+     * Rebuilds the whole index from the existing builds.
+     */
+    @RequirePOST
+    public void doRebuild(StaplerResponse rsp) throws IOException, InterruptedException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        int issues = rebuild();
+        rsp.setContentType("text/plain;charset=UTF-8");
+        rsp.getWriter().println("Indexed builds of " + issues + " JIRA issues.");
+    }
+
+    /**
+     * Rebuilds the index by scanning all builds of all jobs, in parallel.
+     *
+     * @return the number of indexed issues
+     */
+    public int rebuild() throws IOException, InterruptedException {
+        return rebuild(Jenkins.getInstance().getAllItems(AbstractProject.class));
+    }
+
+    int rebuild(Collection<? extends AbstractProject> jobs) throws IOException, InterruptedException {
+        synchronized (rebuildLock) {
+            long start = System.currentTimeMillis();
+            synchronized (this) {
+                changesDuringRebuild = new ArrayList<Change>();
+            }
+
+            int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+            ThreadPoolExecutor scanner = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(),
+                    new NamingThreadFactory(new DaemonThreadFactory(), "JIRA issue build index rebuild"));
+            try {
+                List<Future<Map<String, List<BuildRef>>>> scans = new ArrayList<Future<Map<String, List<BuildRef>>>>();
+                for (final AbstractProject<?, ?> job : jobs) {
+                    scans.add(scanner.submit(new Callable<Map<String, List<BuildRef>>>() {
+                        public Map<String, List<BuildRef>> call() {
+                            return scan(job);
+                        }
+                    }));
+                }
+
+                Map<String, Shard> rebuilt = new HashMap<String, Shard>();
+                for (Future<Map<String, List<BuildRef>>> scan : scans) {
+                    Map<String, List<BuildRef>> builds;
+                    try {
+                        builds = scan.get();
+                    } catch (ExecutionException e) {
+                        throw new IOException("Failed to rebuild the JIRA issue build index", e.getCause());
+                    }
+                    for (Map.Entry<String, List<BuildRef>> e : builds.entrySet()) {
+                        Shard shard = shardOf(rebuilt, projectKeyOf(e.getKey()));
+                        for (BuildRef ref : e.getValue()) {
+                            shard.add(e.getKey(), ref);
+                        }
+                    }
+                }
+
+                int issues = 0;
+                synchronized (this) {
+                    // the builds and jobs which changed while scanning may or may not have been seen
+                    for (Change change : changesDuringRebuild) {
+                        change.applyTo(rebuilt);
+                    }
+
+                    File[] files = getRootDir().listFiles();
+                    if (files != null) {
+                        for (File file : files) {
+                            if (!file.delete()) {
+                                LOGGER.warning("Failed to delete " + file);
+                            }
+                        }
+                    }
+                    for (Shard replaced : shards.values()) {
+                        replaced.dirty = false;
+                    }
+                    shards.clear();
+                    for (Map.Entry<String, Shard> e : rebuilt.entrySet()) {
+                        if (e.getValue().builds.isEmpty()) {
+                            continue;
+                        }
+                        getShardFile(e.getKey()).write(e.getValue());
+                        issues += e.getValue().builds.size();
+                    }
+                }
+
+                LOGGER.info("Rebuilt JIRA issue build index of " + issues + " issues in "
+                        + (System.currentTimeMillis() - start) + "ms");
+                return issues;
+            } finally {
+                synchronized (this) {
+                    changesDuringRebuild = null;
+                }
+                scanner.shutdownNow();
+            }
+        }
+    }
+
+    private Map<String, List<BuildRef>> scan(AbstractProject<?, ?> job) {
+        Map<String, List<BuildRef>> builds = new HashMap<String, List<BuildRef>>();
+        List<AbstractBuild<?, ?>> all = buildsOf(job);
+        Pattern pattern = patternOf(job);
+        // oldest first
+        for (int i = all.size() - 1; i >= 0; i--) {
+            AbstractBuild<?, ?> build = all.get(i);
+            if (build.isBuilding()) {
+                continue;
+            }
+            if (pattern != null) {
+                // builds from before the changelog was indexed, or indexed with another pattern
+                JiraChangeLogIndex.index(build, pattern, true);
+            }
+            BuildRef ref = new BuildRef(build);
+            for (String key : getIssueKeys(build)) {
+                List<BuildRef> refs = builds.get(key);
+                if (refs == null) {
+                    refs = new ArrayList<BuildRef>();
+                    builds.put(key, refs);
+                }
+                refs.add(ref);
+            }
+        }
+        return builds;
+    }
+
+    /**
+     * Gets the builds of the job, newest first.
+     */
+    List<AbstractBuild<?, ?>> buildsOf(AbstractProject<?, ?> job) {
+        return new ArrayList<AbstractBuild<?, ?>>(job.getBuilds());
+    }
+
+    /**
+     * Gets the issue pattern of the site of the job.
+     *
+     * @return null if the job has no site, then only builds indexed already are found
+     */
+    Pattern patternOf(AbstractProject<?, ?> job) {
+        JiraSite site = JiraSite.get(job);
+        return site != null ? site.getIssuePattern() : null;
+    }
+
+    /**
+     * Gets the keys of the issues in the changelog of the given build, as recorded by its {@link JiraChangeLogIndex}.
+     */
+    static Set<String> getIssueKeys(AbstractBuild<?, ?> build) {
+        JiraChangeLogIndex index = build.getAction(JiraChangeLogIndex.class);
+        if (index == null) {
+            return Collections.emptySet();
+        }
+        return index.getIssueKeys();
+    }
+
+    void add(AbstractBuild<?, ?> build) {
+        final BuildRef ref = new BuildRef(build);
+        final Set<String> keys = getIssueKeys(build);
+        if (keys.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            for (String key : keys) {
+                Shard shard = getShard(projectKeyOf(key), true);
+                shard.add(key, ref);
+                scheduleWrite(projectKeyOf(key), shard);
+            }
+            recordDuringRebuild(new Change() {
+                public void applyTo(Map<String, Shard> rebuilt) {
+                    for (String key : keys) {
+                        shardOf(rebuilt, projectKeyOf(key)).add(key, ref);
+                    }
+                }
+            });
+        }
+    }
+
+    void remove(AbstractBuild<?, ?> build) {
+        final BuildRef ref = new BuildRef(build);
+        final Set<String> keys = getIssueKeys(build);
+        if (keys.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            for (String key : keys) {
+                Shard shard = getShard(projectKeyOf(key), false);
+                if (shard != null && shard.remove(key, ref)) {
+                    scheduleWrite(projectKeyOf(key), shard);
+                }
+            }
+            recordDuringRebuild(new Change() {
+                public void applyTo(Map<String, Shard> rebuilt) {
+                    for (String key : keys) {
+                        Shard shard = rebuilt.get(projectKeyOf(key));
+                        if (shard != null) {
+                            shard.remove(key, ref);
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Updates the builds of a job that was renamed or moved, or forgets them if it was deleted.
+     * Jobs within the job, like in a folder, are updated too.
+     *
+     * @param newName full name of the job now, or null if it was deleted
+     */
+    synchronized void moveJob(final String oldName, final String newName) {
+        for (Map.Entry<String, Shard> e : shards.entrySet()) {
+            if (e.getValue().moveJob(oldName, newName)) {
+                scheduleWrite(e.getKey(), e.getValue());
+            }
+        }
+        Set<File> loaded = new HashSet<File>();
+        for (String projectKey : shards.keySet()) {
+            loaded.add(getShardFile(projectKey).getFile());
+        }
+        File[] files = getRootDir().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (loaded.contains(file)) {
+                    continue;
+                }
+                XmlFile xml = new XmlFile(file);
+                Shard shard = new Shard();
+                try {
+                    xml.unmarshal(shard);
+                    if (shard.moveJob(oldName, newName)) {
+                        xml.write(shard);
+                    }
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Failed to update the builds of " + oldName + " in " + file, e);
+                }
+            }
+        }
+        recordDuringRebuild(new Change() {
+            public void applyTo(Map<String, Shard> rebuilt) {
+                for (Shard shard : rebuilt.values()) {
+                    shard.moveJob(oldName, newName);
+                }
+            }
+        });
+    }
+
+    private void recordDuringRebuild(Change change) {
+        if (changesDuringRebuild != null) {
+            changesDuringRebuild.add(change);
+        }
+    }
+
+    /**
+     * Gets the shard of the project, loading it if it was written before.
+     *
+     * @param create whether to create the shard if there is none yet
+     * @return null if there is no shard and none was to be created
+     */
+    private Shard getShard(String projectKey, boolean create) {
+        Shard shard = shards.get(projectKey);
+        if (shard != null) {
+            return shard;
+        }
+
+        XmlFile file = getShardFile(projectKey);
+        if (!file.exists() && !create) {
+            return null;
+        }
+        shard = new Shard();
+        if (file.exists()) {
+            try {
+                file.unmarshal(shard);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to load " + file + ", rebuild the JIRA issue build index", e);
+            }
+        }
+        shards.put(projectKey, shard);
+        return shard;
+    }
+
+    private static Shard shardOf(Map<String, Shard> shards, String projectKey) {
+        Shard shard = shards.get(projectKey);
+        if (shard == null) {
+            shard = new Shard();
+            shards.put(projectKey, shard);
+        }
+        return shard;
+    }
+
+    private void scheduleWrite(final String projectKey, final Shard shard) {
+        shard.dirty = true;
+        writer.submit(new Runnable() {
+            public void run() {
+                synchronized (JiraIssueBuildIndex.this) {
+                    // does nothing if the shard was written when it was evicted, or replaced by a rebuild
+                    write(projectKey, shard);
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes the shard if it was modified since it was last written.
+     */
+    private void write(String projectKey, Shard shard) {
+        if (!shard.dirty) {
+            return;
+        }
+        try {
+            getShardFile(projectKey).write(shard);
+            shard.dirty = false;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to save the JIRA issue build index of " + projectKey, e);
+        }
+    }
+
+    /**
+     * Waits for the shards modified so far to be written.
+     */
+    void flush() throws InterruptedException, ExecutionException {
+        writer.submit(new Runnable() {
+            public void run() {
+            }
+        }).get();
+    }
+
+    private File getRootDir() {
+        return rootDir != null ? rootDir : new File(Jenkins.getInstance().getRootDir(), "jira-issue-builds");
+    }
+
+    private XmlFile getShardFile(String projectKey) {
+        return new XmlFile(new File(getRootDir(), Util.rawEncode(projectKey) + ".xml"));
+    }
+
+    private static String projectKeyOf(String issueKey) {
+        int idx = issueKey.indexOf('-');
+        return idx > 0 ? issueKey.substring(0, idx) : issueKey;
+    }
+
+    /**
+     * A change to the index, applied again to an index rebuilt meanwhile.
+     */
+    private interface Change {
+        void applyTo(Map<String, Shard> rebuilt);
+    }
+
+    /**
+     * Issue keys of one JIRA project, with the builds that contained them.
+     */
+    private static final class Shard {
+        private final Map<String, List<BuildRef>> builds = new HashMap<String, List<BuildRef>>();
+
+        /**
+         * Whether the shard was modified since it was last written.
+         */
+        private transient boolean dirty;
+
+        void add(String issueKey, BuildRef ref) {
+            List<BuildRef> refs = builds.get(issueKey);
+            if (refs == null) {
+                refs = new ArrayList<BuildRef>();
+                builds.put(issueKey, refs);
+            }
+            refs.remove(ref);
+            refs.add(ref);
+        }
+
+        boolean remove(String issueKey, BuildRef ref) {
+            List<BuildRef> refs = builds.get(issueKey);
+            if (refs == null || !refs.remove(ref)) {
+                return false;
+            }
+            if (refs.isEmpty()) {
+                builds.remove(issueKey);
+            }
+            return true;
+        }
+
+        /**
+         * @return true if any build of the job was found
+         */
+        boolean moveJob(String oldName, String newName) {
+            boolean changed = false;
+            for (Iterator<List<BuildRef>> it = builds.values().iterator(); it.hasNext(); ) {
+                List<BuildRef> refs = it.next();
+                for (ListIterator<BuildRef> refIt = refs.listIterator(); refIt.hasNext(); ) {
+                    BuildRef ref = refIt.next();
+                    if (!ref.job.equals(oldName) && !ref.job.startsWith(oldName + "/")) {
+                        continue;
+                    }
+                    changed = true;
+                    if (newName == null) {
+                        refIt.remove();
+                    } else {
+                        refIt.set(new BuildRef(newName + ref.job.substring(oldName.length()), ref.number, ref.result));
+                    }
+                }
+                if (refs.isEmpty()) {
+                    it.remove();
+                }
+            }
+            return changed;
+        }
+    }
+
+    /**
+     * Compact reference to a completed build.
+     */
+    public static final class BuildRef {
+        /**
+         * Full name of the job.
+         */
+        public final String job;
+
+        public final int number;
+
+        /**
+         * Result of the build when it completed.
+         */
+        public final String result;
+
+        BuildRef(AbstractBuild<?, ?> build) {
+            this.job = build.getProject().getFullName();
+            this.number = build.getNumber();
+            Result r = build.getResult();
+            this.result = r != null ? r.toString() : null;
+        }
+
+        BuildRef(String job, int number, String result) {
+            this.job = job;
+            this.number = number;
+            this.result = result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof BuildRef)) {
+                return false;
+            }
+            BuildRef that = (BuildRef) obj;
+            return number == that.number && job.equals(that.job);
+        }
+
+        @Override
+        public int hashCode() {
+            return job.hashCode() * 31 + number;
+        }
+    }
+
+    /**
+     * Keeps the index up to date as builds come and go.
+     */
+    @Extension
+    public static class ListenerImpl extends RunListener<AbstractBuild> {
+        public ListenerImpl() {
+            super(AbstractBuild.class);
+        }
+
+        @Override
+        public void onCompleted(AbstractBuild r, TaskListener listener) {
+            JiraIssueBuildIndex index = JiraIssueBuildIndex.get();
+            if (index != null) {
+                index.add(r);
+            }
+        }
+
+        @Override
+        public void onDeleted(AbstractBuild r) {
+            JiraIssueBuildIndex index = JiraIssueBuildIndex.get();
+            if (index != null) {
+                index.remove(r);
+            }
+        }
+    }
+
+    /**
+     * Keeps the index up to date as jobs, or folders of jobs, get renamed, moved or deleted.
+     */
+    @Extension
+    public static class ItemListenerImpl extends ItemListener {
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            JiraIssueBuildIndex index = JiraIssueBuildIndex.get();
+            if (index != null && (item instanceof Job || item instanceof ItemGroup)) {
+                index.moveJob(oldFullName, newFullName);
+            }
+        }
+
+        @Override
+        public void onDeleted(Item item) {
+            JiraIssueBuildIndex index = JiraIssueBuildIndex.get();
+            if (index != null && (item instanceof Job || item instanceof ItemGroup)) {
+                index.moveJob(item.getFullName(), null);
+            }
+        }
+    }
+}
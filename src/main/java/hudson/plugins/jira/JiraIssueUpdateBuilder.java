@@ -45,12 +45,18 @@ public class JiraIssueUpdateBuilder extends Builder {
     private final String jqlSearch;
     private final String workflowActionName;
     private final String comment;
+    private final boolean dryRun;
 
     @DataBoundConstructor
-    public JiraIssueUpdateBuilder(String jqlSearch, String workflowActionName, String comment) {
+    public JiraIssueUpdateBuilder(String jqlSearch, String workflowActionName, String comment, boolean dryRun) {
         this.jqlSearch = Util.fixEmptyAndTrim(jqlSearch);
         this.workflowActionName = Util.fixEmptyAndTrim(workflowActionName);
         this.comment = Util.fixEmptyAndTrim(comment);
+        this.dryRun = dryRun;
+    }
+
+    public JiraIssueUpdateBuilder(String jqlSearch, String workflowActionName, String comment) {
+        this(jqlSearch, workflowActionName, comment, false);
     }
 
     /**
@@ -74,6 +80,13 @@ public class JiraIssueUpdateBuilder extends Builder {
         return comment;
     }
 
+    /**
+     * @return whether the matching issues are only checked, not updated
+     */
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
     /**
      * Performs the actual update based on job configuration.
      */
@@ -96,8 +109,9 @@ public class JiraIssueUpdateBuilder extends Builder {
 
         listener.getLogger().println("[JIRA] JQL: " + realJql);
 
+        JiraCallStats calls = new JiraCallStats();
         try {
-            if (!site.progressMatchingIssues(realJql, workflowActionName, realComment, listener.getLogger())) {
+            if (!site.progressMatchingIssues(realJql, workflowActionName, realComment, dryRun, listener.getLogger(), calls)) {
                 listener.getLogger().println(Messages.JiraIssueUpdateBuilder_SomeIssuesFailed());
                 build.setResult(Result.UNSTABLE);
             }
@@ -105,6 +119,9 @@ public class JiraIssueUpdateBuilder extends Builder {
             listener.getLogger().println(Messages.JiraIssueUpdateBuilder_Failed());
             e.printStackTrace(listener.getLogger());
             return false;
+        } finally {
+            calls.printSummary(listener.getLogger());
+            JiraCallsAction.add(build, calls);
         }
 
         return true;
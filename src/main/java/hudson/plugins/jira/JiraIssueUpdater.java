@@ -14,6 +14,7 @@ import hudson.tasks.BuildStepMonitor;
 import hudson.tasks.Publisher;
 import hudson.tasks.Recorder;
 import net.sf.json.JSONObject;
+import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.StaplerRequest;
 
 import java.io.IOException;
@@ -26,7 +27,22 @@ import java.io.PrintStream;
  * @author Kohsuke Kawaguchi
  */
 public class JiraIssueUpdater extends Recorder implements MatrixAggregatable {
+    /**
+     * Whether JIRA is updated after the build has completed, instead of by the build itself.
+     */
+    private final boolean deferred;
+
     public JiraIssueUpdater() {
+        this(false);
+    }
+
+    @DataBoundConstructor
+    public JiraIssueUpdater(boolean deferred) {
+        this.deferred = deferred;
+    }
+
+    public boolean isDeferred() {
+        return deferred;
     }
 
     @Override
@@ -36,11 +52,20 @@ public class JiraIssueUpdater extends Recorder implements MatrixAggregatable {
             return true;
         }
 
+        return perform(build, listener);
+    }
+
+    private boolean perform(AbstractBuild<?, ?> build, BuildListener listener) {
+        if (deferred) {
+            DeferredJiraUpdate.schedule(build, listener);
+            return true;
+        }
         return Updater.perform(build, listener);
     }
 
     public BuildStepMonitor getRequiredMonitorService() {
-        return BuildStepMonitor.BUILD;
+        // a deferred update doesn't need the previous build to be complete, it waits for its own
+        return deferred ? BuildStepMonitor.NONE : BuildStepMonitor.BUILD;
     }
 
     @Override
@@ -57,7 +82,7 @@ public class JiraIssueUpdater extends Recorder implements MatrixAggregatable {
             public boolean endBuild() throws InterruptedException, IOException {
                 PrintStream logger = listener.getLogger();
                 logger.println("End of Matrix Build. Updating JIRA.");
-                return Updater.perform(this.build, this.listener);
+                return perform(this.build, this.listener);
             }
         };
     }
@@ -81,7 +106,7 @@ public class JiraIssueUpdater extends Recorder implements MatrixAggregatable {
 
         @Override
         public Publisher newInstance(StaplerRequest req, JSONObject formData) {
-            return new JiraIssueUpdater();
+            return new JiraIssueUpdater(formData.optBoolean("deferred"));
         }
 
         @Override
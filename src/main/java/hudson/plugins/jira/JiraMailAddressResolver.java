@@ -1,20 +1,38 @@
 package hudson.plugins.jira;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import hudson.Extension;
 import hudson.model.User;
 import hudson.plugins.jira.remote.JiraInteractionSession;
+import hudson.plugins.jira.remote.rest.RestErrors;
 import hudson.tasks.MailAddressResolver;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
 
-import javax.xml.rpc.ServiceException;
-
-import java.io.IOException;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
 /**
  * Resolve user email by searching his userId as username in JIRA.
+ * <p>
+ * All configured sites are asked in parallel and the first address found wins.
+ * Results, including users unknown to every site, are cached for a while, since
+ * Jenkins asks for every committer and culprit of every build.
  *
  * @author Honza Brázdil <jbrazdil@redhat.com>
  */
@@ -22,31 +40,165 @@ import java.util.regex.Pattern;
 public class JiraMailAddressResolver extends MailAddressResolver {
     private static final Logger LOGGER = Logger.getLogger(JiraMailAddressResolver.class.getName());
 
+    /**
+     * Marks users for which no JIRA site knows an address.
+     */
+    private static final String NO_ADDRESS = "";
+
+    /**
+     * Maximum time in milliseconds to wait for the JIRA sites in one lookup.
+     */
+    static long LOOKUP_TIMEOUT = Long.getLong(JiraMailAddressResolver.class.getName() + ".timeout", 5000);
+
+    private static final Cache<String, String> ADDRESSES = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(Long.getLong(JiraMailAddressResolver.class.getName() + ".cacheMinutes", 60), TimeUnit.MINUTES)
+            .build();
+
+    /**
+     * Users no site knows, so that they aren't looked up again with every build.
+     */
+    static final Cache<String, String> UNKNOWN_USERS = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(Long.getLong(JiraMailAddressResolver.class.getName() + ".negativeCacheMinutes", 10), TimeUnit.MINUTES)
+            .build();
+
+    /**
+     * Runs the per-site lookups.
+     */
+    private static final ExecutorService EXECUTOR = createExecutor("JiraMailAddressResolver", 8);
+
+    /**
+     * Runs background resolutions started by {@link #prefetch(Iterable)}, kept apart from
+     * {@link #EXECUTOR} so that they can't starve the lookups they are waiting for.
+     */
+    private static final ExecutorService PREFETCHER = createExecutor("JiraMailAddressResolver prefetch", 2);
+
+    private static ExecutorService createExecutor(String name, int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), name));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     @Override
     public String findMailAddressFor(User u) {
         String username = u.getId();
 
-        for (JiraSite site : JiraProjectProperty.DESCRIPTOR.getSites()) {
-            try {
-                JiraInteractionSession session = site.getSession();
-                String email = session.getEmailForUsername(username);
-                if (email != null) {
-                    email = unmaskEmail(email);
-                    return email;
+        String email = ADDRESSES.getIfPresent(username);
+        if (email != null) {
+            return email;
+        }
+        if (UNKNOWN_USERS.getIfPresent(username) != null) {
+            return null;
+        }
+
+        return resolve(username, JiraProjectProperty.DESCRIPTOR.getSites());
+    }
+
+    /**
+     * Resolves the addresses of the given users in the background, so that later calls
+     * to {@link #findMailAddressFor(User)} are answered from the cache.
+     */
+    public static void prefetch(Iterable<User> users) {
+        final JiraSite[] sites = JiraProjectProperty.DESCRIPTOR.getSites();
+        if (sites.length == 0) {
+            return;
+        }
+
+        for (User user : users) {
+            final String username = user.getId();
+            if (ADDRESSES.getIfPresent(username) != null || UNKNOWN_USERS.getIfPresent(username) != null) {
+                continue;
+            }
+            PREFETCHER.submit(new Runnable() {
+                public void run() {
+                    resolve(username, sites);
                 }
-            } catch (IOException ex) {
-                LOGGER.log(Level.WARNING, "Unable to create session with " + site.getName(), ex);
-            } catch (ServiceException ex) {
-                LOGGER.log(Level.WARNING, "Unable to create session with " + site.getName(), ex);
-            } catch (InterruptedException ex) {
-                LOGGER.log(Level.WARNING, "Unable to create session with " + site.getName(), ex);
-            } catch (ExecutionException ex) {
-                LOGGER.log(Level.WARNING, "Unable to create session with " + site.getName(), ex);
+            });
+        }
+    }
+
+    /**
+     * Asks all sites for the address of the given user, and returns the first one found.
+     */
+    static String resolve(String username, JiraSite[] sites) {
+        if (sites.length == 0) {
+            return null;
+        }
+
+        CompletionService<String> completionService = new ExecutorCompletionService<String>(EXECUTOR);
+        List<Future<String>> lookups = new ArrayList<Future<String>>(sites.length);
+        for (JiraSite site : sites) {
+            lookups.add(completionService.submit(new Lookup(site, username)));
+        }
+
+        boolean complete = true;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LOOKUP_TIMEOUT);
+        try {
+            for (int i = 0; i < lookups.size(); i++) {
+                Future<String> lookup = completionService.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (lookup == null) {
+                    LOGGER.log(Level.FINE, "Timed out resolving the email address of {0}", username);
+                    complete = false;
+                    break;
+                }
+                try {
+                    String email = lookup.get();
+                    if (email != null) {
+                        email = unmaskEmail(email);
+                        ADDRESSES.put(username, email);
+                        return email;
+                    }
+                } catch (ExecutionException e) {
+                    complete = false;
+                    LOGGER.log(Level.WARNING, "Unable to resolve the email address of " + username, e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            complete = false;
+        } finally {
+            for (Future<String> lookup : lookups) {
+                lookup.cancel(true);
             }
         }
+
+        // only remember unknown users if every site actually answered
+        if (complete) {
+            UNKNOWN_USERS.put(username, NO_ADDRESS);
+        }
         return null;
     }
 
+    private static final class Lookup implements Callable<String> {
+        private final JiraSite site;
+        private final String username;
+
+        Lookup(JiraSite site, String username) {
+            this.site = site;
+            this.username = username;
+        }
+
+        public String call() throws Exception {
+            JiraInteractionSession session = site.getSession();
+            if (session == null) {
+                LOGGER.log(Level.WARNING, "Unable to create session with " + site.getName());
+                return null;
+            }
+            try {
+                return session.getEmailForUsername(username);
+            } catch (RemoteException e) {
+                if (RestErrors.isNotFound(e)) {
+                    // JIRA answered, but doesn't know (or doesn't show) this user
+                    return null;
+                }
+                throw e;
+            }
+        }
+    }
+
     private static final String PRE = "[( \\[<_{\"=]+";
     private static final String POST = "[) \\]>_}\"=]+";
     private static final Pattern AT = Pattern.compile(PRE + "[aA][tT]" + POST);
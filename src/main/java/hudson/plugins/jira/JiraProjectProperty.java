@@ -6,6 +6,7 @@ import hudson.model.Job;
 import hudson.model.JobProperty;
 import hudson.model.JobPropertyDescriptor;
 import hudson.util.CopyOnWriteList;
+import jenkins.util.Timer;
 import net.sf.json.JSONObject;
 
 import org.apache.commons.beanutils.Converter;
@@ -15,6 +16,9 @@ import org.kohsuke.stapler.StaplerRequest;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 /**
@@ -31,6 +35,11 @@ public class JiraProjectProperty extends JobProperty<AbstractProject<?, ?>> {
      */
     public final String siteName;
 
+    /**
+     * The site last resolved for this job, with the registry it was resolved from.
+     */
+    private transient volatile ResolvedSite resolvedSite;
+
     @DataBoundConstructor
     public JiraProjectProperty(String siteName) {
         if (siteName == null) {
@@ -49,18 +58,31 @@ public class JiraProjectProperty extends JobProperty<AbstractProject<?, ?>> {
      * @return null if the configuration becomes out of sync.
      */
     public JiraSite getSite() {
-        JiraSite[] sites = DESCRIPTOR.getSites();
-        if (siteName == null && sites.length > 0) {
+        JiraSiteRegistry registry = DESCRIPTOR.getRegistry();
+        ResolvedSite resolved = resolvedSite;
+        if (resolved != null && resolved.registry == registry) {
+            return resolved.site;
+        }
+
+        JiraSite site;
+        if (siteName == null) {
             // default
-            return sites[0];
+            site = registry.getDefault();
+        } else {
+            site = registry.get(siteName);
         }
+        resolvedSite = new ResolvedSite(registry, site);
+        return site;
+    }
 
-        for (JiraSite site : sites) {
-            if (site.getName().equals(siteName)) {
-                return site;
-            }
+    private static final class ResolvedSite {
+        final JiraSiteRegistry registry;
+        final JiraSite site;
+
+        ResolvedSite(JiraSiteRegistry registry, JiraSite site) {
+            this.registry = registry;
+            this.site = site;
         }
-        return null;
     }
 
     @Override
@@ -74,9 +96,15 @@ public class JiraProjectProperty extends JobProperty<AbstractProject<?, ?>> {
     public static final class DescriptorImpl extends JobPropertyDescriptor {
         private final CopyOnWriteList<JiraSite> sites = new CopyOnWriteList<JiraSite>();
 
+        /**
+         * Snapshot of {@link #sites}, replaced whenever they change.
+         */
+        private transient volatile JiraSiteRegistry registry;
+
         public DescriptorImpl() {
             super(JiraProjectProperty.class);
             load();
+            registry = new JiraSiteRegistry(sites.getView());
         }
 
         @Override
@@ -92,10 +120,19 @@ public class JiraProjectProperty extends JobProperty<AbstractProject<?, ?>> {
 
         public void setSites(JiraSite site) {
             sites.add(site);
+            registry = new JiraSiteRegistry(sites.getView());
+            JiraChangeLogAnnotator.invalidateAnnotations();
         }
 
         public JiraSite[] getSites() {
-            return sites.toArray(new JiraSite[0]);
+            return registry.getSites();
+        }
+
+        /**
+         * Gets the current snapshot of the configured sites.
+         */
+        public JiraSiteRegistry getRegistry() {
+            return registry;
         }
 
         @Override
@@ -129,8 +166,40 @@ public class JiraProjectProperty extends JobProperty<AbstractProject<?, ?>> {
             }, java.net.URL.class);
             //End hack
 
+            final JiraSite[] replaced = registry.getSites();
             sites.replaceBy(req.bindJSONToList(JiraSite.class, formData.get("sites")));
+            JiraSiteRegistry updated = new JiraSiteRegistry(sites.getView());
+            // sites which still connect the same way keep their sessions, the others are destroyed
+            final List<JiraSite> removed = new ArrayList<JiraSite>();
+            for (JiraSite site : replaced) {
+                JiraSite successor = updated.get(site.getName());
+                if (successor == null || !successor.takeOver(site)) {
+                    removed.add(site);
+                }
+            }
+            registry = updated;
+            JiraChangeLogAnnotator.invalidateAnnotations();
             save();
+            JiraSiteWarmUp.start(registry.getSites());
+
+            // post the comments the old sites collected, the new ones start their own windows
+            Timer.get().submit(new Runnable() {
+                public void run() {
+                    for (JiraSite site : replaced) {
+                        site.flushComments();
+                    }
+                }
+            });
+            if (!removed.isEmpty()) {
+                // give builds still talking to the old sites some time to finish
+                Timer.get().schedule(new Runnable() {
+                    public void run() {
+                        for (JiraSite site : removed) {
+                            site.destroy();
+                        }
+                    }
+                }, 5, TimeUnit.MINUTES);
+            }
             return true;
         }
     }
@@ -0,0 +1,45 @@
+package hudson.plugins.jira;
+
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.model.User;
+import hudson.model.listeners.SCMListener;
+import hudson.scm.ChangeLogSet;
+import hudson.scm.ChangeLogSet.Entry;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Hooks into changelog parsing, to prepare JIRA related data while the build is still running.
+ */
+public class JiraSCMListener extends SCMListener {
+
+    @Initializer(after = InitMilestone.PLUGINS_STARTED)
+    public static void registerListener() {
+        new JiraSCMListener().register();
+    }
+
+    @Override
+    public void onChangeLogParsed(AbstractBuild<?, ?> build, BuildListener listener, ChangeLogSet<?> changelog) throws Exception {
+        // resolve the committers' addresses in bulk, before the mailer asks for them one by one
+        Set<User> authors = new LinkedHashSet<User>();
+        for (Entry entry : changelog) {
+            authors.add(entry.getAuthor());
+        }
+        JiraMailAddressResolver.prefetch(authors);
+
+        JiraSite site = JiraSite.get(build.getProject());
+        if (site == null) {
+            return;     // not configured with JIRA
+        }
+
+        // index the issue keys once, instead of scanning the changelog in every step and page view
+        JiraChangeLogIndex index = JiraChangeLogIndex.create(changelog, site.getIssuePattern());
+        if (index != null) {
+            build.addAction(index);
+        }
+    }
+}
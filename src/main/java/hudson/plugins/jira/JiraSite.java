@@ -1,8 +1,5 @@
 package hudson.plugins.jira;
 
-import com.atlassian.jira.rest.client.api.domain.BasicProject;
-import com.atlassian.jira.rest.client.api.domain.Issue;
-import com.atlassian.util.concurrent.Promise;
 import com.cloudbees.plugins.credentials.CredentialsMatcher;
 import com.cloudbees.plugins.credentials.CredentialsMatchers;
 import com.cloudbees.plugins.credentials.CredentialsProvider;
@@ -13,6 +10,9 @@ import com.cloudbees.plugins.credentials.domains.DomainRequirement;
 import com.cloudbees.plugins.credentials.domains.URIRequirementBuilder;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import hudson.Extension;
 import hudson.Util;
@@ -21,14 +21,21 @@ import hudson.model.Item;
 import hudson.model.AbstractProject;
 import hudson.model.Descriptor;
 import hudson.model.Hudson;
+import hudson.model.listeners.ItemListener;
 import hudson.plugins.jira.Messages;
+import hudson.plugins.jira.remote.JiraAsyncSession;
+import hudson.plugins.jira.remote.JiraFutures;
 import hudson.plugins.jira.remote.JiraInteractionSession;
 import hudson.plugins.jira.remote.JiraSessionManager;
+import hudson.plugins.jira.remote.JiraTimeouts;
+import hudson.plugins.jira.remote.ProjectedIssue;
+import hudson.plugins.jira.remote.rest.JiraRestSession;
 import hudson.plugins.jira.remote.soap.SoapUrlCheck;
 import hudson.plugins.jira.soap.*;
 import hudson.security.ACL;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
+import jenkins.util.Timer;
 
 import org.apache.axis.AxisFault;
 import org.kohsuke.stapler.AncestorInPath;
@@ -41,13 +48,12 @@ import javax.annotation.Nullable;
 import javax.servlet.ServletException;
 import javax.xml.rpc.ServiceException;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.PrintStream;
-import java.lang.ref.WeakReference;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.*;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -56,7 +62,6 @@ import java.util.logging.Logger;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
-import static org.apache.commons.lang.StringUtils.isEmpty;
 import static org.apache.commons.lang.StringUtils.isNotEmpty;
 
 /**
@@ -133,6 +138,23 @@ public class JiraSite extends AbstractDescribableImpl<JiraSite> {
      */
     public final boolean updateJiraIssueForAllStatus;
 
+    /**
+     * Number of seconds the comments for an issue are collected before they are posted
+     * as a single comment. 0 to post them right away.
+     */
+    public final int commentCoalescingWindow;
+
+    private transient CommentCoalescer commentCoalescer;
+
+    /**
+     * Seconds to wait for a connection to JIRA, for data on a connection, and for a whole operation.
+     * 0 for the defaults of {@link JiraTimeouts}.
+     */
+    public final int connectTimeout;
+    public final int readTimeout;
+    public final int callTimeout;
+
+    private transient JiraTimeouts timeouts;
 
     /**
      * List of project keys (i.e., "MNG" portion of "MNG-512"),
@@ -142,18 +164,65 @@ public class JiraSite extends AbstractDescribableImpl<JiraSite> {
     // should we implement to invalidate this (say every hour)?
     private transient volatile Set<String> projects;
 
+    /**
+     * Issue types, fetched once. Kept by the site rather than the session, so they survive renewing it.
+     */
+    private transient volatile RemoteIssueType[] issueTypes;
+
     private transient Cache<String, RemoteIssue> issueCache = makeIssueCache();
 
+    /**
+     * Issue keys this site recently didn't know, or didn't show.
+     */
+    private transient MissingIssueFilter missingIssues = makeMissingIssueFilter();
+
     /**
      * Used to guard the computation of {@link #projects}
      */
     private transient Lock projectUpdateLock = new ReentrantLock();
 
-    private transient ThreadLocal<WeakReference<JiraInteractionSession>> jiraSession = new ThreadLocal<WeakReference<JiraInteractionSession>>();
+    /**
+     * Session shared by all threads talking to this site, created on first use, and again
+     * once it {@link #isExpired(JiraInteractionSession) expired}.
+     */
+    private transient volatile JiraInteractionSession jiraSession;
 
-    @DataBoundConstructor
+    /**
+     * When {@link #jiraSession} was created, in milliseconds.
+     */
+    private transient volatile long jiraSessionCreated;
+
+    /**
+     * The site which replaced this one and {@link #takeOver(JiraSite) took over} its session,
+     * which this site then uses, too.
+     */
+    private transient volatile JiraSite successor;
+
+    /**
+     * Guards the creation of {@link #jiraSession}, and is set once the site was {@link #destroy() destroyed}.
+     */
+    private transient Object sessionLock = new Object();
+    private transient boolean destroyed;
+
+    @Deprecated
     public JiraSite(URL url, URL alternativeUrl, boolean supportsWikiStyleComment, boolean recordScmChanges, String userPattern,
             boolean updateJiraIssueForAllStatus, String credentialsId, String groupVisibility, String roleVisibility, boolean useHTTPAuth) {
+        this(url, alternativeUrl, supportsWikiStyleComment, recordScmChanges, userPattern, updateJiraIssueForAllStatus,
+                credentialsId, groupVisibility, roleVisibility, useHTTPAuth, 0);
+    }
+
+    @Deprecated
+    public JiraSite(URL url, URL alternativeUrl, boolean supportsWikiStyleComment, boolean recordScmChanges, String userPattern,
+            boolean updateJiraIssueForAllStatus, String credentialsId, String groupVisibility, String roleVisibility, boolean useHTTPAuth,
+            int commentCoalescingWindow) {
+        this(url, alternativeUrl, supportsWikiStyleComment, recordScmChanges, userPattern, updateJiraIssueForAllStatus,
+                credentialsId, groupVisibility, roleVisibility, useHTTPAuth, commentCoalescingWindow, 0, 0, 0);
+    }
+
+    @DataBoundConstructor
+    public JiraSite(URL url, URL alternativeUrl, boolean supportsWikiStyleComment, boolean recordScmChanges, String userPattern,
+            boolean updateJiraIssueForAllStatus, String credentialsId, String groupVisibility, String roleVisibility, boolean useHTTPAuth,
+            int commentCoalescingWindow, int connectTimeout, int readTimeout, int callTimeout) {
         if (!url.toExternalForm().endsWith("/"))
             try {
                 url = new URL(url.toExternalForm() + "/");
@@ -187,7 +256,11 @@ public class JiraSite extends AbstractDescribableImpl<JiraSite> {
         this.groupVisibility = Util.fixEmpty(groupVisibility);
         this.roleVisibility = Util.fixEmpty(roleVisibility);
         this.useHTTPAuth = useHTTPAuth;
-        this.jiraSession.set(new WeakReference<JiraInteractionSession>(null));
+        this.commentCoalescingWindow = Math.max(0, commentCoalescingWindow);
+        this.connectTimeout = Math.max(0, connectTimeout);
+        this.readTimeout = Math.max(0, readTimeout);
+        this.callTimeout = Math.max(0, callTimeout);
+        this.timeouts = new JiraTimeouts(connectTimeout, readTimeout, callTimeout);
     }
 
     private static UsernamePasswordCredentials parseCredentialsOrNull(@Nonnull URL url, @Nullable String credentialsId) {
@@ -206,8 +279,9 @@ public class JiraSite extends AbstractDescribableImpl<JiraSite> {
     public Object readResolve() {
         projectUpdateLock = new ReentrantLock();
         issueCache = makeIssueCache();
-        jiraSession = new ThreadLocal<WeakReference<JiraInteractionSession>>();
-        jiraSession.set(new WeakReference<JiraInteractionSession>(null));
+        missingIssues = makeMissingIssueFilter();
+        sessionLock = new Object();
+        timeouts = new JiraTimeouts(connectTimeout, readTimeout, callTimeout);
         return this;
     }
 
@@ -215,11 +289,51 @@ public class JiraSite extends AbstractDescribableImpl<JiraSite> {
         return CacheBuilder.newBuilder().concurrencyLevel(2).expireAfterAccess(2, TimeUnit.MINUTES).build();
     }
 
+    private static MissingIssueFilter makeMissingIssueFilter() {
+        return new MissingIssueFilter(MISSING_ISSUES, 0.001, MISSING_ISSUE_MINUTES, TimeUnit.MINUTES);
+    }
+
 
     public String getName() {
         return url.toExternalForm();
     }
 
+    /**
+     * Gets the queue which merges the comments of this site, if {@link #commentCoalescingWindow} is set.
+     *
+     * @return null if comments are posted right away
+     */
+    @CheckForNull
+    synchronized CommentCoalescer getCommentCoalescer() {
+        if (commentCoalescingWindow <= 0) {
+            return null;
+        }
+        if (commentCoalescer == null) {
+            commentCoalescer = new CommentCoalescer(this, commentCoalescingWindow);
+        }
+        return commentCoalescer;
+    }
+
+    /**
+     * Posts the comments collected for this site right away.
+     */
+    void flushComments() {
+        CommentCoalescer coalescer;
+        synchronized (this) {
+            coalescer = commentCoalescer;
+        }
+        if (coalescer != null) {
+            coalescer.flushAll();
+        }
+    }
+
+    /**
+     * Gets the timeouts the sessions of this site use, and how often they were hit.
+     */
+    public JiraTimeouts getTimeouts() {
+        return timeouts;
+    }
+
     /**
      * Gets a remote access session to this JIRA site.
      * Creates one if none exists yet.
@@ -228,21 +342,119 @@ public class JiraSite extends AbstractDescribableImpl<JiraSite> {
      */
     @Nullable
     public JiraInteractionSession getSession() throws IOException, ServiceException {
-        JiraInteractionSession session = null;
+        JiraSite successor = this.successor;
+        if (successor != null) {
+            return successor.getSession();
+        }
+        JiraInteractionSession session = jiraSession;
+        if (session != null && !isExpired(session)) {
+            return session;
+        }
 
-        WeakReference<JiraInteractionSession> weakReference = jiraSession.get();
-        if (weakReference != null) {
-            session = weakReference.get();
+        synchronized (sessionLock) {
+            if (jiraSession != null && isExpired(jiraSession)) {
+                LOGGER.fine("Renewing the session of " + getName());
+                closeLater(jiraSession);
+                jiraSession = null;
+            }
+            if (jiraSession == null && !destroyed) {
+                UsernamePasswordCredentials credentials = parseCredentialsOrNull(url, credentialsId);
+                jiraSession = JiraSessionManager.createSession(this, url, credentials, useHTTPAuth);
+                jiraSessionCreated = System.currentTimeMillis();
+            }
+            return jiraSession;
         }
+    }
 
-        if (session == null) {
-            UsernamePasswordCredentials credentials = parseCredentialsOrNull(url, credentialsId);
-            // TODO: we should check for session timeout, too (but there's no method for that on JiraSoapService)
-            // Currently no real problem, as we're using a weak reference for the session, so it will be GC'ed very quickly
-            session = JiraSessionManager.createSession(this, url, credentials, useHTTPAuth);
-            jiraSession.set(new WeakReference<JiraInteractionSession>(session));
+    /**
+     * Whether the session is too old, e.g. for the login of a SOAP session to time out,
+     * or JIRA refused its credentials.
+     */
+    private boolean isExpired(JiraInteractionSession session) {
+        if (System.currentTimeMillis() - jiraSessionCreated > TimeUnit.MINUTES.toMillis(SESSION_MINUTES)) {
+            return true;
+        }
+        return session instanceof JiraRestSession && ((JiraRestSession) session).isUnauthorized();
+    }
+
+    /**
+     * Closes a replaced session once the calls still using it are over.
+     */
+    private void closeLater(final JiraInteractionSession session) {
+        if (!(session instanceof Closeable)) {
+            return;
+        }
+        Timer.get().schedule(new Runnable() {
+            public void run() {
+                try {
+                    ((Closeable) session).close();
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Failed to close the session of " + getName(), e);
+                }
+            }
+        }, timeouts.getCallTimeout() + 60, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Takes over the session of the site this one replaces, if both connect to JIRA the same way,
+     * so that saving the configuration doesn't tear down the connections still in use.
+     *
+     * @return whether the session was taken over; the replaced site then uses the session of this one
+     */
+    boolean takeOver(JiraSite replaced) {
+        if (!connectsLike(replaced)) {
+            return false;
+        }
+        synchronized (replaced.sessionLock) {
+            if (replaced.destroyed) {
+                return false;
+            }
+            synchronized (sessionLock) {
+                jiraSession = replaced.jiraSession;
+                jiraSessionCreated = replaced.jiraSessionCreated;
+            }
+            issueTypes = replaced.issueTypes;
+            replaced.jiraSession = null;
+            replaced.successor = this;
+        }
+        return true;
+    }
+
+    private boolean connectsLike(JiraSite other) {
+        return url.toExternalForm().equals(other.url.toExternalForm())
+                && Util.fixNull(credentialsId).equals(Util.fixNull(other.credentialsId))
+                && useHTTPAuth == other.useHTTPAuth
+                && connectTimeout == other.connectTimeout
+                && readTimeout == other.readTimeout
+                && callTimeout == other.callTimeout;
+    }
+
+    /**
+     * Releases the connections and threads of the session of this site, once it was
+     * replaced by a reconfigured site or removed. Comments still collected are posted first.
+     */
+    void destroy() {
+        flushComments();
+
+        JiraInteractionSession session;
+        synchronized (sessionLock) {
+            session = jiraSession;
+            jiraSession = null;
+            destroyed = true;
+        }
+        if (session instanceof Closeable) {
+            try {
+                ((Closeable) session).close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to close the session of " + getName(), e);
+            }
+        }
+    }
+
+    boolean isDestroyed() {
+        synchronized (sessionLock) {
+            return destroyed;
         }
-        return session;
     }
 
     /**
@@ -305,15 +517,8 @@ public class JiraSite extends AbstractDescribableImpl<JiraSite> {
                         if (projects == null) {
                             JiraInteractionSession session = getSession();
                             if (session != null) {
-
-                                //Set<String> projectKeys = session.getProjectKeys();
-                                Promise<Iterable<BasicProject>> projectKeysAsync = session.getProjectKeysAsync();
-                                Set<String> projectKeys = new HashSet<String>();
-                                for (BasicProject project : projectKeysAsync.get()) {
-                                    projectKeys.add(project.getKey());
-                                }
-
-                                projects = Collections.unmodifiableSet(projectKeys);
+                                // bounded by the call timeout, unlike waiting for getProjectKeysAsync()
+                                projects = Collections.unmodifiableSet(new HashSet<String>(session.getProjectKeys()));
                             }
                         }
                     } catch (IOException e) {
@@ -321,8 +526,6 @@ public class JiraSite extends AbstractDescribableImpl<JiraSite> {
                         LOGGER.log(Level.WARNING, "Failed to obtain JIRA project list", e);
                     } catch (ServiceException e) {
                         LOGGER.log(Level.WARNING, "Failed to obtain JIRA project list", e);
-                    } catch (ExecutionException e) {
-                        LOGGER.log(Level.WARNING, "Failed to obtain JIRA project list", e);
                     } finally {
                         projectUpdateLock.unlock();
                     }
@@ -340,6 +543,35 @@ public class JiraSite extends AbstractDescribableImpl<JiraSite> {
         return p;
     }
 
+    /**
+     * Whether the project keys could be fetched, so that {@link #getProjectKeys()} returning none
+     * means this site has no projects, rather than that it couldn't be reached.
+     */
+    boolean hasProjectKeys() {
+        return projects != null;
+    }
+
+    /**
+     * Gets the issue types of this site, fetching them the first time.
+     */
+    ListenableFuture<RemoteIssueType[]> getIssueTypes(JiraAsyncSession async) {
+        RemoteIssueType[] types = issueTypes;
+        if (types != null) {
+            return Futures.immediateFuture(types);
+        }
+        ListenableFuture<RemoteIssueType[]> fetched = async.getIssueTypes();
+        Futures.addCallback(fetched, new FutureCallback<RemoteIssueType[]>() {
+            public void onSuccess(RemoteIssueType[] types) {
+                issueTypes = types;
+            }
+
+            public void onFailure(Throwable t) {
+                // fetched again next time
+            }
+        });
+        return fetched;
+    }
+
     /**
      * Gets the effective {@link JiraSite} associated with the given project.
      *
@@ -357,9 +589,9 @@ public class JiraSite extends AbstractDescribableImpl<JiraSite> {
 
         // none is explicitly configured. try the default ---
         // if only one is configured, that must be it.
-        JiraSite[] sites = JiraProjectProperty.DESCRIPTOR.getSites();
-        if (sites.length == 1) {
-            return sites[0];
+        JiraSiteRegistry registry = JiraProjectProperty.DESCRIPTOR.getRegistry();
+        if (registry.size() == 1) {
+            return registry.getDefault();
         }
 
         return null;
@@ -385,23 +617,33 @@ public class JiraSite extends AbstractDescribableImpl<JiraSite> {
     private static final RemoteIssue NULL = new RemoteIssue();
 
     /**
-     * @return the remote issue with the given id or <code>null</code> if it wasn't found
+     * @return the remote issue with the given id or <code>null</code> if it wasn't found,
+     *         or the user can't see it
      */
     @CheckForNull
     public JiraIssue getIssue(final String id) throws IOException, ServiceException {
+        if (isKnownMissing(id)) {
+            return null;
+        }
 
+        JiraInteractionSession session = getSession();
+        if (session == null) {
+            return null;
+        }
+        // only the summary is needed, so don't fetch the whole issue
+        ProjectedIssue issue;
         try {
-            JiraInteractionSession session = getSession();
-            Promise<Issue> issueAsync = session.getIssueAsync(id);
-            Issue issue = issueAsync.get();
-            return new JiraIssue(issue.getKey(), issue.getSummary());
-        } catch (InterruptedException e) {
-            LOGGER.warning("InterruptedException: Could not get issue " + id);
-            throw new ServiceException(e);
-        } catch (ExecutionException e) {
-            LOGGER.warning("ExecutionException: Could not get issue " + id);
-            throw new ServiceException(e);
+            issue = session.getProjectedIssue(id, ProjectedIssue.SUMMARY);
+        } catch (RemotePermissionException e) {
+            // JIRA answers so for issues which don't exist, too
+            recordMissing(id);
+            return null;
+        }
+        if (issue == null) {
+            recordMissing(id);
+            return null;
         }
+        return new JiraIssue(issue.getKey(), issue.getSummary());
 
         //        try {
         //            RemoteIssue remoteIssue = issueCache.get(id, new Callable<RemoteIssue>() {
@@ -426,6 +668,22 @@ public class JiraSite extends AbstractDescribableImpl<JiraSite> {
         //        }
     }
 
+    /**
+     * Whether the site recently answered that the issue doesn't exist, or can't be seen,
+     * in which case it isn't asked for again for a while.
+     */
+    boolean isKnownMissing(String id) {
+        return missingIssues.mightContain(id);
+    }
+
+    /**
+     * Remembers that the site doesn't know, or doesn't show, the issue.
+     */
+    void recordMissing(String id) {
+        LOGGER.fine("JIRA issue " + id + " doesn't exist or can't be seen, not asking for it again for a while");
+        missingIssues.add(id);
+    }
+
     /**
      * Releases a given version.
      *
@@ -493,8 +751,13 @@ public class JiraSite extends AbstractDescribableImpl<JiraSite> {
             return "";
         }
 
-        RemoteIssue[] issues = session.getIssuesWithFixVersion(projectKey, versionName, filter);
-        RemoteIssueType[] types = session.getIssueTypes();
+        // both calls are independent, so they run concurrently
+        JiraAsyncSession async = JiraSessionManager.async(session);
+        ListenableFuture<RemoteIssue[]> issuesFuture = async.getIssuesWithFixVersion(projectKey, versionName, filter);
+        ListenableFuture<RemoteIssueType[]> typesFuture = getIssueTypes(async);
+        RemoteIssue[] issues = JiraFutures.claim(issuesFuture, timeouts, "getIssuesWithFixVersion",
+                "get the issues with fix version " + versionName);
+        RemoteIssueType[] types = JiraFutures.claim(typesFuture, timeouts, "getIssueTypes", "get the issue types");
 
         HashMap<String, String> typeNameMap = new HashMap<String, String>();
 
@@ -593,51 +856,45 @@ public class JiraSite extends AbstractDescribableImpl<JiraSite> {
      * adds a comment to the issue(s) at the same time.
      */
     public boolean progressMatchingIssues(String jqlSearch, String workflowActionName, String comment, PrintStream console) throws IOException, ServiceException {
+        return progress(jqlSearch, workflowActionName, comment, false, console, null);
+    }
+
+    /**
+     * Like {@link #progressMatchingIssues(String, String, String, PrintStream)}, but optionally only
+     * tells what would be done.
+     *
+     * @param dryRun true to check the matching issues without updating them
+     */
+    public boolean progressMatchingIssues(String jqlSearch, String workflowActionName, String comment, boolean dryRun, PrintStream console) throws IOException, ServiceException {
+        return progress(jqlSearch, workflowActionName, comment, dryRun, console, null);
+    }
+
+    /**
+     * @param calls records the calls made to JIRA, if not null
+     */
+    boolean progressMatchingIssues(String jqlSearch, String workflowActionName, String comment, boolean dryRun, PrintStream console,
+            JiraCallStats calls) throws IOException, ServiceException {
+        return progress(jqlSearch, workflowActionName, comment, dryRun, console, calls);
+    }
+
+    private boolean progress(String jqlSearch, String workflowActionName, String comment, boolean dryRun, PrintStream console,
+            JiraCallStats calls) throws IOException, ServiceException {
         JiraInteractionSession session = getSession();
 
         if (session == null) {
             console.println(Messages.Updater_FailedToConnect());
             return false;
         }
-
-        boolean success = true;
-        RemoteIssue[] issues = session.getIssuesFromJqlSearch(jqlSearch);
-
-
-        if (isEmpty(workflowActionName)) {
-            console.println("[JIRA] No workflow action was specified, " +
-                    "thus no status update will be made for any of the matching issues.");
+        if (calls != null) {
+            session = calls.instrument(session);
         }
 
-        for (RemoteIssue issue : issues) {
-            String issueKey = issue.getKey();
-
-            if (isNotEmpty(comment)) {
-                session.addComment(issueKey, comment, null, null);
-            }
-
-
-            if (isEmpty(workflowActionName)) {
-                continue;
-            }
-
-            String actionId = session.getActionIdForIssue(issueKey, workflowActionName);
-
-            if (actionId == null) {
-                LOGGER.fine(String.format("Invalid workflow action %s for issue %s; issue status = %s",
-                        workflowActionName, issueKey, issue.getStatus()));
-                console.println(Messages.JiraIssueUpdateBuilder_UnknownWorkflowAction(issueKey, workflowActionName));
-                success = false;
-                continue;
-            }
-
-            String newStatus = session.progressWorkflowAction(issueKey, actionId, null);
-
-            console.println(String.format("[JIRA] Issue %s transitioned to \"%s\" due to action \"%s\".",
-                    issueKey, newStatus, workflowActionName));
+        try {
+            return new JiraBulkTransition(session, workflowActionName, comment, dryRun, console).run(jqlSearch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new java.rmi.RemoteException("Interrupted while progressing the issues matching " + jqlSearch, e);
         }
-
-        return success;
     }
 
     @Extension
@@ -678,6 +935,22 @@ public class JiraSite extends AbstractDescribableImpl<JiraSite> {
                             ACL.SYSTEM, domainRequirements));
         }
 
+        public FormValidation doCheckCommentCoalescingWindow(@QueryParameter String value) {
+            return FormValidation.validateNonNegativeInteger(value);
+        }
+
+        public FormValidation doCheckConnectTimeout(@QueryParameter String value) {
+            return FormValidation.validateNonNegativeInteger(value);
+        }
+
+        public FormValidation doCheckReadTimeout(@QueryParameter String value) {
+            return FormValidation.validateNonNegativeInteger(value);
+        }
+
+        public FormValidation doCheckCallTimeout(@QueryParameter String value) {
+            return FormValidation.validateNonNegativeInteger(value);
+        }
+
         public FormValidation doCheckUserPattern(@QueryParameter String value) throws IOException {
             String userPattern = Util.fixEmpty(value);
             if (userPattern == null) {// userPattern not entered yet
@@ -720,7 +993,7 @@ public class JiraSite extends AbstractDescribableImpl<JiraSite> {
 
             // Instantiate JiraSite to run all validations done in constructor.
             JiraSite site = new JiraSite(urlObject, altUrl, false,
-                    false, null, false, credentialsId, groupVisibility, roleVisibility, useHTTPAuth);
+                    false, null, false, credentialsId, groupVisibility, roleVisibility, useHTTPAuth, 0, 0, 0, 0);
 
             try {
                 UsernamePasswordCredentials credentials = parseCredentialsOrNull(urlObject, credentialsId);
@@ -729,6 +1002,9 @@ public class JiraSite extends AbstractDescribableImpl<JiraSite> {
                 if (jiraSession == null) {
                     return FormValidation.error("Failed to connect to JIRA at " + urlObject.toExternalForm() + ". Invalid url? Or invalid/no credentials specified?");
                 } else {
+                    if (jiraSession instanceof Closeable) {
+                        ((Closeable) jiraSession).close();
+                    }
                     return FormValidation.ok("Success");
                 }
             } catch (AxisFault e) {
@@ -741,8 +1017,36 @@ public class JiraSite extends AbstractDescribableImpl<JiraSite> {
         }
     }
 
+    /**
+     * Posts the collected comments of all sites before Jenkins shuts down.
+     */
+    @Extension
+    public static class ShutdownListener extends ItemListener {
+        @Override
+        public void onBeforeShutdown() {
+            for (JiraSite site : JiraProjectProperty.DESCRIPTOR.getSites()) {
+                site.flushComments();
+            }
+        }
+    }
+
     private static final Logger LOGGER = Logger.getLogger(JiraSite.class.getName());
 
+    /**
+     * Number of missing issue keys remembered per site, before the oldest are dropped.
+     */
+    private static final int MISSING_ISSUES = Integer.getInteger(JiraSite.class.getName() + ".missingIssues", 10000);
+
+    /**
+     * How long a missing issue key is remembered at least, and at most twice as long.
+     */
+    private static final long MISSING_ISSUE_MINUTES = Long.getLong(JiraSite.class.getName() + ".missingIssueMinutes", 30);
+
+    /**
+     * How long a session is used before a new one is created.
+     */
+    private static final long SESSION_MINUTES = Long.getLong(JiraSite.class.getName() + ".sessionMinutes", 60);
+
     public void addVersion(String version, String projectKey) throws IOException, ServiceException {
         JiraInteractionSession session = getSession();
         if (session == null) {
@@ -0,0 +1,106 @@
+package hudson.plugins.jira;
+
+import jenkins.util.Timer;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Immutable snapshot of the configured {@link JiraSite}s, indexed by {@link JiraSite#getName()}.
+ * A new snapshot replaces the old one whenever the global configuration changes, so
+ * readers never need to lock or copy.
+ *
+ * @see JiraProjectProperty.DescriptorImpl#getRegistry()
+ */
+public final class JiraSiteRegistry {
+    private static final AtomicLong GENERATIONS = new AtomicLong();
+
+    private final JiraSite[] sites;
+
+    private final Map<String, JiraSite> sitesByName;
+
+    private final long generation;
+
+    /**
+     * Built in the background on first use, as it needs the project keys of every site.
+     */
+    private volatile JiraSiteRouter router;
+
+    private final AtomicBoolean building = new AtomicBoolean();
+
+    public JiraSiteRegistry(Collection<JiraSite> sites) {
+        this.sites = sites.toArray(new JiraSite[sites.size()]);
+        Map<String, JiraSite> byName = new HashMap<String, JiraSite>(this.sites.length * 2);
+        for (JiraSite site : this.sites) {
+            // like the former linear search, the first site with a given name wins
+            if (!byName.containsKey(site.getName())) {
+                byName.put(site.getName(), site);
+            }
+        }
+        this.sitesByName = Collections.unmodifiableMap(byName);
+        this.generation = GENERATIONS.incrementAndGet();
+    }
+
+    /**
+     * @return the site with the given name, or null if there's none
+     */
+    public JiraSite get(String name) {
+        return name == null ? null : sitesByName.get(name);
+    }
+
+    /**
+     * @return the first configured site, or null if there's none
+     */
+    public JiraSite getDefault() {
+        return sites.length > 0 ? sites[0] : null;
+    }
+
+    /**
+     * @return a copy of all configured sites, in configuration order
+     */
+    public JiraSite[] getSites() {
+        return sites.clone();
+    }
+
+    public int size() {
+        return sites.length;
+    }
+
+    /**
+     * Increases with every new snapshot, so that derived data can tell whether it's stale.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Gets the router to the site of an issue, built from the project keys of these sites.
+     * <p>
+     * Never waits for JIRA: while the router is built or rebuilt in the background, this returns
+     * the previous one, or one that routes nothing.
+     */
+    public JiraSiteRouter getRouter() {
+        JiraSiteRouter r = router;
+        if (r == null && sites.length <= 1) {
+            // nothing to fetch
+            r = JiraSiteRouter.build(sites);
+            router = r;
+        }
+        if ((r == null || r.isStale()) && building.compareAndSet(false, true)) {
+            Timer.get().submit(new Runnable() {
+                public void run() {
+                    try {
+                        router = JiraSiteRouter.build(sites);
+                    } finally {
+                        building.set(false);
+                    }
+                }
+            });
+        }
+        return r != null ? r : JiraSiteRouter.NONE;
+    }
+}
@@ -0,0 +1,185 @@
+package hudson.plugins.jira;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Finds the site an issue belongs to by its project key, for jobs whose changes mention issues
+ * of several JIRA instances.
+ * <p>
+ * Immutable, built from the project keys of all sites of a {@link JiraSiteRegistry}.
+ * If a project key is known to several sites, the first configured one wins.
+ *
+ * @see JiraSiteRegistry#getRouter()
+ */
+public final class JiraSiteRouter {
+    private static final Logger LOGGER = Logger.getLogger(JiraSiteRouter.class.getName());
+
+    /**
+     * How long a router missing the project keys of a site is used before they are asked for again.
+     */
+    private static final long RETRY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Routes nothing, used until the project keys of the sites are known.
+     */
+    static final JiraSiteRouter NONE = new JiraSiteRouter(new HashMap<String, JiraSite>(), false);
+
+    private final Map<String, JiraSite> sitesByProject;
+
+    /**
+     * Whether every site could tell its project keys when this was built.
+     */
+    private final boolean complete;
+
+    private final long created = System.currentTimeMillis();
+
+    JiraSiteRouter(Map<String, JiraSite> sitesByProject, boolean complete) {
+        this.sitesByProject = Collections.unmodifiableMap(sitesByProject);
+        this.complete = complete;
+    }
+
+    /**
+     * Gets the project keys of the given sites in parallel, and maps them to the sites.
+     */
+    static JiraSiteRouter build(JiraSite[] sites) {
+        if (sites.length <= 1) {
+            // the site of every job, nothing to route
+            return new JiraSiteRouter(new HashMap<String, JiraSite>(), true);
+        }
+
+        List<Future<Set<String>>> fetches = new ArrayList<Future<Set<String>>>(sites.length);
+        for (final JiraSite site : sites) {
+            fetches.add(FETCHER.submit(new Callable<Set<String>>() {
+                public Set<String> call() {
+                    Set<String> keys = site.getProjectKeys();
+                    // null if the site couldn't be reached, unlike a site without projects
+                    return site.hasProjectKeys() ? keys : null;
+                }
+            }));
+        }
+
+        Map<String, JiraSite> sitesByProject = new HashMap<String, JiraSite>();
+        boolean complete = true;
+        try {
+            for (int i = 0; i < sites.length; i++) {
+                Set<String> keys = getOrNull(fetches.get(i), sites[i]);
+                if (keys == null) {
+                    complete = false;
+                    continue;
+                }
+                for (String key : keys) {
+                    if (!sitesByProject.containsKey(key)) {
+                        sitesByProject.put(key, sites[i]);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            complete = false;
+        }
+        return new JiraSiteRouter(sitesByProject, complete);
+    }
+
+    private static Set<String> getOrNull(Future<Set<String>> fetch, JiraSite site) throws InterruptedException {
+        try {
+            return fetch.get();
+        } catch (ExecutionException e) {
+            LOGGER.log(Level.WARNING, "Failed to get the projects of " + site.getName(), e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * Whether every site could tell its project keys, so that an issue this doesn't route
+     * really belongs to no other site.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Whether this should be replaced, as some sites couldn't tell their projects a while ago.
+     */
+    boolean isStale() {
+        return !complete && System.currentTimeMillis() - created > RETRY_MILLIS;
+    }
+
+    /**
+     * @param issueKey like "MNG-1234"
+     * @return the site with the project of the issue, or null if there's none
+     */
+    public JiraSite route(String issueKey) {
+        int idx = issueKey.indexOf('-');
+        if (idx <= 0) {
+            return null;
+        }
+        return sitesByProject.get(issueKey.substring(0, idx).toUpperCase());
+    }
+
+    /**
+     * Like {@link #route(String)}, but the preferred site keeps the issues it knows,
+     * and those no site knows.
+     *
+     * @param preferred usually the site of the job
+     */
+    public JiraSite route(String issueKey, JiraSite preferred) {
+        if (preferred.existsIssue(issueKey)) {
+            return preferred;
+        }
+        JiraSite site = route(issueKey);
+        return site != null ? site : preferred;
+    }
+
+    /**
+     * Groups issue keys by the site they belong to, see {@link #route(String, JiraSite)}.
+     *
+     * @return the keys by site, the preferred site first
+     */
+    public Map<JiraSite, Set<String>> partition(Collection<String> issueKeys, JiraSite preferred) {
+        Map<JiraSite, Set<String>> keysBySite = new LinkedHashMap<JiraSite, Set<String>>();
+        keysBySite.put(preferred, new LinkedHashSet<String>());
+        for (String key : issueKeys) {
+            JiraSite site = route(key, preferred);
+            Set<String> keys = keysBySite.get(site);
+            if (keys == null) {
+                keys = new LinkedHashSet<String>();
+                keysBySite.put(site, keys);
+            }
+            keys.add(key);
+        }
+        return keysBySite;
+    }
+
+    /**
+     * Gets the project keys of the sites, shared by all routers.
+     */
+    private static final ExecutorService FETCHER = createFetcher();
+
+    private static ExecutorService createFetcher() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(4, 4, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), "JIRA site router"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -0,0 +1,123 @@
+package hudson.plugins.jira;
+
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.plugins.jira.remote.JiraFutures;
+import hudson.plugins.jira.remote.JiraInteractionSession;
+import hudson.plugins.jira.remote.JiraSessionManager;
+import hudson.plugins.jira.soap.RemoteIssueType;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Creates the sessions of the configured sites and fetches their project keys and issue types,
+ * in the background once the jobs are loaded and whenever the sites are reconfigured.
+ * The first build or changelog view then doesn't wait for them.
+ */
+public final class JiraSiteWarmUp {
+    private static final Logger LOGGER = Logger.getLogger(JiraSiteWarmUp.class.getName());
+
+    private JiraSiteWarmUp() {
+    }
+
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void warmUpConfiguredSites() {
+        start(JiraProjectProperty.DESCRIPTOR.getSites());
+    }
+
+    /**
+     * Warms up the given sites in parallel, without waiting for them.
+     */
+    static void start(JiraSite... sites) {
+        if (sites.length == 0) {
+            return;
+        }
+        final long start = System.nanoTime();
+        final List<ListenableFuture<Long>> warmUps = new ArrayList<ListenableFuture<Long>>(sites.length);
+        for (final JiraSite site : sites) {
+            warmUps.add(WARM_UP.submit(new Callable<Long>() {
+                public Long call() {
+                    try {
+                        return warmUp(site);
+                    } catch (Exception e) {
+                        LOGGER.log(Level.WARNING, "Failed to warm up JIRA site " + site.getName(), e);
+                        return null;
+                    }
+                }
+            }));
+        }
+
+        final ListenableFuture<List<Long>> all = Futures.successfulAsList(warmUps);
+        all.addListener(new Runnable() {
+            public void run() {
+                int warm = 0;
+                try {
+                    for (Long millis : all.get()) {
+                        if (millis != null) {
+                            warm++;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    throw new AssertionError(e);    // successfulAsList doesn't fail
+                }
+                LOGGER.info(String.format("Warmed up %d of %d JIRA sites in %d ms", warm, warmUps.size(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+            }
+        }, MoreExecutors.sameThreadExecutor());
+    }
+
+    /**
+     * Creates the session of a site and fetches what every build needs.
+     *
+     * @return milliseconds it took, or null if the site has no remote access
+     */
+    static Long warmUp(JiraSite site) throws Exception {
+        long start = System.nanoTime();
+        JiraInteractionSession session = site.getSession();
+        if (session == null) {
+            LOGGER.fine("No remote access to JIRA site " + site.getName() + ", nothing to warm up");
+            return null;
+        }
+
+        // the issue types are fetched concurrently with the project keys; the site keeps both
+        ListenableFuture<RemoteIssueType[]> types = site.getIssueTypes(JiraSessionManager.async(session));
+        site.getProjectKeys();
+        JiraFutures.claim(types, site.getTimeouts(), "getIssueTypes", "get the issue types");
+
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        LOGGER.info(String.format("Warmed up JIRA site %s in %d ms", site.getName(), millis));
+        return millis;
+    }
+
+    /**
+     * Number of sites warmed up at the same time.
+     */
+    private static final int THREADS = Integer.getInteger(JiraSiteWarmUp.class.getName() + ".threads", 4);
+
+    private static final ListeningExecutorService WARM_UP = createWarmUp();
+
+    private static ListeningExecutorService createWarmUp() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), "JIRA site warm-up"));
+        executor.allowCoreThreadTimeOut(true);
+        return MoreExecutors.listeningDecorator(executor);
+    }
+}
@@ -2,6 +2,7 @@ package hudson.plugins.jira;
 
 import hudson.Launcher;
 import hudson.maven.MavenBuild;
+import hudson.maven.MavenModuleSetBuild;
 import hudson.maven.MavenReporter;
 import hudson.maven.MavenReporterDescriptor;
 import hudson.model.BuildListener;
@@ -10,6 +11,7 @@ import net.sf.json.JSONObject;
 import org.kohsuke.stapler.StaplerRequest;
 
 import java.io.IOException;
+import java.util.Set;
 
 /**
  * {@link MavenReporter} for JIRA.
@@ -24,8 +26,43 @@ public class MavenJiraIssueUpdater extends MavenReporter {
 
     private static final long serialVersionUID = -3416800198673836204L;
 
+    /**
+     * Whether JIRA is updated after the module set build has completed, instead of by the module build.
+     * Only applies to modules built on their own, as the modules of a module set build share one update
+     * that always runs once the module set build has completed.
+     */
+    private final boolean deferred;
+
+    public MavenJiraIssueUpdater() {
+        this(false);
+    }
+
+    public MavenJiraIssueUpdater(boolean deferred) {
+        this.deferred = deferred;
+    }
+
+    public boolean isDeferred() {
+        return deferred;
+    }
+
     @Override
     public boolean end(MavenBuild build, Launcher launcher, BuildListener listener) throws InterruptedException, IOException {
+        MavenModuleSetBuild moduleSetBuild = build.getParentBuild();
+        if (moduleSetBuild != null) {
+            // the modules share one update, like the runs of a matrix build
+            Set<String> ids = Updater.collectIssueIds(build, listener);
+            if (ids != null) {
+                DeferredJiraUpdate.merge(moduleSetBuild, ids);
+                if (!ids.isEmpty()) {
+                    listener.getLogger().println(Messages.Updater_Deferred(ids.size()));
+                }
+            }
+            return true;
+        }
+        if (deferred) {
+            DeferredJiraUpdate.schedule(build, listener);
+            return true;
+        }
         return Updater.perform(build, listener);
     }
 
@@ -55,7 +92,7 @@ public class MavenJiraIssueUpdater extends MavenReporter {
         @Override
         public MavenJiraIssueUpdater newInstance(StaplerRequest req, JSONObject formData)
                 throws FormException {
-            return new MavenJiraIssueUpdater();
+            return new MavenJiraIssueUpdater(formData.optBoolean("deferred"));
         }
     }
 }
@@ -0,0 +1,107 @@
+package hudson.plugins.jira;
+
+import java.util.BitSet;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the issue keys a site answered it doesn't know, or doesn't show, so that they aren't
+ * asked for again with every build and every changelog view.
+ * <p>
+ * A Bloom filter: it never forgets a key it was told, but may rarely claim to know one it wasn't.
+ * So that issues created in the meantime are found, and such false claims don't last, the keys
+ * are kept in two generations and the older one is dropped whenever the newer is full or old enough.
+ */
+final class MissingIssueFilter {
+    private final int capacity;
+    private final int bits;
+    private final int hashes;
+    private final long periodNanos;
+
+    private BitSet current;
+    private BitSet previous;
+    private int count;
+    private long started;
+
+    /**
+     * @param capacity number of keys per generation
+     * @param falsePositives chance of claiming an unknown key, with a full generation
+     * @param period how long a generation takes keys
+     */
+    MissingIssueFilter(int capacity, double falsePositives, long period, TimeUnit unit) {
+        this.capacity = capacity;
+        this.bits = (int) Math.ceil(-capacity * Math.log(falsePositives) / (Math.log(2) * Math.log(2)));
+        this.hashes = Math.max(1, (int) Math.round((double) bits / capacity * Math.log(2)));
+        this.periodNanos = unit.toNanos(period);
+        this.current = new BitSet(bits);
+        this.previous = new BitSet(bits);
+        this.started = System.nanoTime();
+    }
+
+    /**
+     * @param key like "JENKINS-1234", in any case
+     * @return true if the key was recorded as missing, or rarely, if it wasn't but looks like one that was
+     */
+    synchronized boolean mightContain(String key) {
+        rotateIfDue();
+        String k = key.toUpperCase(Locale.ENGLISH);
+        int h1 = k.hashCode();
+        int h2 = hash2(k);
+        return contains(current, h1, h2) || contains(previous, h1, h2);
+    }
+
+    synchronized void add(String key) {
+        rotateIfDue();
+        String k = key.toUpperCase(Locale.ENGLISH);
+        int h1 = k.hashCode();
+        int h2 = hash2(k);
+        for (int i = 0; i < hashes; i++) {
+            current.set(index(h1, h2, i));
+        }
+        if (++count >= capacity) {
+            rotate();
+        }
+    }
+
+    private boolean contains(BitSet set, int h1, int h2) {
+        for (int i = 0; i < hashes; i++) {
+            if (!set.get(index(h1, h2, i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rotateIfDue() {
+        if (System.nanoTime() - started > periodNanos) {
+            rotate();
+        }
+    }
+
+    private void rotate() {
+        previous = current;
+        current = new BitSet(bits);
+        count = 0;
+        started = System.nanoTime();
+    }
+
+    /**
+     * The i-th bit of a key, combining two independent hashes.
+     */
+    private int index(int h1, int h2, int i) {
+        int h = h1 + i * h2;
+        return (h & Integer.MAX_VALUE) % bits;
+    }
+
+    /**
+     * FNV-1a, which spreads keys differently than {@link String#hashCode()}.
+     */
+    private static int hash2(String k) {
+        int h = 0x811c9dc5;
+        for (int i = 0; i < k.length(); i++) {
+            h ^= k.charAt(i);
+            h *= 0x01000193;
+        }
+        return h | 1;
+    }
+}
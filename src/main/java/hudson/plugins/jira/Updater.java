@@ -1,34 +1,40 @@
 package hudson.plugins.jira;
 
-import hudson.Util;
 import hudson.model.*;
 import hudson.model.AbstractBuild.DependencyChange;
 import hudson.plugins.jira.listissuesparameter.JiraIssueParameterValue;
 import hudson.plugins.jira.remote.JiraInteractionSession;
+import hudson.plugins.jira.soap.RemoteIssue;
 import hudson.plugins.jira.soap.RemotePermissionException;
-import hudson.scm.ChangeLogSet.AffectedFile;
 import hudson.scm.ChangeLogSet.Entry;
-import hudson.scm.RepositoryBrowser;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
 
 import org.apache.commons.lang.StringUtils;
 
 import javax.xml.rpc.ServiceException;
 
-import java.io.IOException;
 import java.io.PrintStream;
-import java.lang.reflect.Method;
-import java.net.URL;
 import java.rmi.RemoteException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import static java.lang.String.format;
-
 /**
  * Actual JIRA update logic.
  *
@@ -36,44 +42,128 @@ import static java.lang.String.format;
  */
 class Updater {
     static boolean perform(AbstractBuild<?, ?> build, BuildListener listener) {
+        Set<String> ids = collectIssueIds(build, listener);
+        if (ids != null && !ids.isEmpty() && !update(build, ids, listener.getLogger())) {
+            build.setResult(Result.FAILURE);
+        }
+        return true;
+    }
+
+    /**
+     * Finds the ids of the issues the build should update, after checking that it can update JIRA at all.
+     *
+     * @return null if JIRA can't be updated, in which case the build is marked as failed
+     */
+    static Set<String> collectIssueIds(AbstractBuild<?, ?> build, BuildListener listener) {
         PrintStream logger = listener.getLogger();
-        List<JiraIssue> issues = null;
+        JiraSite site = JiraSite.get(build.getProject());
+        if (site == null) {
+            logger.println(Messages.Updater_NoJiraSite());
+            build.setResult(Result.FAILURE);
+            return null;
+        }
+
+        if (Hudson.getInstance().getRootUrl() == null) {
+            logger.println(Messages.Updater_NoJenkinsUrl());
+            build.setResult(Result.FAILURE);
+            return null;
+        }
 
         try {
-            JiraSite site = JiraSite.get(build.getProject());
-            if (site == null) {
-                logger.println(Messages.Updater_NoJiraSite());
-                build.setResult(Result.FAILURE);
-                return true;
+            Set<String> ids = findIssueIdsRecursive(build, site.getIssuePattern(), listener);
+            if (ids.isEmpty() && debug) {
+                logger.println("No JIRA issues found.");
             }
+            return ids;
+        } catch (Exception e) {
+            logger.println("Error updating JIRA issues.\n" + e);
+            return Collections.emptySet();
+        }
+    }
 
-            String rootUrl = Hudson.getInstance().getRootUrl();
-            if (rootUrl == null) {
-                logger.println(Messages.Updater_NoJenkinsUrl());
-                build.setResult(Result.FAILURE);
-                return true;
-            }
+    /**
+     * Comments on the given issues, or carries them over to the next build if the build didn't work
+     * or JIRA fails.
+     * Doesn't touch the result of the build, so that it can run after the build has completed.
+     *
+     * @return false if JIRA can't be updated at all
+     */
+    static boolean update(AbstractBuild<?, ?> build, Set<String> ids, PrintStream logger) {
+        JiraSite site = JiraSite.get(build.getProject());
+        if (site == null) {
+            logger.println(Messages.Updater_NoJiraSite());
+            return false;
+        }
 
-            Set<String> ids = findIssueIdsRecursive(build, site.getIssuePattern(), listener);
+        String rootUrl = Hudson.getInstance().getRootUrl();
+        if (rootUrl == null) {
+            logger.println(Messages.Updater_NoJenkinsUrl());
+            return false;
+        }
 
-            if (ids.isEmpty()) {
-                if (debug)
-                    logger.println("No JIRA issues found.");
-                return true;    // nothing found here.
+        List<JiraIssue> issues = new ArrayList<JiraIssue>();
+        List<JiraIssue> carriedOver = new ArrayList<JiraIssue>();
+        JiraCallStats calls = new JiraCallStats();
+        boolean reachable = true;
+        for (Map.Entry<JiraSite, Set<String>> routed : routeIssueIds(site, ids).entrySet()) {
+            JiraSite target = routed.getKey();
+            if (target != site) {
+                logger.println(Messages.Updater_Routed(routed.getValue().size(), target.getName()));
             }
+            if (!update(build, target, routed.getValue(), rootUrl, logger, issues, carriedOver, calls) && target == site) {
+                reachable = false;
+            }
+        }
+
+        if (reachable || !issues.isEmpty()) {
+            JiraBuildAction.record(build, issues);
+        }
+        if (!carriedOver.isEmpty()) {
+            build.addAction(new JiraCarryOverAction(carriedOver));
+        }
+        calls.printSummary(logger);
+        JiraCallsAction.add(build, calls);
+        return reachable;
+    }
+
+    /**
+     * Groups the issue ids by the site they belong to, when several sites are configured.
+     * The ids the site of the job knows, or no site knows, stay with it.
+     */
+    private static Map<JiraSite, Set<String>> routeIssueIds(JiraSite site, Set<String> ids) {
+        JiraSiteRegistry registry = JiraProjectProperty.DESCRIPTOR.getRegistry();
+        if (registry.size() <= 1) {
+            return Collections.singletonMap(site, ids);
+        }
+        return registry.getRouter().partition(ids, site);
+    }
 
+    /**
+     * Comments on the issues of one site, or carries them over if the build didn't work or JIRA fails.
+     *
+     * @param found collects the issues found in JIRA
+     * @param carriedOver collects the issues to update with the next build
+     * @param calls records the calls made to the site
+     * @return false if the site can't be updated at all
+     */
+    private static boolean update(AbstractBuild<?, ?> build, JiraSite site, Set<String> ids, String rootUrl,
+                                  PrintStream logger, List<JiraIssue> found, List<JiraIssue> carriedOver,
+                                  JiraCallStats calls) {
+        List<JiraIssue> issues = null;
+
+        try {
             JiraInteractionSession session = null;
             try {
                 session = site.getSession();
             } catch (ServiceException e) {
-                listener.getLogger().println(Messages.Updater_FailedToConnect());
-                e.printStackTrace(listener.getLogger());
+                logger.println(Messages.Updater_FailedToConnect());
+                e.printStackTrace(logger);
             }
             if (session == null) {
                 logger.println(Messages.Updater_NoRemoteAccess());
-                build.setResult(Result.FAILURE);
-                return true;
+                return false;
             }
+            session = calls.instrument(session);
 
             boolean doUpdate = false;
             if (site.updateJiraIssueForAllStatus) {
@@ -83,21 +173,24 @@ class Updater {
             }
             boolean useWikiStyleComments = site.supportsWikiStyleComment;
 
-            issues = getJiraIssues(ids, session, logger);
-            build.getActions().add(new JiraBuildAction(build, issues));
+            issues = getJiraIssues(ids, site, session, logger, carriedOver);
+            found.addAll(issues);
 
-            if (doUpdate) {
-                submitComments(build, logger, rootUrl, issues,
-                        session, useWikiStyleComments, site.recordScmChanges, site.groupVisibility, site.roleVisibility);
+            CommentCoalescer coalescer = site.getCommentCoalescer();
+            if (doUpdate && coalescer != null) {
+                queueComments(build, logger, rootUrl, issues, coalescer, site);
+            } else if (doUpdate) {
+                submitComments(build, logger, rootUrl, issues, session, useWikiStyleComments,
+                        site.recordScmChanges, site.groupVisibility, site.roleVisibility, site.getIssuePattern());
             } else {
                 // this build didn't work, so carry forward the issues to the next build
-                build.addAction(new JiraCarryOverAction(issues));
+                carriedOver.addAll(issues);
             }
         } catch (Exception e) {
             logger.println("Error updating JIRA issues. Saving issues for next build.\n" + e);
             if (issues != null && !issues.isEmpty()) {
                 // updating issues failed, so carry forward issues to the next build
-                build.addAction(new JiraCarryOverAction(issues));
+                carriedOver.addAll(issues);
             }
         }
 
@@ -123,6 +216,20 @@ class Updater {
             AbstractBuild<?, ?> build, PrintStream logger, String jenkinsRootUrl,
             List<JiraIssue> issues, JiraInteractionSession session,
             boolean useWikiStyleComments, boolean recordScmChanges, String groupVisibility, String roleVisibility) throws RemoteException {
+        submitComments(build, logger, jenkinsRootUrl, issues, session, useWikiStyleComments, recordScmChanges,
+                groupVisibility, roleVisibility, JiraSite.DEFAULT_ISSUE_PATTERN);
+    }
+
+    /**
+     * @param pattern pattern the issue ids were found with, used to match the changes to the issues
+     */
+    static void submitComments(
+            AbstractBuild<?, ?> build, PrintStream logger, String jenkinsRootUrl,
+            List<JiraIssue> issues, JiraInteractionSession session,
+            boolean useWikiStyleComments, boolean recordScmChanges, String groupVisibility, String roleVisibility,
+            Pattern pattern) throws RemoteException {
+        CommentRenderer renderer = new CommentRenderer(build, jenkinsRootUrl, useWikiStyleComments,
+                recordScmChanges, pattern);
         // copy to prevent ConcurrentModificationException
         List<JiraIssue> copy = new ArrayList<JiraIssue>(issues);
         for (JiraIssue issue : copy) {
@@ -130,7 +237,7 @@ class Updater {
                 logger.println(Messages.Updater_Updating(issue.id));
                 session.addComment(
                         issue.id,
-                        createComment(build, useWikiStyleComments, jenkinsRootUrl, recordScmChanges, issue),
+                        renderer.render(issue),
                         groupVisibility, roleVisibility);
             } catch (RemotePermissionException e) {
                 // Seems like RemotePermissionException can mean 'no permission' as well as
@@ -144,121 +251,65 @@ class Updater {
         }
     }
 
-    private static List<JiraIssue> getJiraIssues(
-            Set<String> ids, JiraInteractionSession session, PrintStream logger) throws RemoteException {
-        List<JiraIssue> issues = new ArrayList<JiraIssue>(ids.size());
-        for (String id : ids) {
-            if (!session.existsIssue(id)) {
-                if (debug) {
-                    logger.println(id + " looked like a JIRA issue but it wasn't");
-                }
-                continue;   // token looked like a JIRA issue but it's actually not.
-            }
-
-            issues.add(new JiraIssue(session.getIssue(id)));
+    /**
+     * Hands the comments for the given issues to the {@link CommentCoalescer} of the site,
+     * which merges them with the comments of other builds.
+     */
+    static void queueComments(AbstractBuild<?, ?> build, PrintStream logger, String jenkinsRootUrl,
+                              List<JiraIssue> issues, CommentCoalescer coalescer, JiraSite site) {
+        CommentRenderer renderer = new CommentRenderer(build, jenkinsRootUrl, site.supportsWikiStyleComment,
+                site.recordScmChanges, site.getIssuePattern());
+        for (JiraIssue issue : issues) {
+            logger.println(Messages.Updater_Queued(issue.id, site.commentCoalescingWindow));
+            coalescer.add(issue.id, renderer.render(issue));
         }
-        return issues;
     }
 
-
     /**
-     * Creates a comment to be used in JIRA for the build.
+     * Looks up the issues in JIRA. Those JIRA answers are missing, or can't be seen, are dropped and
+     * remembered as missing. Once a lookup fails otherwise, that issue and the ones not looked up yet
+     * are carried over to the next build instead.
+     *
+     * @param carriedOver collects the issues which couldn't be looked up
      */
-    private static String createComment(AbstractBuild<?, ?> build,
-                                        boolean wikiStyle, String jenkinsRootUrl, boolean recordScmChanges, JiraIssue jiraIssue) {
-        return format(
-                wikiStyle ?
-                        "%6$s: Integrated in !%1$simages/16x16/%3$s! [%2$s|%4$s]\n%5$s" :
-                        "%6$s: Integrated in %2$s (See [%4$s])\n%5$s",
-                jenkinsRootUrl,
-                build,
-                build.getResult().color.getImage(),
-                Util.encode(jenkinsRootUrl + build.getUrl()),
-                getScmComments(wikiStyle, build, recordScmChanges, jiraIssue),
-                build.getResult().toString());
-    }
-
-    private static String getScmComments(boolean wikiStyle,
-                                         AbstractBuild<?, ?> build, boolean recordScmChanges, JiraIssue jiraIssue) {
-        StringBuilder comment = new StringBuilder();
-        RepositoryBrowser repoBrowser = getRepositoryBrowser(build);
-        for (Entry change : build.getChangeSet()) {
-            if (jiraIssue != null && !StringUtils.containsIgnoreCase(change.getMsg(), jiraIssue.id)) {
+    static List<JiraIssue> getJiraIssues(Set<String> ids, JiraSite site, JiraInteractionSession session,
+                                         PrintStream logger, List<JiraIssue> carriedOver) {
+        List<JiraIssue> issues = new ArrayList<JiraIssue>(ids.size());
+        RemoteException failure = null;
+        for (String id : ids) {
+            if (failure != null) {
+                carriedOver.add(new JiraIssue(id, null));
                 continue;
             }
-            comment.append(change.getMsg());
-            String revision = getRevision(change);
-            if (revision != null) {
-                URL url = null;
-                if (repoBrowser != null) {
-                    try {
-                        url = repoBrowser.getChangeSetLink(change);
-                    } catch (IOException e) {
-                        LOGGER.warning("Failed to calculate SCM repository browser link " + e.getMessage());
-                    }
-                }
-                comment.append(" (");
-                String uid = change.getAuthor().getId();
-                if (StringUtils.isNotBlank(uid)) {
-                    comment.append(uid).append(": ");
-                }
-                if (url != null && StringUtils.isNotBlank(url.toExternalForm())) {
-                    if (wikiStyle) {
-                        comment.append("[").append(revision).append("|");
-                        comment.append(url.toExternalForm()).append("]");
-                    } else {
-                        comment.append(url.toExternalForm());
-                    }
-                } else {
-                    comment.append("rev ").append(revision);
-                }
-                comment.append(")");
-            }
-            comment.append("\n");
-            if (recordScmChanges) {
-                // see http://issues.jenkins-ci.org/browse/JENKINS-2508
-                // added additional try .. catch; getAffectedFiles is not supported by all SCM implementations
-                try {
-                    for (AffectedFile affectedFile : change.getAffectedFiles()) {
-                        comment.append("* ").append(affectedFile.getPath()).append("\n");
-                    }
-                } catch (UnsupportedOperationException e) {
-                    LOGGER.warning("Unsupported SCM operation 'getAffectedFiles'. Fall back to getAffectedPaths.");
-                    for (String affectedPath : change.getAffectedPaths()) {
-                        comment.append("* ").append(affectedPath).append("\n");
+
+            RemoteIssue issue;
+            try {
+                if (!session.existsIssue(id) || site.isKnownMissing(id)) {
+                    if (debug) {
+                        logger.println(id + " looked like a JIRA issue but it wasn't");
                     }
+                    continue;   // token looked like a JIRA issue but it's actually not.
                 }
+                issue = session.getIssue(id);
+            } catch (RemotePermissionException e) {
+                // the issue doesn't exist, or can't be seen; either way it can't be updated
+                issue = null;
+            } catch (RemoteException e) {
+                // JIRA failed, which says nothing about the issue
+                logger.println("Error looking up JIRA issue " + id + ". Saving issues for next build.\n" + e);
+                failure = e;
+                carriedOver.add(new JiraIssue(id, null));
+                continue;
             }
-        }
-        return comment.toString();
-    }
-
-    private static RepositoryBrowser<?> getRepositoryBrowser(AbstractBuild<?, ?> build) {
-        if (build.getProject().getScm() != null) {
-            return build.getProject().getScm().getEffectiveBrowser();
-        }
-        return null;
-    }
-
-    private static String getRevision(Entry entry) {
-        String commitId = entry.getCommitId();
-        if (commitId != null) {
-            return commitId;
-        }
-
-        // fall back to old SVN-specific solution, if we have only installed an old subversion-plugin
-        // which doesn't implement getCommitId, yet
-        try {
-            Class<?> clazz = entry.getClass();
-            Method method = clazz.getMethod("getRevision", (Class[]) null);
-            if (method == null) {
-                return null;
+            if (issue == null) {
+                logger.println("Looks like " + id + " is no valid JIRA issue or you don't have permission to see the issue.\n" +
+                        "Issue will not be updated.");
+                site.recordMissing(id);
+                continue;
             }
-            Object revObj = method.invoke(entry, (Object[]) null);
-            return (revObj != null) ? revObj.toString() : null;
-        } catch (Exception e) {
-            return null;
+            issues.add(new JiraIssue(issue));
         }
+        return issues;
     }
 
 
@@ -283,35 +334,115 @@ class Updater {
         }
 
         // then issues in this build
-        findIssues(build, ids, pattern, listener);
+        Set<String> buildIds = new HashSet<String>();
+        JiraChangeLogIndex.index(build, pattern, false);
+        findIssues(build, buildIds, pattern, listener);
+        ids.addAll(buildIds);
 
         // check for issues fixed in dependencies
+        Set<AbstractBuild<?, ?>> dependencyBuilds = new LinkedHashSet<AbstractBuild<?, ?>>();
         for (DependencyChange depc : build.getDependencyChanges(build.getPreviousBuild()).values()) {
             for (AbstractBuild<?, ?> b : depc.getBuilds()) {
+                dependencyBuilds.add(b);
+            }
+        }
+        ids.addAll(findDependencyIssueIds(dependencyBuilds, pattern, listener));
+        return ids;
+    }
+
+    /**
+     * Finds the issue IDs of the given dependency builds. Builds whose changelog was indexed
+     * with the pattern are answered from their {@link JiraChangeLogIndex}, the changelogs of
+     * the other builds are indexed in parallel and the index is saved with each build.
+     */
+    private static Set<String> findDependencyIssueIds(Collection<AbstractBuild<?, ?>> builds, final Pattern pattern,
+                                                      final BuildListener listener) {
+        Set<String> ids = new HashSet<String>();
+        List<AbstractBuild<?, ?>> unscanned = new ArrayList<AbstractBuild<?, ?>>();
+        for (AbstractBuild<?, ?> b : builds) {
+            JiraChangeLogIndex index = b.getAction(JiraChangeLogIndex.class);
+            if (index != null && index.isBuiltWith(pattern)) {
                 findIssues(b, ids, pattern, listener);
+            } else {
+                unscanned.add(b);
+            }
+        }
+
+        if (unscanned.size() == 1) {
+            ids.addAll(scanAndRemember(unscanned.get(0), pattern, listener));
+            return ids;
+        }
+
+        List<Future<Set<String>>> scans = new ArrayList<Future<Set<String>>>(unscanned.size());
+        for (final AbstractBuild<?, ?> b : unscanned) {
+            scans.add(DEPENDENCY_SCANNER.submit(new Callable<Set<String>>() {
+                public Set<String> call() {
+                    return scanAndRemember(b, pattern, listener);
+                }
+            }));
+        }
+        try {
+            for (Future<Set<String>> scan : scans) {
+                ids.addAll(scan.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            listener.getLogger().println("Interrupted while looking for JIRA issues in dependency builds");
+        } catch (ExecutionException e) {
+            listener.getLogger().println("Failed to look for JIRA issues in dependency builds: " + e.getCause());
+        } finally {
+            for (Future<Set<String>> scan : scans) {
+                scan.cancel(true);
             }
         }
         return ids;
     }
 
+    private static Set<String> scanAndRemember(AbstractBuild<?, ?> build, Pattern pattern, BuildListener listener) {
+        JiraChangeLogIndex.index(build, pattern, true);
+        Set<String> ids = new HashSet<String>();
+        findIssues(build, ids, pattern, listener);
+        return ids;
+    }
+
+    /**
+     * Scans changelogs of dependency builds, shared by all builds.
+     */
+    private static final ExecutorService DEPENDENCY_SCANNER = createDependencyScanner();
+
+    private static ExecutorService createDependencyScanner() {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), "JIRA dependency changelog scanner"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     /**
      * @param pattern pattern to use to match issue ids
      */
     static void findIssues(AbstractBuild<?, ?> build, Set<String> ids, Pattern pattern,
                            BuildListener listener) {
-        for (Entry change : build.getChangeSet()) {
-            LOGGER.fine("Looking for JIRA ID in " + change.getMsg());
-            Matcher m = pattern.matcher(change.getMsg());
-
-            while (m.find()) {
-                if (m.groupCount() >= 1) {
-                    String content = StringUtils.upperCase(m.group(1));
-                    ids.add(content);
-                } else {
-                    listener.getLogger().println("Warning: The JIRA pattern " + pattern + " doesn't define a capturing group!");
+        JiraChangeLogIndex index = build.getAction(JiraChangeLogIndex.class);
+        if (index != null && pattern != null && index.isBuiltWith(pattern)) {
+            // the changelog was already scanned when it was parsed
+            ids.addAll(index.getIssueKeys());
+        } else {
+            for (Entry change : build.getChangeSet()) {
+                LOGGER.fine("Looking for JIRA ID in " + change.getMsg());
+                Matcher m = pattern.matcher(change.getMsg());
+
+                while (m.find()) {
+                    if (m.groupCount() >= 1) {
+                        String content = StringUtils.upperCase(m.group(1));
+                        ids.add(content);
+                    } else {
+                        listener.getLogger().println("Warning: The JIRA pattern " + pattern + " doesn't define a capturing group!");
+                    }
                 }
-            }
 
+            }
         }
 
         // Now look for any JiraIssueParameterValue's set in the build
@@ -15,24 +15,40 @@
  */
 package hudson.plugins.jira.listissuesparameter;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import hudson.Extension;
+import hudson.Util;
 import hudson.model.AbstractProject;
+import hudson.model.Item;
 import hudson.model.ParameterDefinition;
 import hudson.model.ParameterValue;
+import hudson.model.ParametersDefinitionProperty;
 import hudson.plugins.jira.JiraSite;
 import hudson.plugins.jira.remote.JiraInteractionSession;
+import hudson.plugins.jira.remote.rest.RestErrors;
 import hudson.plugins.jira.soap.RemoteIssue;
+import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
 
+import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.Stapler;
 import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
 
 import javax.xml.rpc.ServiceException;
 
 import java.io.IOException;
+import java.rmi.RemoteException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static hudson.Util.fixNull;
 import static java.util.Arrays.asList;
@@ -40,6 +56,13 @@ import static java.util.Arrays.asList;
 public class JiraIssueParameterDefinition extends ParameterDefinition {
     private static final long serialVersionUID = 3927562542249244416L;
 
+    /**
+     * Number of issues returned per page by the typeahead search.
+     */
+    static final int PAGE_SIZE = 50;
+
+    private static final Pattern ORDER_BY = Pattern.compile("\\border\\s+by\\b", Pattern.CASE_INSENSITIVE);
+
     private String jiraIssueFilter;
 
     @DataBoundConstructor
@@ -87,6 +110,130 @@ public class JiraIssueParameterDefinition extends ParameterDefinition {
         return issueValues;
     }
 
+    /**
+     * Gets one page of the issues matching {@link #jiraIssueFilter}, narrowed down to
+     * those whose key or summary match the given text.
+     * Pages are cached per site and filter for a short while, so that typing in the
+     * parameter page doesn't hit JIRA for every keystroke.
+     *
+     * @param text key or summary text typed by the user, may be empty
+     * @param start index of the first issue to return
+     */
+    public List<JiraIssueParameterDefinition.Result> search(AbstractProject<?, ?> context, String text, int start)
+            throws IOException, ServiceException {
+        JiraSite site = JiraSite.get(context);
+        if (site == null)
+            throw new IllegalStateException("JIRA site needs to be configured in the project " + context.getFullDisplayName());
+
+        return search(site, text, start);
+    }
+
+    List<JiraIssueParameterDefinition.Result> search(JiraSite site, String text, int start)
+            throws IOException, ServiceException {
+        String jql = narrowJql(jiraIssueFilter, text, site.getIssuePattern());
+        String cacheKey = site.getName() + '\n' + jql + '\n' + start;
+
+        List<Result> page = PAGE_CACHE.getIfPresent(cacheKey);
+        if (page != null) {
+            return page;
+        }
+
+        JiraInteractionSession session = site.getSession();
+        if (session == null) throw new IllegalStateException("Remote access for JIRA isn't configured in Jenkins");
+
+        RemoteIssue[] issues;
+        try {
+            issues = session.getIssuesFromJqlSearch(jql, start, PAGE_SIZE);
+        } catch (RemoteException e) {
+            String bySummary = narrowJql(jiraIssueFilter, text, null);
+            if (bySummary.equals(jql) || !isRefusedQuery(e)) {
+                throw e;
+            }
+            // JIRA refuses to search for a key that doesn't exist, which is likely the start of a longer one
+            issues = session.getIssuesFromJqlSearch(bySummary, start, PAGE_SIZE);
+        }
+
+        page = new ArrayList<Result>(PAGE_SIZE);
+        if (issues != null) {
+            for (RemoteIssue issue : issues) {
+                page.add(new Result(issue));
+            }
+        }
+        page = Collections.unmodifiableList(page);
+
+        PAGE_CACHE.put(cacheKey, page);
+        return page;
+    }
+
+    /**
+     * URL of the typeahead search endpoint for this parameter, relative to the server root.
+     */
+    public String getSearchUrl() {
+        StaplerRequest req = Stapler.getCurrentRequest();
+        AbstractProject<?, ?> context = req.findAncestorObject(AbstractProject.class);
+        return req.getContextPath() + '/' + context.getUrl() + "descriptorByName/" + getClass().getName()
+                + "/search?name=" + Util.rawEncode(getName());
+    }
+
+    /**
+     * Whether JIRA answered that the query is invalid, rather than failing to answer.
+     */
+    private static boolean isRefusedQuery(RemoteException e) {
+        return RestErrors.getStatusCode(e) == 400 || e instanceof hudson.plugins.jira.soap.RemoteException;
+    }
+
+    static String narrowJql(String jql, String text) {
+        return narrowJql(jql, text, JiraSite.DEFAULT_ISSUE_PATTERN);
+    }
+
+    /**
+     * Restricts the given JQL to the issue with the given key, if the text is a whole key, or else
+     * to the issues whose summary starts with the given text. An <tt>ORDER BY</tt> clause of the
+     * original query is kept.
+     *
+     * @param issuePattern pattern of the site for issue keys, or null to only search the summary
+     */
+    static String narrowJql(String jql, String text, Pattern issuePattern) {
+        jql = Util.fixNull(jql).trim();
+        text = Util.fixEmptyAndTrim(text);
+        if (text == null) {
+            return jql;
+        }
+
+        String where = jql;
+        String orderBy = "";
+        Matcher m = ORDER_BY.matcher(jql);
+        if (m.find()) {
+            where = jql.substring(0, m.start()).trim();
+            orderBy = " " + jql.substring(m.start());
+        }
+
+        String escaped = text.replace("\\", "\\\\").replace("\"", "\\\"");
+        String clause = isIssueKey(text, issuePattern)
+                ? "issuekey = \"" + escaped + "\""
+                : "summary ~ \"" + escaped + "*\"";
+
+        if (where.length() == 0) {
+            return clause + orderBy;
+        }
+        return "(" + where + ") AND " + clause + orderBy;
+    }
+
+    /**
+     * Whether the whole text is an issue key, and not just the start of one like "FOO-".
+     */
+    private static boolean isIssueKey(String text, Pattern issuePattern) {
+        if (issuePattern == null) {
+            return false;
+        }
+        Matcher m = issuePattern.matcher(text);
+        if (!m.lookingAt()) {
+            return false;
+        }
+        String key = m.groupCount() > 0 ? m.group(1) : m.group();
+        return text.equals(key);
+    }
+
     public String getJiraIssueFilter() {
         return jiraIssueFilter;
     }
@@ -95,12 +242,54 @@ public class JiraIssueParameterDefinition extends ParameterDefinition {
         this.jiraIssueFilter = jiraIssueFilter;
     }
 
+    private static final Cache<String, List<Result>> PAGE_CACHE = CacheBuilder.newBuilder()
+            .maximumSize(500).expireAfterWrite(1, TimeUnit.MINUTES).build();
+
     @Extension
     public static class DescriptorImpl extends ParameterDescriptor {
         @Override
         public String getDisplayName() {
             return "JIRA Issue Parameter";
         }
+
+        /**
+         * Typeahead endpoint used by the parameter page, returning one page of matching issues as JSON.
+         */
+        public void doSearch(StaplerResponse rsp, @AncestorInPath AbstractProject<?, ?> project,
+                @QueryParameter String name, @QueryParameter String q, @QueryParameter int start)
+                throws IOException, ServiceException {
+            project.checkPermission(Item.BUILD);
+
+            JiraIssueParameterDefinition definition = null;
+            ParametersDefinitionProperty property = project.getProperty(ParametersDefinitionProperty.class);
+            if (property != null) {
+                ParameterDefinition d = property.getParameterDefinition(name);
+                if (d instanceof JiraIssueParameterDefinition) {
+                    definition = (JiraIssueParameterDefinition) d;
+                }
+            }
+            if (definition == null) {
+                rsp.sendError(StaplerResponse.SC_NOT_FOUND, "No JIRA issue parameter named " + name);
+                return;
+            }
+
+            List<Result> page = definition.search(project, q, Math.max(0, start));
+
+            JSONArray issues = new JSONArray();
+            for (Result result : page) {
+                JSONObject issue = new JSONObject();
+                issue.put("key", result.key);
+                issue.put("summary", result.summary);
+                issues.add(issue);
+            }
+            JSONObject json = new JSONObject();
+            json.put("issues", issues);
+            json.put("start", start);
+            json.put("more", page.size() == PAGE_SIZE);
+
+            rsp.setContentType("application/json;charset=UTF-8");
+            json.write(rsp.getWriter());
+        }
     }
 
     public static class Result {
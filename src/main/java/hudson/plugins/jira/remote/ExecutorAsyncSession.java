@@ -0,0 +1,160 @@
+package hudson.plugins.jira.remote;
+
+import hudson.plugins.jira.soap.RemoteComponent;
+import hudson.plugins.jira.soap.RemoteFieldValue;
+import hudson.plugins.jira.soap.RemoteIssue;
+import hudson.plugins.jira.soap.RemoteIssueType;
+import hudson.plugins.jira.soap.RemoteVersion;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Makes a blocking session, like the SOAP one, asynchronous by running its calls on an executor.
+ * Cancelling a call interrupts the thread waiting for its answer.
+ */
+final class ExecutorAsyncSession implements JiraAsyncSession {
+    private final JiraInteractionSession session;
+    private final ListeningExecutorService executor;
+
+    ExecutorAsyncSession(JiraInteractionSession session, ListeningExecutorService executor) {
+        this.session = session;
+        this.executor = executor;
+    }
+
+    public ListenableFuture<Set<String>> getProjectKeys() {
+        return executor.submit(new Callable<Set<String>>() {
+            public Set<String> call() throws Exception {
+                return session.getProjectKeys();
+            }
+        });
+    }
+
+    public ListenableFuture<RemoteIssue> getIssue(final String id) {
+        return executor.submit(new Callable<RemoteIssue>() {
+            public RemoteIssue call() throws Exception {
+                return session.getIssue(id);
+            }
+        });
+    }
+
+    public ListenableFuture<ProjectedIssue> getProjectedIssue(final String id, final String... fields) {
+        return executor.submit(new Callable<ProjectedIssue>() {
+            public ProjectedIssue call() throws Exception {
+                return session.getProjectedIssue(id, fields);
+            }
+        });
+    }
+
+    public ListenableFuture<RemoteIssue[]> getIssuesFromJqlSearch(final String jqlSearch, final int startAt, final int maxResults) {
+        return executor.submit(new Callable<RemoteIssue[]>() {
+            public RemoteIssue[] call() throws Exception {
+                return session.getIssuesFromJqlSearch(jqlSearch, startAt, maxResults);
+            }
+        });
+    }
+
+    public ListenableFuture<RemoteIssue[]> getIssuesWithFixVersion(final String projectKey, final String version, final String filter) {
+        return executor.submit(new Callable<RemoteIssue[]>() {
+            public RemoteIssue[] call() throws Exception {
+                return session.getIssuesWithFixVersion(projectKey, version, filter);
+            }
+        });
+    }
+
+    public ListenableFuture<RemoteIssueType[]> getIssueTypes() {
+        return executor.submit(new Callable<RemoteIssueType[]>() {
+            public RemoteIssueType[] call() throws Exception {
+                return session.getIssueTypes();
+            }
+        });
+    }
+
+    public ListenableFuture<RemoteVersion[]> getVersions(final String projectKey) {
+        return executor.submit(new Callable<RemoteVersion[]>() {
+            public RemoteVersion[] call() throws Exception {
+                return session.getVersions(projectKey);
+            }
+        });
+    }
+
+    public ListenableFuture<RemoteComponent[]> getComponents(final String projectKey) {
+        return executor.submit(new Callable<RemoteComponent[]>() {
+            public RemoteComponent[] call() throws Exception {
+                return session.getComponents(projectKey);
+            }
+        });
+    }
+
+    public ListenableFuture<Void> addComment(final String issueId, final String comment, final String groupVisibility, final String roleVisibility) {
+        return executor.submit(new Callable<Void>() {
+            public Void call() throws Exception {
+                session.addComment(issueId, comment, groupVisibility, roleVisibility);
+                return null;
+            }
+        });
+    }
+
+    public ListenableFuture<String> getActionIdForIssue(final String issueKey, final String workflowAction) {
+        return executor.submit(new Callable<String>() {
+            public String call() throws Exception {
+                return session.getActionIdForIssue(issueKey, workflowAction);
+            }
+        });
+    }
+
+    public ListenableFuture<String> progressWorkflowAction(final String issueKey, final String workflowActionName, final RemoteFieldValue[] fields) {
+        return executor.submit(new Callable<String>() {
+            public String call() throws Exception {
+                return session.progressWorkflowAction(issueKey, workflowActionName, fields);
+            }
+        });
+    }
+
+    public ListenableFuture<RemoteIssue> createIssue(final String projectKey, final String description, final String assignee,
+                                                     final RemoteComponent[] components, final String summary) {
+        return executor.submit(new Callable<RemoteIssue>() {
+            public RemoteIssue call() throws Exception {
+                return session.createIssue(projectKey, description, assignee, components, summary);
+            }
+        });
+    }
+
+    public ListenableFuture<RemoteVersion> addVersion(final String version, final String projectKey) {
+        return executor.submit(new Callable<RemoteVersion>() {
+            public RemoteVersion call() throws Exception {
+                return session.addVersion(version, projectKey);
+            }
+        });
+    }
+
+    public ListenableFuture<Void> releaseVersion(final String projectKey, final RemoteVersion version) {
+        return executor.submit(new Callable<Void>() {
+            public Void call() throws Exception {
+                session.releaseVersion(projectKey, version);
+                return null;
+            }
+        });
+    }
+
+    public ListenableFuture<Void> migrateIssuesToFixVersion(final String projectKey, final String version, final String query) {
+        return executor.submit(new Callable<Void>() {
+            public Void call() throws Exception {
+                session.migrateIssuesToFixVersion(projectKey, version, query);
+                return null;
+            }
+        });
+    }
+
+    public ListenableFuture<Void> replaceFixVersion(final String projectKey, final String fromVersion, final String toVersion, final String query) {
+        return executor.submit(new Callable<Void>() {
+            public Void call() throws Exception {
+                session.replaceFixVersion(projectKey, fromVersion, toVersion, query);
+                return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,107 @@
+package hudson.plugins.jira.remote;
+
+import hudson.plugins.jira.soap.RemoteComponent;
+import hudson.plugins.jira.soap.RemoteFieldValue;
+import hudson.plugins.jira.soap.RemoteIssue;
+import hudson.plugins.jira.soap.RemoteIssueType;
+import hudson.plugins.jira.soap.RemoteVersion;
+
+import java.util.Set;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Asynchronous companion of {@link JiraInteractionSession}: every method returns at once,
+ * so that independent calls can overlap.
+ * <p>
+ * The futures can be composed with {@link com.google.common.util.concurrent.Futures},
+ * cancelled, and given a deadline with {@link JiraFutures#withDeadline}.
+ * Use {@link JiraFutures#claim} to wait for one like the blocking session would.
+ *
+ * @see JiraSessionManager#async(JiraInteractionSession)
+ */
+public interface JiraAsyncSession {
+
+    /**
+     * @see JiraInteractionSession#getProjectKeys()
+     */
+    ListenableFuture<Set<String>> getProjectKeys();
+
+    /**
+     * @return a future of null if no such issue exists
+     * @see JiraInteractionSession#getIssue(String)
+     */
+    ListenableFuture<RemoteIssue> getIssue(String id);
+
+    /**
+     * @return a future of null if no such issue exists
+     * @see JiraInteractionSession#getProjectedIssue(String, String...)
+     */
+    ListenableFuture<ProjectedIssue> getProjectedIssue(String id, String... fields);
+
+    /**
+     * @see JiraInteractionSession#getIssuesFromJqlSearch(String, int, int)
+     */
+    ListenableFuture<RemoteIssue[]> getIssuesFromJqlSearch(String jqlSearch, int startAt, int maxResults);
+
+    /**
+     * @see JiraInteractionSession#getIssuesWithFixVersion(String, String, String)
+     */
+    ListenableFuture<RemoteIssue[]> getIssuesWithFixVersion(String projectKey, String version, String filter);
+
+    /**
+     * @see JiraInteractionSession#getIssueTypes()
+     */
+    ListenableFuture<RemoteIssueType[]> getIssueTypes();
+
+    /**
+     * @see JiraInteractionSession#getVersions(String)
+     */
+    ListenableFuture<RemoteVersion[]> getVersions(String projectKey);
+
+    /**
+     * @see JiraInteractionSession#getComponents(String)
+     */
+    ListenableFuture<RemoteComponent[]> getComponents(String projectKey);
+
+    /**
+     * @see JiraInteractionSession#addComment(String, String, String, String)
+     */
+    ListenableFuture<Void> addComment(String issueId, String comment, String groupVisibility, String roleVisibility);
+
+    /**
+     * @see JiraInteractionSession#getActionIdForIssue(String, String)
+     */
+    ListenableFuture<String> getActionIdForIssue(String issueKey, String workflowAction);
+
+    /**
+     * @see JiraInteractionSession#progressWorkflowAction(String, String, RemoteFieldValue[])
+     */
+    ListenableFuture<String> progressWorkflowAction(String issueKey, String workflowActionName, RemoteFieldValue[] fields);
+
+    /**
+     * @see JiraInteractionSession#createIssue(String, String, String, RemoteComponent[], String)
+     */
+    ListenableFuture<RemoteIssue> createIssue(String projectKey, String description, String assignee,
+                                              RemoteComponent[] components, String summary);
+
+    /**
+     * @see JiraInteractionSession#addVersion(String, String)
+     */
+    ListenableFuture<RemoteVersion> addVersion(String version, String projectKey);
+
+    /**
+     * @see JiraInteractionSession#releaseVersion(String, RemoteVersion)
+     */
+    ListenableFuture<Void> releaseVersion(String projectKey, RemoteVersion version);
+
+    /**
+     * @see JiraInteractionSession#migrateIssuesToFixVersion(String, String, String)
+     */
+    ListenableFuture<Void> migrateIssuesToFixVersion(String projectKey, String version, String query);
+
+    /**
+     * @see JiraInteractionSession#replaceFixVersion(String, String, String, String)
+     */
+    ListenableFuture<Void> replaceFixVersion(String projectKey, String fromVersion, String toVersion, String query);
+}
@@ -0,0 +1,84 @@
+package hudson.plugins.jira.remote;
+
+import java.rmi.RemoteException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import jenkins.util.Timer;
+
+/**
+ * Helpers for the futures of a {@link JiraAsyncSession}.
+ */
+public final class JiraFutures {
+    private JiraFutures() {
+    }
+
+    /**
+     * Waits for the answer of a call, failing like a blocking {@link JiraInteractionSession} would.
+     *
+     * @param what describes the call for error messages
+     */
+    public static <T> T claim(Future<T> future, String what) throws RemoteException {
+        return claim(future, null, null, what);
+    }
+
+    /**
+     * Waits for the answer of a call for at most the call timeout, then cancels it.
+     *
+     * @param timeouts where the call timeout comes from, and the timeout is counted; null to wait indefinitely
+     * @param operation name of the call, under which a timeout is counted
+     * @param what describes the call for error messages
+     */
+    public static <T> T claim(Future<T> future, JiraTimeouts timeouts, String operation, String what) throws RemoteException {
+        try {
+            if (timeouts == null) {
+                return future.get();
+            }
+            return future.get(timeouts.getCallTimeout(), TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timeouts.recordTimeout(operation);
+            throw new RemoteException("Gave up after " + timeouts.getCallTimeout() + " seconds trying to " + what, e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted while trying to " + what, e);
+        } catch (CancellationException e) {
+            throw new RemoteException("Gave up trying to " + what, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RemoteException) {
+                throw (RemoteException) e.getCause();
+            }
+            throw new RemoteException("Failed to " + what, e.getCause());
+        }
+    }
+
+    /**
+     * Cancels the call if it hasn't completed within the given time.
+     *
+     * @return the given future
+     */
+    public static <T> ListenableFuture<T> withDeadline(final ListenableFuture<T> future, long timeout, TimeUnit unit) {
+        if (future.isDone()) {
+            return future;
+        }
+        final ScheduledFuture<?> deadline = Timer.get().schedule(new Runnable() {
+            public void run() {
+                future.cancel(true);
+            }
+        }, timeout, unit);
+        future.addListener(new Runnable() {
+            public void run() {
+                deadline.cancel(false);
+            }
+        }, MoreExecutors.sameThreadExecutor());
+        return future;
+    }
+}
@@ -51,12 +51,33 @@ public interface JiraInteractionSession {
 
     Promise<Issue> getIssueAsync(String id);
 
+    /**
+     * Gets only the given fields of one issue, which is a lot cheaper than
+     * {@link #getIssueAsync(String)} for issues with long descriptions and many comments.
+     *
+     * @param fields
+     *            fields like {@link ProjectedIssue#SUMMARY}
+     * @return null if no such issue exists
+     */
+    ProjectedIssue getProjectedIssue(String id, String... fields) throws RemoteException;
+
     /**
      * Gets all issues that match the given JQL filter.
      */
     RemoteIssue[] getIssuesFromJqlSearch(String jqlSearch)
             throws RemoteException;
 
+    /**
+     * Gets one page of the issues that match the given JQL filter.
+     *
+     * @param startAt
+     *            index of the first matching issue to return, starting at 0
+     * @param maxResults
+     *            maximum number of issues to return
+     */
+    RemoteIssue[] getIssuesFromJqlSearch(String jqlSearch, int startAt,
+            int maxResults) throws RemoteException;
+
     /**
      * Gets the details of a group, given a groupId. Used for validating group
      * visibility.
@@ -3,11 +3,19 @@ package hudson.plugins.jira.remote;
 import hudson.model.Item;
 import hudson.plugins.jira.JiraSite;
 import hudson.plugins.jira.remote.rest.JiraRestSession;
+import hudson.plugins.jira.remote.soap.StreamingSoapSession;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import hudson.util.Secret;
+
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -20,11 +28,20 @@ import com.cloudbees.plugins.credentials.CredentialsProvider;
 import com.cloudbees.plugins.credentials.common.UsernamePasswordCredentials;
 import com.cloudbees.plugins.credentials.domains.DomainRequirement;
 import com.cloudbees.plugins.credentials.domains.HostnameRequirement;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
 
 public class JiraSessionManager {
 
     private static final Logger LOGGER = Logger.getLogger(JiraSessionManager.class.getName());
 
+    private static final int ASYNC_THREADS = Integer.getInteger(JiraSessionManager.class.getName() + ".asyncThreads", 8);
+
+    /**
+     * Talk to JIRA over SOAP instead of REST, for JIRA versions with an incomplete REST API.
+     */
+    private static final boolean USE_SOAP = Boolean.getBoolean(JiraSessionManager.class.getName() + ".soap");
+
     /**
      * Creates a new remote access session to this JIRA.
      *
@@ -32,8 +49,13 @@ public class JiraSessionManager {
      */
     public static JiraInteractionSession createSession(JiraSite site, URL url, UsernamePasswordCredentials credentials, boolean useHttpAuth) throws IOException, ServiceException {
 
+        if (USE_SOAP && credentials != null) {
+            return StreamingSoapSession.createSession(site, url, credentials.getUsername(),
+                    Secret.toString(credentials.getPassword()), useHttpAuth);
+        }
+
         try {
-            return JiraRestSession.createSession(url.toURI(), credentials);
+            return JiraRestSession.createSession(url.toURI(), credentials, site.getTimeouts());
 
         } catch (URISyntaxException e) {
             LOGGER.log(Level.SEVERE, "Cannot create JIRA session for invalid URI " + url, e);
@@ -41,6 +63,30 @@ public class JiraSessionManager {
         }
     }
 
+    /**
+     * Runs the calls of blocking sessions made asynchronous by {@link #async(JiraInteractionSession)}.
+     */
+    private static final ListeningExecutorService BLOCKING_CALLS;
+
+    static {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(ASYNC_THREADS, ASYNC_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), "JIRA session calls"));
+        executor.allowCoreThreadTimeOut(true);
+        BLOCKING_CALLS = MoreExecutors.listeningDecorator(executor);
+    }
+
+    /**
+     * Gets the asynchronous form of a session.
+     * The REST session is asynchronous itself, others get their calls run on a shared pool of threads.
+     */
+    public static JiraAsyncSession async(JiraInteractionSession session) {
+        if (session instanceof JiraRestSession) {
+            return ((JiraRestSession) session).async();
+        }
+        return new ExecutorAsyncSession(session, BLOCKING_CALLS);
+    }
+
     private static UsernamePasswordCredentials lookupCredentials(URL url) {
         final String jiraDomain = url.getHost();
         final DomainRequirement hostnameRequirement = new HostnameRequirement(jiraDomain);
@@ -0,0 +1,94 @@
+package hudson.plugins.jira.remote;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * How long the sessions of a JIRA site wait for JIRA, and how often they gave up, by operation.
+ * <p>
+ * Connect and read timeouts apply to each request, the call timeout to a whole operation
+ * like a search over several pages. Seconds of 0 or less stand for the defaults, which can be
+ * changed with system properties.
+ */
+public final class JiraTimeouts {
+    private static final Logger LOGGER = Logger.getLogger(JiraTimeouts.class.getName());
+
+    private static final String PREFIX = JiraTimeouts.class.getName() + ".";
+
+    public static final int DEFAULT_CONNECT_TIMEOUT = Integer.getInteger(PREFIX + "connectTimeoutSeconds", 10);
+    public static final int DEFAULT_READ_TIMEOUT = Integer.getInteger(PREFIX + "readTimeoutSeconds", 60);
+    public static final int DEFAULT_CALL_TIMEOUT = Integer.getInteger(PREFIX + "callTimeoutSeconds", 90);
+
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final int callTimeout;
+
+    /**
+     * Number of operations which timed out, by name.
+     */
+    private final ConcurrentMap<String, AtomicLong> timedOut = new ConcurrentHashMap<String, AtomicLong>();
+
+    public JiraTimeouts(int connectTimeout, int readTimeout, int callTimeout) {
+        this.connectTimeout = connectTimeout > 0 ? connectTimeout : DEFAULT_CONNECT_TIMEOUT;
+        this.readTimeout = readTimeout > 0 ? readTimeout : DEFAULT_READ_TIMEOUT;
+        this.callTimeout = callTimeout > 0 ? callTimeout : DEFAULT_CALL_TIMEOUT;
+    }
+
+    public static JiraTimeouts defaults() {
+        return new JiraTimeouts(0, 0, 0);
+    }
+
+    /**
+     * @return seconds to wait for a connection
+     */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * @return seconds to wait for data on a connection
+     */
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * @return seconds to wait for an operation to complete
+     */
+    public int getCallTimeout() {
+        return callTimeout;
+    }
+
+    /**
+     * Counts an operation which was given up on.
+     *
+     * @param operation name of the operation, like the method of {@link JiraInteractionSession}
+     */
+    public void recordTimeout(String operation) {
+        AtomicLong count = timedOut.get(operation);
+        if (count == null) {
+            AtomicLong created = new AtomicLong();
+            count = timedOut.putIfAbsent(operation, created);
+            if (count == null) {
+                count = created;
+            }
+        }
+        LOGGER.warning("JIRA operation " + operation + " timed out, " + count.incrementAndGet() + " times so far");
+    }
+
+    /**
+     * @return the number of operations which timed out so far, by name
+     */
+    public SortedMap<String, Long> getTimeoutCounts() {
+        SortedMap<String, Long> counts = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> e : timedOut.entrySet()) {
+            counts.put(e.getKey(), e.getValue().get());
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,49 @@
+package hudson.plugins.jira.remote;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The few fields of an issue a caller asked for with
+ * {@link JiraInteractionSession#getProjectedIssue(String, String...)}.
+ * Fields which weren't asked for are null.
+ */
+public final class ProjectedIssue {
+    public static final String SUMMARY = "summary";
+    public static final String STATUS = "status";
+    public static final String FIX_VERSIONS = "fixVersions";
+
+    private final String key;
+    private final String summary;
+    private final String status;
+    private final List<String> fixVersions;
+
+    public ProjectedIssue(String key, String summary, String status, List<String> fixVersions) {
+        this.key = key;
+        this.summary = summary;
+        this.status = status;
+        this.fixVersions = fixVersions != null ? Collections.unmodifiableList(fixVersions) : null;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getSummary() {
+        return summary;
+    }
+
+    /**
+     * @return the name of the status, or its id with SOAP
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the names of the fix versions
+     */
+    public List<String> getFixVersions() {
+        return fixVersions;
+    }
+}
@@ -0,0 +1,419 @@
+package hudson.plugins.jira.remote.rest;
+
+import hudson.plugins.jira.remote.ProjectedIssue;
+import hudson.plugins.jira.soap.RemoteComponent;
+import hudson.plugins.jira.soap.RemoteFieldValue;
+import hudson.plugins.jira.soap.RemoteGroup;
+import hudson.plugins.jira.soap.RemoteIssue;
+import hudson.plugins.jira.soap.RemoteIssueType;
+import hudson.plugins.jira.soap.RemoteVersion;
+
+import java.net.URI;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.ws.rs.core.UriBuilder;
+
+import org.apache.commons.lang.StringUtils;
+import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+
+import com.atlassian.httpclient.api.HttpClient;
+import com.atlassian.jira.rest.client.internal.async.AbstractAsynchronousRestClient;
+import com.atlassian.jira.rest.client.internal.json.JsonArrayParser;
+import com.atlassian.jira.rest.client.internal.json.JsonObjectParser;
+import com.atlassian.jira.rest.client.internal.json.gen.JsonGenerator;
+import com.atlassian.util.concurrent.Promise;
+import com.google.common.base.Function;
+
+/**
+ * Talks to the JIRA REST API v2 with plain JSON, mapping the answers to the SOAP types
+ * {@link hudson.plugins.jira.remote.JiraInteractionSession} is defined with.
+ * <p>
+ * Every method sends a single request, asking only for the fields that are mapped, and
+ * returns without waiting for the answer.
+ */
+class JiraRestApiClient extends AbstractAsynchronousRestClient {
+    /**
+     * Fields mapped to {@link RemoteIssue}.
+     */
+    static final String ISSUE_FIELDS = "summary,status,issuetype,project,assignee,reporter,description,priority,fixVersions,components";
+
+    private final URI baseUri;
+
+    JiraRestApiClient(URI serverUri, HttpClient client) {
+        super(client);
+        this.baseUri = UriBuilder.fromUri(serverUri).path("rest/api/2").build();
+    }
+
+    private UriBuilder uri(String... path) {
+        UriBuilder builder = UriBuilder.fromUri(baseUri);
+        for (String segment : path) {
+            builder.path(segment);
+        }
+        return builder;
+    }
+
+    Promise<Set<String>> getProjectKeys() {
+        return getAndParse(uri("project").build(), new JsonArrayParser<Set<String>>() {
+            public Set<String> parse(JSONArray json) throws JSONException {
+                Set<String> keys = new HashSet<String>(json.length());
+                for (int i = 0; i < json.length(); i++) {
+                    keys.add(json.getJSONObject(i).getString("key").toUpperCase());
+                }
+                return keys;
+            }
+        });
+    }
+
+    Promise<RemoteIssue> getIssue(String key) {
+        return getAndParse(uri("issue", key).queryParam("fields", ISSUE_FIELDS).build(), ISSUE_PARSER);
+    }
+
+    Promise<ProjectedIssue> getProjectedIssue(String key, String... fields) {
+        URI uri = uri("issue", key).queryParam("fields", StringUtils.join(fields, ',')).build();
+        return getAndParse(uri, PROJECTED_ISSUE_PARSER);
+    }
+
+    /**
+     * Gets the issues matching the JQL query.
+     *
+     * @param fields fields to map, e.g. just "key" when only the keys are needed
+     */
+    Promise<SearchPage> search(String jql, int startAt, int maxResults, String fields) {
+        JSONObject request = json("jql", jql, "startAt", startAt, "maxResults", maxResults,
+                "fields", new JSONArray(Arrays.asList(fields.split(","))));
+        return postAndParse(uri("search").build(), request, AS_IS, new JsonObjectParser<SearchPage>() {
+            public SearchPage parse(JSONObject json) throws JSONException {
+                JSONArray issues = json.getJSONArray("issues");
+                List<RemoteIssue> page = new ArrayList<RemoteIssue>(issues.length());
+                for (int i = 0; i < issues.length(); i++) {
+                    page.add(ISSUE_PARSER.parse(issues.getJSONObject(i)));
+                }
+                return new SearchPage(page, json.optInt("total", page.size()));
+            }
+        });
+    }
+
+    /**
+     * One page of a search, with the number of all matching issues.
+     */
+    static final class SearchPage {
+        final List<RemoteIssue> issues;
+        final int total;
+
+        SearchPage(List<RemoteIssue> issues, int total) {
+            this.issues = issues;
+            this.total = total;
+        }
+    }
+
+    /**
+     * @param visibilityType "group" or "role", or null for a comment visible to everybody
+     */
+    Promise<Void> addComment(String key, String body, String visibilityType, String visibility) {
+        JSONObject comment = json("body", body);
+        if (visibilityType != null) {
+            set(comment, "visibility", json("type", visibilityType, "value", visibility));
+        }
+        return post(uri("issue", key, "comment").build(), comment, AS_IS);
+    }
+
+    Promise<RemoteGroup> getGroup(String name) {
+        return getAndParse(uri("group").queryParam("groupname", name).build(), new JsonObjectParser<RemoteGroup>() {
+            public RemoteGroup parse(JSONObject json) throws JSONException {
+                RemoteGroup group = new RemoteGroup();
+                group.setName(json.getString("name"));
+                return group;
+            }
+        });
+    }
+
+    Promise<RemoteVersion[]> getVersions(String projectKey) {
+        return getAndParse(uri("project", projectKey, "versions").build(), new JsonArrayParser<RemoteVersion[]>() {
+            public RemoteVersion[] parse(JSONArray json) throws JSONException {
+                RemoteVersion[] versions = new RemoteVersion[json.length()];
+                for (int i = 0; i < versions.length; i++) {
+                    versions[i] = VERSION_PARSER.parse(json.getJSONObject(i));
+                }
+                return versions;
+            }
+        });
+    }
+
+    Promise<RemoteVersion> addVersion(String name, String projectKey) {
+        return postAndParse(uri("version").build(), json("name", name, "project", projectKey), AS_IS, VERSION_PARSER);
+    }
+
+    Promise<Void> releaseVersion(RemoteVersion version) {
+        Calendar releaseDate = version.getReleaseDate() != null ? version.getReleaseDate() : Calendar.getInstance();
+        JSONObject update = json("released", true,
+                "releaseDate", new SimpleDateFormat(DATE_FORMAT).format(releaseDate.getTime()));
+        return put(uri("version", version.getId()).build(), update, AS_IS);
+    }
+
+    Promise<RemoteIssueType[]> getIssueTypes() {
+        return getAndParse(uri("issuetype").build(), new JsonArrayParser<RemoteIssueType[]>() {
+            public RemoteIssueType[] parse(JSONArray json) throws JSONException {
+                RemoteIssueType[] types = new RemoteIssueType[json.length()];
+                for (int i = 0; i < types.length; i++) {
+                    JSONObject type = json.getJSONObject(i);
+                    types[i] = new RemoteIssueType();
+                    types[i].setId(type.getString("id"));
+                    types[i].setName(type.getString("name"));
+                    types[i].setDescription(type.optString("description", null));
+                    types[i].setIcon(type.optString("iconUrl", null));
+                    types[i].setSubTask(type.optBoolean("subtask"));
+                }
+                return types;
+            }
+        });
+    }
+
+    Promise<RemoteComponent[]> getComponents(String projectKey) {
+        return getAndParse(uri("project", projectKey, "components").build(), new JsonArrayParser<RemoteComponent[]>() {
+            public RemoteComponent[] parse(JSONArray json) throws JSONException {
+                RemoteComponent[] components = new RemoteComponent[json.length()];
+                for (int i = 0; i < components.length; i++) {
+                    components[i] = COMPONENT_PARSER.parse(json.getJSONObject(i));
+                }
+                return components;
+            }
+        });
+    }
+
+    /**
+     * Sets the fix versions of the issue to exactly the given one.
+     */
+    Promise<Void> setFixVersion(String key, String versionId) {
+        JSONObject fields = json("fixVersions", new JSONArray(Arrays.asList(json("id", versionId))));
+        return put(uri("issue", key).build(), json("fields", fields), AS_IS);
+    }
+
+    /**
+     * Replaces one fix version of the issue with another, leaving the other fix versions alone.
+     */
+    Promise<Void> replaceFixVersion(String key, String fromVersionName, String toVersionId) {
+        JSONArray operations = new JSONArray(Arrays.asList(
+                json("remove", json("name", fromVersionName)),
+                json("add", json("id", toVersionId))));
+        return put(uri("issue", key).build(), json("update", json("fixVersions", operations)), AS_IS);
+    }
+
+    /**
+     * Gets the id of the transition with the given name, or null if it isn't available for the issue.
+     */
+    Promise<String> getTransitionId(String key, final String name) {
+        return getAndParse(uri("issue", key, "transitions").build(), new JsonObjectParser<String>() {
+            public String parse(JSONObject json) throws JSONException {
+                JSONArray transitions = json.getJSONArray("transitions");
+                for (int i = 0; i < transitions.length(); i++) {
+                    JSONObject transition = transitions.getJSONObject(i);
+                    if (name.equalsIgnoreCase(transition.optString("name"))) {
+                        return transition.getString("id");
+                    }
+                }
+                return null;
+            }
+        });
+    }
+
+    Promise<Void> transition(String key, String transitionId, RemoteFieldValue[] fieldValues) {
+        JSONObject request = json("transition", json("id", transitionId));
+        if (fieldValues != null && fieldValues.length > 0) {
+            JSONObject fields = new JSONObject();
+            for (RemoteFieldValue value : fieldValues) {
+                String[] values = value.getValues();
+                if (values == null) {
+                    continue;
+                }
+                set(fields, value.getId(), values.length == 1 ? values[0] : new JSONArray(Arrays.asList(values)));
+            }
+            set(request, "fields", fields);
+        }
+        return post(uri("issue", key, "transitions").build(), request, AS_IS);
+    }
+
+    /**
+     * Gets the name of the status of the issue.
+     */
+    Promise<String> getStatusName(String key) {
+        return getProjectedIssue(key, ProjectedIssue.STATUS).map(new Function<ProjectedIssue, String>() {
+            public String apply(ProjectedIssue issue) {
+                return issue.getStatus();
+            }
+        });
+    }
+
+    Promise<RemoteIssue> createIssue(final String projectKey, final String description, final String assignee,
+                                     final RemoteComponent[] components, final String summary, final String typeId) {
+        JSONObject fields = json(
+                "project", json("key", projectKey.toUpperCase()),
+                "summary", summary,
+                "description", description,
+                "issuetype", json("id", typeId));
+        if (StringUtils.isNotEmpty(assignee)) {
+            set(fields, "assignee", json("name", assignee));
+        }
+        if (components != null) {
+            List<JSONObject> ids = new ArrayList<JSONObject>(components.length);
+            for (RemoteComponent component : components) {
+                ids.add(StringUtils.isNotEmpty(component.getId())
+                        ? json("id", component.getId()) : json("name", component.getName()));
+            }
+            set(fields, "components", new JSONArray(ids));
+        }
+
+        // the answer only has the key and id, the rest is what was sent
+        return postAndParse(uri("issue").build(), json("fields", fields), AS_IS, new JsonObjectParser<RemoteIssue>() {
+            public RemoteIssue parse(JSONObject json) throws JSONException {
+                RemoteIssue issue = new RemoteIssue();
+                issue.setId(json.getString("id"));
+                issue.setKey(json.getString("key"));
+                issue.setProject(projectKey.toUpperCase());
+                issue.setSummary(summary);
+                issue.setDescription(description);
+                issue.setAssignee(assignee);
+                issue.setType(typeId);
+                issue.setComponents(components);
+                return issue;
+            }
+        });
+    }
+
+    static final String DATE_FORMAT = "yyyy-MM-dd";
+
+    /**
+     * Sends the JSON objects built here unchanged.
+     */
+    private static final JsonGenerator<JSONObject> AS_IS = new JsonGenerator<JSONObject>() {
+        public JSONObject generate(JSONObject json) {
+            return json;
+        }
+    };
+
+    static final JsonObjectParser<RemoteVersion> VERSION_PARSER = new JsonObjectParser<RemoteVersion>() {
+        public RemoteVersion parse(JSONObject json) throws JSONException {
+            RemoteVersion version = new RemoteVersion();
+            version.setId(json.getString("id"));
+            version.setName(json.getString("name"));
+            version.setReleased(json.optBoolean("released"));
+            version.setArchived(json.optBoolean("archived"));
+            String releaseDate = json.optString("releaseDate", null);
+            if (releaseDate != null) {
+                try {
+                    Calendar calendar = Calendar.getInstance();
+                    calendar.setTime(new SimpleDateFormat(DATE_FORMAT).parse(releaseDate));
+                    version.setReleaseDate(calendar);
+                } catch (ParseException e) {
+                    throw new JSONException("Invalid release date " + releaseDate);
+                }
+            }
+            return version;
+        }
+    };
+
+    static final JsonObjectParser<RemoteComponent> COMPONENT_PARSER = new JsonObjectParser<RemoteComponent>() {
+        public RemoteComponent parse(JSONObject json) throws JSONException {
+            RemoteComponent component = new RemoteComponent();
+            component.setId(json.getString("id"));
+            component.setName(json.getString("name"));
+            return component;
+        }
+    };
+
+    /**
+     * Maps an issue fetched with {@link #ISSUE_FIELDS}. Like with SOAP, status, type and priority are ids.
+     */
+    static final JsonObjectParser<RemoteIssue> ISSUE_PARSER = new JsonObjectParser<RemoteIssue>() {
+        public RemoteIssue parse(JSONObject json) throws JSONException {
+            RemoteIssue issue = new RemoteIssue();
+            issue.setId(json.getString("id"));
+            issue.setKey(json.getString("key"));
+
+            JSONObject fields = json.optJSONObject("fields");
+            if (fields == null) {
+                return issue;
+            }
+            issue.setSummary(fields.optString("summary", null));
+            issue.setDescription(fields.optString("description", null));
+            issue.setStatus(optNested(fields, "status", "id"));
+            issue.setType(optNested(fields, "issuetype", "id"));
+            issue.setPriority(optNested(fields, "priority", "id"));
+            issue.setProject(optNested(fields, "project", "key"));
+            issue.setAssignee(optNested(fields, "assignee", "name"));
+            issue.setReporter(optNested(fields, "reporter", "name"));
+
+            JSONArray fixVersions = fields.optJSONArray("fixVersions");
+            if (fixVersions != null) {
+                RemoteVersion[] versions = new RemoteVersion[fixVersions.length()];
+                for (int i = 0; i < versions.length; i++) {
+                    versions[i] = VERSION_PARSER.parse(fixVersions.getJSONObject(i));
+                }
+                issue.setFixVersions(versions);
+            }
+            JSONArray components = fields.optJSONArray("components");
+            if (components != null) {
+                RemoteComponent[] list = new RemoteComponent[components.length()];
+                for (int i = 0; i < list.length; i++) {
+                    list[i] = COMPONENT_PARSER.parse(components.getJSONObject(i));
+                }
+                issue.setComponents(list);
+            }
+            return issue;
+        }
+    };
+
+    static final JsonObjectParser<ProjectedIssue> PROJECTED_ISSUE_PARSER = new JsonObjectParser<ProjectedIssue>() {
+        public ProjectedIssue parse(JSONObject json) throws JSONException {
+            JSONObject fields = json.optJSONObject("fields");
+            if (fields == null) {
+                return new ProjectedIssue(json.getString("key"), null, null, null);
+            }
+
+            List<String> fixVersions = null;
+            JSONArray versions = fields.optJSONArray(ProjectedIssue.FIX_VERSIONS);
+            if (versions != null) {
+                fixVersions = new ArrayList<String>(versions.length());
+                for (int i = 0; i < versions.length(); i++) {
+                    fixVersions.add(versions.getJSONObject(i).getString("name"));
+                }
+            }
+            return new ProjectedIssue(json.getString("key"),
+                    fields.optString(ProjectedIssue.SUMMARY, null),
+                    optNested(fields, ProjectedIssue.STATUS, "name"),
+                    fixVersions);
+        }
+    };
+
+    private static String optNested(JSONObject json, String object, String field) {
+        JSONObject nested = json.optJSONObject(object);
+        return nested != null ? nested.optString(field, null) : null;
+    }
+
+    /**
+     * Creates a JSON object from alternating keys and values.
+     */
+    static JSONObject json(Object... keysAndValues) {
+        JSONObject json = new JSONObject();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            set(json, (String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return json;
+    }
+
+    private static void set(JSONObject json, String key, Object value) {
+        try {
+            json.put(key, value);
+        } catch (JSONException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
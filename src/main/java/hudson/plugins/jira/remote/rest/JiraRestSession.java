@@ -1,24 +1,32 @@
 package hudson.plugins.jira.remote.rest;
 
+import java.io.Closeable;
 import java.net.URI;
 import java.rmi.RemoteException;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.atlassian.jira.rest.client.api.AuthenticationHandler;
 import com.atlassian.jira.rest.client.api.JiraRestClient;
-import com.atlassian.jira.rest.client.api.JiraRestClientFactory;
 import com.atlassian.jira.rest.client.api.domain.BasicProject;
 import com.atlassian.jira.rest.client.api.domain.Issue;
 import com.atlassian.jira.rest.client.api.domain.ServerInfo;
 import com.atlassian.jira.rest.client.api.domain.User;
 import com.atlassian.jira.rest.client.auth.AnonymousAuthenticationHandler;
-import com.atlassian.jira.rest.client.internal.async.AsynchronousJiraRestClientFactory;
+import com.atlassian.jira.rest.client.auth.BasicHttpAuthenticationHandler;
+import com.atlassian.jira.rest.client.internal.async.AsynchronousJiraRestClient;
+import com.atlassian.jira.rest.client.internal.async.DisposableHttpClient;
 import com.atlassian.util.concurrent.Promise;
 import com.cloudbees.plugins.credentials.common.UsernamePasswordCredentials;
 
+import hudson.plugins.jira.remote.JiraAsyncSession;
+import hudson.plugins.jira.remote.JiraFutures;
 import hudson.plugins.jira.remote.JiraInteractionSession;
+import hudson.plugins.jira.remote.JiraTimeouts;
+import hudson.plugins.jira.remote.ProjectedIssue;
 import hudson.plugins.jira.soap.RemoteComponent;
 import hudson.plugins.jira.soap.RemoteFieldValue;
 import hudson.plugins.jira.soap.RemoteGroup;
@@ -27,83 +35,144 @@ import hudson.plugins.jira.soap.RemoteIssueType;
 import hudson.plugins.jira.soap.RemoteVersion;
 import hudson.util.Secret;
 
+
 /**
  * Allows interaction with a JIRA instance using its REST API.
  *
  * @author Stefan Thurnherr
  */
-public class JiraRestSession implements JiraInteractionSession {
+public class JiraRestSession implements JiraInteractionSession, Closeable {
 
     private static final Logger LOGGER = Logger.getLogger(JiraRestSession.class.getName());
 
     private final JiraRestClient jiraRestClient;
 
-    public static JiraRestSession createSession(URI jiraUri, UsernamePasswordCredentials credentials) {
+    /**
+     * The HTTP client of {@link #jiraRestClient} and {@link #async}.
+     */
+    private final DisposableHttpClient httpClient;
+
+    private final RestAsyncSession async;
+
+    private final JiraTimeouts timeouts;
+
+    /**
+     * Set once JIRA refused the credentials of this session, e.g. after the password was changed.
+     */
+    private volatile boolean unauthorized;
 
-        final JiraRestClientFactory factory = new AsynchronousJiraRestClientFactory();
-        final JiraRestClient jiraRestClient;
+    public static JiraRestSession createSession(URI jiraUri, UsernamePasswordCredentials credentials, JiraTimeouts timeouts) {
+
+        final AuthenticationHandler authenticationHandler;
 
         if (credentials == null) {
             LOGGER.info("No credentials specified, trying to connect to JIRA instance at " + jiraUri + " anonymously.");
-            jiraRestClient = factory.create(jiraUri, new AnonymousAuthenticationHandler());
+            authenticationHandler = new AnonymousAuthenticationHandler();
 
         } else {
             LOGGER.info("Trying to connect to JIRA instance at " + jiraUri + " using specified credentials (description: " + credentials.getDescriptor() + ").");
             final String password = Secret.toString(credentials.getPassword());
-            jiraRestClient = factory.createWithBasicHttpAuthentication(jiraUri, credentials.getUsername(), password);
+            authenticationHandler = new BasicHttpAuthenticationHandler(credentials.getUsername(), password);
         }
 
-        try {
-            final JiraRestSession jiraRestSession = new JiraRestSession(jiraRestClient);
+        return createSession(jiraUri, authenticationHandler, timeouts, "using credentials " + credentials);
+    }
 
+    public static JiraRestSession createSession(URI jiraUri, String username, String password, JiraTimeouts timeouts) {
+        return createSession(jiraUri, new BasicHttpAuthenticationHandler(username, password), timeouts, "at " + jiraUri);
+    }
+
+    private static JiraRestSession createSession(URI jiraUri, AuthenticationHandler authenticationHandler,
+                                                 JiraTimeouts timeouts, String what) {
+        final JiraRestSession jiraRestSession = new JiraRestSession(jiraUri,
+                PooledHttpClientFactory.createClient(jiraUri, authenticationHandler, timeouts), timeouts);
+
+        try {
             //FIXME: access to /serverInfo resource seems not allowed for anonymous users - find better solution.
-            ServerInfo serverInfo = jiraRestClient.getMetadataClient().getServerInfo().get();
+            ServerInfo serverInfo = jiraRestSession.claim(jiraRestSession.jiraRestClient.getMetadataClient().getServerInfo(),
+                    "getServerInfo", "connect to " + jiraUri);
             String jiraVersion = serverInfo.getVersion();
             LOGGER.info("Successfully connected to JIRA instance, found version " + jiraVersion);
             return jiraRestSession;
 
         } catch (Exception ex) {
-            LOGGER.log(Level.WARNING, "Could not connect to JIRA instance using credentials " + credentials, ex);
+            LOGGER.log(Level.WARNING, "Could not connect to JIRA instance " + what, ex);
+            jiraRestSession.close();
             return null;
         }
     }
 
-    public static JiraRestSession createSession(URI jiraUri, String username, String password) {
+    /* package */ JiraRestSession(URI jiraUri, DisposableHttpClient httpClient, JiraTimeouts timeouts) {
+        this.jiraRestClient = new AsynchronousJiraRestClient(jiraUri, httpClient);
+        this.httpClient = httpClient;
+        this.async = new RestAsyncSession(new JiraRestApiClient(jiraUri, httpClient));
+        this.timeouts = timeouts;
+    }
 
-        final JiraRestClientFactory factory = new AsynchronousJiraRestClientFactory();
-        final JiraRestClient jiraRestClient = factory.createWithBasicHttpAuthentication(jiraUri, username, password);
-        factory.create(jiraUri, new AnonymousAuthenticationHandler());
+    /**
+     * Gets the asynchronous form of this session, which shares its connections.
+     */
+    public JiraAsyncSession async() {
+        return async;
+    }
 
-        JiraRestSession jiraRestSession = new JiraRestSession(jiraRestClient);
+    /**
+     * Shuts down the connection pool and the threads of the HTTP client.
+     * The session can't be used afterwards.
+     */
+    public void close() {
+        try {
+            httpClient.destroy();
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to shut down the HTTP client of " + this, e);
+        }
+    }
 
+    /**
+     * Waits for the answer of an operation, for at most the call timeout of the site.
+     */
+    private <T> T claim(Future<T> future, String operation, String what) throws RemoteException {
         try {
-            //FIXME: access to /serverInfo resource seems not allowed for anonymous users - find better solution.
-            ServerInfo serverInfo = jiraRestClient.getMetadataClient().getServerInfo().get();
-            String jiraVersion = serverInfo.getVersion();
-            LOGGER.info("Successfully connected to JIRA instance, found version " + jiraVersion);
-            return jiraRestSession;
-        } catch (Exception ex) {
-            LOGGER.log(Level.WARNING, "Could not connect to JIRA instance at " + jiraUri, ex);
-            return null;
+            return JiraFutures.claim(future, timeouts, operation, what);
+        } catch (RemoteException e) {
+            if (RestErrors.getStatusCode(e) == 401) {
+                unauthorized = true;
+            }
+            throw e;
         }
     }
 
-    /* package */ JiraRestSession(JiraRestClient jiraRestClient) {
-        this.jiraRestClient = jiraRestClient;
+    /**
+     * Whether JIRA answered a call of this session with 401, so that a new session should be
+     * created with the credentials configured now.
+     */
+    public boolean isUnauthorized() {
+        return unauthorized;
     }
 
-    private <T> T throwNotImplementedYet() throws RuntimeException {
-        throw new RuntimeException("This functionality is not implemented yet for REST-based JIRA access.");
+    /**
+     * Like {@link #claim}, but treats the answer "not found" (404) as null. Other failures are thrown.
+     */
+    private <T> T claimOrNull(Future<T> future, String operation, String what) throws RemoteException {
+        try {
+            return claim(future, operation, what);
+        } catch (RemoteException e) {
+            if (RestErrors.isNotFound(e)) {
+                LOGGER.log(Level.FINE, "Failed to " + what, e.getCause());
+                return null;
+            }
+            throw e;
+        }
     }
 
     public String getEmailForUsername(String username) throws RemoteException, InterruptedException, ExecutionException {
         Promise<User> userPromise = jiraRestClient.getUserClient().getUser(username);
-        User user = userPromise.get();
+        User user = claim(userPromise, "getEmailForUsername", "get the user " + username);
         return user.getEmailAddress();
     }
 
     public Set<String> getProjectKeys() throws RemoteException {
-        return throwNotImplementedYet();
+        return claim(async.getProjectKeys(), "getProjectKeys", "get the project keys");
     }
 
     public Promise<Iterable<BasicProject>> getProjectKeysAsync() {
@@ -111,98 +180,110 @@ public class JiraRestSession implements JiraInteractionSession {
     }
 
     public void addComment(String issueId, String comment, String groupVisibility, String roleVisibility) throws RemoteException {
-        throwNotImplementedYet();
+        claim(async.addComment(issueId, comment, groupVisibility, roleVisibility), "addComment", "add a comment to " + issueId);
     }
 
     public RemoteIssue getIssue(String id) throws RemoteException {
-        return throwNotImplementedYet();
+        return claim(async.getIssue(id), "getIssue", "get issue " + id);
     }
 
     public Promise<Issue> getIssueAsync(String id) {
         return jiraRestClient.getIssueClient().getIssue(id);
     }
 
+    public ProjectedIssue getProjectedIssue(String id, String... fields) throws RemoteException {
+        return claim(async.getProjectedIssue(id, fields), "getProjectedIssue", "get issue " + id);
+    }
+
     public RemoteIssue[] getIssuesFromJqlSearch(String jqlSearch)
             throws RemoteException {
-        return throwNotImplementedYet();
+        // same limit as the SOAP implementation
+        return getIssuesFromJqlSearch(jqlSearch, 0, 50);
+    }
+
+    public RemoteIssue[] getIssuesFromJqlSearch(String jqlSearch, int startAt, int maxResults)
+            throws RemoteException {
+        return claim(async.getIssuesFromJqlSearch(jqlSearch, startAt, maxResults), "getIssuesFromJqlSearch", "search issues with JQL " + jqlSearch);
     }
 
     public RemoteGroup getGroup(String groupId) throws RemoteException {
-        return throwNotImplementedYet();
+        return claimOrNull(async.getGroup(groupId), "getGroup", "get group " + groupId);
     }
 
     public RemoteVersion[] getVersions(String projectKey)
             throws RemoteException {
-        return throwNotImplementedYet();
+        return claim(async.getVersions(projectKey), "getVersions", "get the versions of " + projectKey);
     }
 
     public RemoteIssue[] getIssuesWithFixVersion(String projectKey,
             String version) throws RemoteException {
-        return throwNotImplementedYet();
+        return getIssuesWithFixVersion(projectKey, version, "");
     }
 
     public RemoteIssue[] getIssuesWithFixVersion(String projectKey,
             String version, String filter) throws RemoteException {
-        return throwNotImplementedYet();
+        return claim(async.getIssuesWithFixVersion(projectKey, version, filter), "getIssuesWithFixVersion",
+                "get the issues with fix version " + version);
     }
 
     public RemoteIssueType[] getIssueTypes() throws RemoteException {
-        return throwNotImplementedYet();
+        return claim(async.getIssueTypes(), "getIssueTypes", "get the issue types");
     }
 
     public boolean existsIssue(String id) throws RemoteException {
-        return (Boolean)throwNotImplementedYet();
+        return claim(async.existsIssue(id), "existsIssue", "check issue " + id);
     }
 
     public void releaseVersion(String projectKey, RemoteVersion version)
             throws RemoteException {
-        throwNotImplementedYet();
+        claim(async.releaseVersion(projectKey, version), "releaseVersion", "release version " + version.getName());
     }
 
     public void migrateIssuesToFixVersion(String projectKey, String version,
             String query) throws RemoteException {
-        throwNotImplementedYet();
+        claim(async.migrateIssuesToFixVersion(projectKey, version, query), "migrateIssuesToFixVersion", "migrate issues to version " + version);
     }
 
     public void replaceFixVersion(String projectKey, String fromVersion,
             String toVersion, String query) throws RemoteException {
-        throwNotImplementedYet();
+        claim(async.replaceFixVersion(projectKey, fromVersion, toVersion, query), "replaceFixVersion",
+                "replace version " + fromVersion + " with " + toVersion);
     }
 
     public String progressWorkflowAction(String issueKey,
             String workflowActionName, RemoteFieldValue[] fields)
                     throws RemoteException {
-        return throwNotImplementedYet();
+        return claim(async.progressWorkflowAction(issueKey, workflowActionName, fields), "progressWorkflowAction", "progress issue " + issueKey);
     }
 
     public String getActionIdForIssue(String issueKey, String workflowAction)
             throws RemoteException {
-        return throwNotImplementedYet();
+        return claim(async.getActionIdForIssue(issueKey, workflowAction), "getActionIdForIssue", "get the workflow actions of " + issueKey);
     }
 
     public RemoteIssue createIssue(String projectKey, String description,
             String assignee, RemoteComponent[] components, String summary)
                     throws RemoteException {
-        return throwNotImplementedYet();
+        return claim(async.createIssue(projectKey, description, assignee, components, summary), "createIssue",
+                "create an issue in " + projectKey);
     }
 
     public void addCommentWithoutConstrains(String issueId, String comment)
             throws RemoteException {
-        throwNotImplementedYet();
+        claim(async.addComment(issueId, comment, null, null), "addComment", "add a comment to " + issueId);
     }
 
     public RemoteIssue getIssueByKey(String issueId) throws RemoteException {
-        return throwNotImplementedYet();
+        return claim(async.getIssueByKey(issueId), "getIssueByKey", "get issue " + issueId);
     }
 
     public RemoteComponent[] getComponents(String projectKey)
             throws RemoteException {
-        return throwNotImplementedYet();
+        return claim(async.getComponents(projectKey), "getComponents", "get the components of " + projectKey);
     }
 
     public RemoteVersion addVersion(String version, String projectKey)
             throws hudson.plugins.jira.soap.RemoteException, RemoteException {
-        return throwNotImplementedYet();
+        return claim(async.addVersion(version, projectKey), "addVersion", "add version " + version + " to " + projectKey);
     }
-
 }
@@ -0,0 +1,124 @@
+package hudson.plugins.jira.remote.rest;
+
+import java.io.File;
+import java.net.URI;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.httpclient.apache.httpcomponents.DefaultHttpClient;
+import com.atlassian.httpclient.api.factory.HttpClientOptions;
+import com.atlassian.jira.rest.client.api.AuthenticationHandler;
+import com.atlassian.jira.rest.client.internal.async.AtlassianHttpClientDecorator;
+import com.atlassian.jira.rest.client.internal.async.DisposableHttpClient;
+import com.atlassian.sal.api.ApplicationProperties;
+import com.atlassian.util.concurrent.ThreadLocalContextManager;
+
+import hudson.plugins.jira.remote.JiraTimeouts;
+
+/**
+ * Creates the HTTP client a {@link JiraRestSession} talks to JIRA with.
+ * <p>
+ * Unlike the client JRJC creates on its own, its connection pool and keep-alive can be tuned
+ * with system properties, its timeouts are those of the site, and it is meant to be shared
+ * by all users of a site and destroyed with it.
+ */
+final class PooledHttpClientFactory {
+    private static final String PREFIX = PooledHttpClientFactory.class.getName() + ".";
+
+    static final int MAX_CONNECTIONS = Integer.getInteger(PREFIX + "maxConnections", 20);
+    static final int MAX_CONNECTIONS_PER_HOST = Integer.getInteger(PREFIX + "maxConnectionsPerHost", 20);
+    static final int KEEP_ALIVE = Integer.getInteger(PREFIX + "keepAliveSeconds", 300);
+
+    private PooledHttpClientFactory() {
+    }
+
+    static DisposableHttpClient createClient(final URI serverUri, final AuthenticationHandler authenticationHandler,
+                                             final JiraTimeouts timeouts) {
+        final HttpClientOptions options = new HttpClientOptions();
+        options.setMaxTotalConnections(MAX_CONNECTIONS);
+        options.setMaxConnectionsPerHost(MAX_CONNECTIONS_PER_HOST);
+        options.setConnectionTimeout(timeouts.getConnectTimeout(), TimeUnit.SECONDS);
+        options.setSocketTimeout(timeouts.getReadTimeout(), TimeUnit.SECONDS);
+        options.setRequestTimeout(timeouts.getCallTimeout(), TimeUnit.SECONDS);
+        options.setConnectionPoolTimeToLive(KEEP_ALIVE, TimeUnit.SECONDS);
+        options.setThreadPrefix("jira-rest-" + serverUri.getHost());
+
+        @SuppressWarnings("unchecked")
+        final DefaultHttpClient<?> httpClient = new DefaultHttpClient<Object>(new NoOpEventPublisher(),
+                new SiteApplicationProperties(serverUri), new NoOpThreadLocalContextManager(), options);
+
+        return new AtlassianHttpClientDecorator(httpClient, authenticationHandler) {
+            @Override
+            public void destroy() throws Exception {
+                httpClient.destroy();
+            }
+        };
+    }
+
+    private static final class NoOpThreadLocalContextManager implements ThreadLocalContextManager<Object> {
+        public Object getThreadLocalContext() {
+            return null;
+        }
+
+        public void setThreadLocalContext(Object context) {
+        }
+
+        public void clearThreadLocalContext() {
+        }
+    }
+
+    private static final class NoOpEventPublisher implements EventPublisher {
+        public void publish(Object event) {
+        }
+
+        public void register(Object listener) {
+        }
+
+        public void unregister(Object listener) {
+        }
+
+        public void unregisterAll() {
+        }
+    }
+
+    /**
+     * Identifies the client to JIRA; the HTTP client derives its user agent from it.
+     */
+    private static final class SiteApplicationProperties implements ApplicationProperties {
+        private final String baseUrl;
+
+        SiteApplicationProperties(URI serverUri) {
+            this.baseUrl = serverUri.toString();
+        }
+
+        public String getBaseUrl() {
+            return baseUrl;
+        }
+
+        public String getDisplayName() {
+            return "Jenkins JIRA plugin";
+        }
+
+        public String getVersion() {
+            return "unknown";
+        }
+
+        public Date getBuildDate() {
+            return new Date();
+        }
+
+        public String getBuildNumber() {
+            return "0";
+        }
+
+        public File getHomeDirectory() {
+            return new File(".");
+        }
+
+        public String getPropertyValue(String s) {
+            // no application properties
+            return null;
+        }
+    }
+}
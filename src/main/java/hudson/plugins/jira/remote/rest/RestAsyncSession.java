@@ -0,0 +1,267 @@
+package hudson.plugins.jira.remote.rest;
+
+import hudson.plugins.jira.remote.JiraAsyncSession;
+import hudson.plugins.jira.remote.ProjectedIssue;
+import hudson.plugins.jira.soap.RemoteComponent;
+import hudson.plugins.jira.soap.RemoteFieldValue;
+import hudson.plugins.jira.soap.RemoteGroup;
+import hudson.plugins.jira.soap.RemoteIssue;
+import hudson.plugins.jira.soap.RemoteIssueType;
+import hudson.plugins.jira.soap.RemoteVersion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.atlassian.util.concurrent.Promise;
+import com.atlassian.util.concurrent.Promises;
+import com.google.common.base.Function;
+
+import static org.apache.commons.lang.StringUtils.isNotEmpty;
+
+/**
+ * The operations of {@link JiraRestSession}, composed from the requests of {@link JiraRestApiClient}
+ * without blocking a thread. {@link JiraRestSession} waits for these.
+ */
+final class RestAsyncSession implements JiraAsyncSession {
+    private static final Logger LOGGER = Logger.getLogger(RestAsyncSession.class.getName());
+
+    /**
+     * Number of issues fetched per request when all issues matching a query are needed.
+     */
+    private static final int SEARCH_PAGE_SIZE = 100;
+
+    private final JiraRestApiClient api;
+
+    /**
+     * Project keys, fetched once. Copy on write semantics.
+     */
+    private volatile Set<String> projectKeys;
+
+    RestAsyncSession(JiraRestApiClient api) {
+        this.api = api;
+    }
+
+    public Promise<Set<String>> getProjectKeys() {
+        Set<String> keys = projectKeys;
+        if (keys != null) {
+            return Promises.promise(keys);
+        }
+        return api.getProjectKeys().map(new Function<Set<String>, Set<String>>() {
+            public Set<String> apply(Set<String> keys) {
+                Set<String> unmodifiable = Collections.unmodifiableSet(keys);
+                projectKeys = unmodifiable;
+                return unmodifiable;
+            }
+        });
+    }
+
+    /**
+     * Like with SOAP, only checks the project key.
+     */
+    Promise<Boolean> existsIssue(final String id) {
+        return getProjectKeys().map(new Function<Set<String>, Boolean>() {
+            public Boolean apply(Set<String> keys) {
+                int idx = id.indexOf('-');
+                return idx > 0 && keys.contains(id.substring(0, idx).toUpperCase());
+            }
+        });
+    }
+
+    public Promise<RemoteIssue> getIssue(final String id) {
+        return existsIssue(id).flatMap(new Function<Boolean, Promise<RemoteIssue>>() {
+            public Promise<RemoteIssue> apply(Boolean exists) {
+                if (!exists) {
+                    return Promises.<RemoteIssue>promise(null);
+                }
+                return orNull(api.getIssue(id), "get issue " + id);
+            }
+        });
+    }
+
+    Promise<RemoteIssue> getIssueByKey(String key) {
+        return api.getIssue(key);
+    }
+
+    public Promise<ProjectedIssue> getProjectedIssue(String id, String... fields) {
+        return orNull(api.getProjectedIssue(id, fields), "get issue " + id);
+    }
+
+    public Promise<RemoteIssue[]> getIssuesFromJqlSearch(String jqlSearch, int startAt, int maxResults) {
+        return api.search(jqlSearch, startAt, maxResults, JiraRestApiClient.ISSUE_FIELDS)
+                .map(new Function<JiraRestApiClient.SearchPage, RemoteIssue[]>() {
+                    public RemoteIssue[] apply(JiraRestApiClient.SearchPage page) {
+                        return page.issues.toArray(new RemoteIssue[page.issues.size()]);
+                    }
+                });
+    }
+
+    public Promise<RemoteIssue[]> getIssuesWithFixVersion(String projectKey, String version, String filter) {
+        String jql = String.format("project = \"%s\" and fixVersion = \"%s\"", projectKey, version);
+        if (isNotEmpty(filter)) {
+            jql += " and " + filter;
+        }
+        return searchAll(jql, JiraRestApiClient.ISSUE_FIELDS).map(new Function<List<RemoteIssue>, RemoteIssue[]>() {
+            public RemoteIssue[] apply(List<RemoteIssue> issues) {
+                return issues.toArray(new RemoteIssue[issues.size()]);
+            }
+        });
+    }
+
+    /**
+     * Gets all issues matching the JQL query, page by page.
+     */
+    private Promise<List<RemoteIssue>> searchAll(String jqlSearch, String fields) {
+        return searchFrom(jqlSearch, fields, new ArrayList<RemoteIssue>());
+    }
+
+    private Promise<List<RemoteIssue>> searchFrom(final String jqlSearch, final String fields, final List<RemoteIssue> issues) {
+        return api.search(jqlSearch, issues.size(), SEARCH_PAGE_SIZE, fields)
+                .flatMap(new Function<JiraRestApiClient.SearchPage, Promise<List<RemoteIssue>>>() {
+                    public Promise<List<RemoteIssue>> apply(JiraRestApiClient.SearchPage page) {
+                        issues.addAll(page.issues);
+                        if (page.issues.isEmpty() || issues.size() >= page.total) {
+                            return Promises.promise(issues);
+                        }
+                        return searchFrom(jqlSearch, fields, issues);
+                    }
+                });
+    }
+
+    Promise<RemoteGroup> getGroup(String groupId) {
+        return api.getGroup(groupId);
+    }
+
+    public Promise<RemoteIssueType[]> getIssueTypes() {
+        return api.getIssueTypes();
+    }
+
+    public Promise<RemoteVersion[]> getVersions(String projectKey) {
+        return api.getVersions(projectKey);
+    }
+
+    public Promise<RemoteComponent[]> getComponents(String projectKey) {
+        return api.getComponents(projectKey);
+    }
+
+    public Promise<Void> addComment(String issueId, String comment, String groupVisibility, String roleVisibility) {
+        // REST allows one restriction only, the more specific role wins like it does in JIRA's UI
+        if (isNotEmpty(roleVisibility)) {
+            return api.addComment(issueId, comment, "role", roleVisibility);
+        } else if (isNotEmpty(groupVisibility)) {
+            return api.addComment(issueId, comment, "group", groupVisibility);
+        }
+        return api.addComment(issueId, comment, null, null);
+    }
+
+    public Promise<String> getActionIdForIssue(String issueKey, String workflowAction) {
+        return api.getTransitionId(issueKey, workflowAction);
+    }
+
+    public Promise<String> progressWorkflowAction(final String issueKey, String workflowActionName, RemoteFieldValue[] fields) {
+        // like with SOAP, the action is identified by its id
+        LOGGER.fine("Progressing issue " + issueKey + " with workflow action: " + workflowActionName);
+        return api.transition(issueKey, workflowActionName, fields)
+                .flatMap(new Function<Void, Promise<String>>() {
+                    public Promise<String> apply(Void input) {
+                        return api.getStatusName(issueKey);
+                    }
+                });
+    }
+
+    public Promise<RemoteIssue> createIssue(String projectKey, String description, String assignee,
+                                            RemoteComponent[] components, String summary) {
+        // issue type 1 like the SOAP implementation, which is "Bug" in a default JIRA
+        return api.createIssue(projectKey, description, assignee, components, summary, "1");
+    }
+
+    public Promise<RemoteVersion> addVersion(String version, String projectKey) {
+        return api.addVersion(version, projectKey);
+    }
+
+    public Promise<Void> releaseVersion(String projectKey, RemoteVersion version) {
+        LOGGER.fine("Releasing version: " + version.getName());
+        return api.releaseVersion(version);
+    }
+
+    public Promise<Void> migrateIssuesToFixVersion(String projectKey, String version, final String query) {
+        return updateIssuesWithVersion(projectKey, version, query, new Function<IssueVersion, Promise<Void>>() {
+            public Promise<Void> apply(IssueVersion update) {
+                LOGGER.fine("Migrating issue: " + update.issueKey);
+                return api.setFixVersion(update.issueKey, update.versionId);
+            }
+        });
+    }
+
+    public Promise<Void> replaceFixVersion(String projectKey, final String fromVersion, String toVersion, String query) {
+        // the update operations replace the version without reading the current ones first
+        return updateIssuesWithVersion(projectKey, toVersion, query, new Function<IssueVersion, Promise<Void>>() {
+            public Promise<Void> apply(IssueVersion update) {
+                LOGGER.fine("Replacing version in issue: " + update.issueKey);
+                return api.replaceFixVersion(update.issueKey, fromVersion, update.versionId);
+            }
+        });
+    }
+
+    /**
+     * An issue to update, and the id of the version to give it.
+     */
+    private static final class IssueVersion {
+        final String issueKey;
+        final String versionId;
+
+        IssueVersion(String issueKey, String versionId) {
+            this.issueKey = issueKey;
+            this.versionId = versionId;
+        }
+    }
+
+    /**
+     * Looks up the version, then updates all issues matching the query in parallel.
+     * Does nothing if the version doesn't exist.
+     */
+    private Promise<Void> updateIssuesWithVersion(String projectKey, final String versionName, final String query,
+                                                  final Function<IssueVersion, Promise<Void>> update) {
+        return api.getVersions(projectKey).flatMap(new Function<RemoteVersion[], Promise<Void>>() {
+            public Promise<Void> apply(RemoteVersion[] versions) {
+                for (final RemoteVersion version : versions) {
+                    if (version.getName().equals(versionName)) {
+                        return searchAll(query, "key").flatMap(new Function<List<RemoteIssue>, Promise<Void>>() {
+                            public Promise<Void> apply(List<RemoteIssue> issues) {
+                                List<Promise<Void>> updates = new ArrayList<Promise<Void>>(issues.size());
+                                for (RemoteIssue issue : issues) {
+                                    updates.add(update.apply(new IssueVersion(issue.getKey(), version.getId())));
+                                }
+                                return Promises.when(updates).map(new Function<List<Void>, Void>() {
+                                    public Void apply(List<Void> input) {
+                                        return null;
+                                    }
+                                });
+                            }
+                        });
+                    }
+                }
+                return Promises.<Void>promise(null);
+            }
+        });
+    }
+
+    /**
+     * Treats the answer that the issue doesn't exist (404) as null. Other error answers, like 401 or 503,
+     * still fail, so that callers don't take an outage for missing issues.
+     */
+    private static <T> Promise<T> orNull(Promise<T> promise, final String what) {
+        return promise.recover(new Function<Throwable, T>() {
+            public T apply(Throwable t) {
+                if (RestErrors.isNotFound(t)) {
+                    LOGGER.log(Level.FINE, "Failed to " + what, t);
+                    return null;
+                }
+                throw t instanceof RuntimeException ? (RuntimeException) t : new RuntimeException(t);
+            }
+        });
+    }
+}
@@ -0,0 +1,34 @@
+package hudson.plugins.jira.remote.rest;
+
+import com.atlassian.jira.rest.client.api.RestClientException;
+import com.google.common.base.Optional;
+
+/**
+ * Tells the error answers of JIRA's REST API apart, and from failing to get an answer at all.
+ */
+public final class RestErrors {
+    private RestErrors() {
+    }
+
+    /**
+     * @return the HTTP status JIRA answered the failed call with, found among the causes of the failure,
+     *         or 0 if JIRA didn't answer, like after a timeout
+     */
+    public static int getStatusCode(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            if (t instanceof RestClientException) {
+                Optional<Integer> status = ((RestClientException) t).getStatusCode();
+                return status.isPresent() ? status.get() : 0;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Whether JIRA answered that what was asked for doesn't exist, or isn't visible to the user,
+     * which JIRA doesn't tell apart.
+     */
+    public static boolean isNotFound(Throwable failure) {
+        return getStatusCode(failure) == 404;
+    }
+}
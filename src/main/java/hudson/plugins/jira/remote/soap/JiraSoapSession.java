@@ -2,13 +2,17 @@ package hudson.plugins.jira.remote.soap;
 
 import hudson.plugins.jira.JiraSite;
 import hudson.plugins.jira.remote.JiraInteractionSession;
+import hudson.plugins.jira.remote.ProjectedIssue;
 import hudson.plugins.jira.soap.*;
 
 import java.io.IOException;
 import java.net.URL;
 import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.logging.Logger;
 
@@ -67,12 +71,14 @@ public class JiraSoapSession implements JiraInteractionSession {
                     username + ":" + password + "@" + url.getHost()) + "rpc/soap/jirasoapservice-v2";
             JiraSoapService service = jiraSoapServiceGetter.getJirasoapserviceV2(
                     new URL(httpAuthUrl));
+            service = SoapTimeouts.apply(service, site.getTimeouts());
 
             return new JiraSoapSession(site, urlExternalForm, service, null); //no need to login
         }
 
         JiraSoapService service = jiraSoapServiceGetter.getJirasoapserviceV2(
                 new URL(url, "rpc/soap/jirasoapservice-v2"));
+        service = SoapTimeouts.apply(service, site.getTimeouts());
 
         final String jiraToken = service.login(username, password);
         return new JiraSoapSession(site, urlExternalForm, service, jiraToken);
@@ -131,7 +137,7 @@ public class JiraSoapSession implements JiraInteractionSession {
             LOGGER.throwing(this.getClass().toString(), "setGroupLevel", rve);
         }
 
-        service.addComment(token, issueId, rc);
+        postComment(issueId, rc);
     }
 
     /* (non-Javadoc)
@@ -139,7 +145,7 @@ public class JiraSoapSession implements JiraInteractionSession {
      */
     public RemoteIssue getIssue(String id) throws RemoteException {
         if (existsIssue(id)) {
-            return service.getIssue(token, id);
+            return fetchIssue(id);
         } else {
             return null;
         }
@@ -149,12 +155,76 @@ public class JiraSoapSession implements JiraInteractionSession {
         throw new RuntimeException("Async calls not supported by SOAP API.");
     }
 
+    public ProjectedIssue getProjectedIssue(String id, String... fields) throws RemoteException {
+        // SOAP can't restrict the fields, so this is just a smaller view of the full issue
+        RemoteIssue issue = getIssue(id);
+        if (issue == null) {
+            return null;
+        }
+        List<String> fixVersions = null;
+        if (issue.getFixVersions() != null) {
+            fixVersions = new ArrayList<String>(issue.getFixVersions().length);
+            for (RemoteVersion version : issue.getFixVersions()) {
+                fixVersions.add(version.getName());
+            }
+        }
+        return new ProjectedIssue(issue.getKey(), issue.getSummary(), issue.getStatus(), fixVersions);
+    }
+
     /* (non-Javadoc)
      * @see hudson.plugins.jira.remote.JiraInteractionSession#getIssuesFromJqlSearch(java.lang.String)
      */
     public RemoteIssue[] getIssuesFromJqlSearch(final String jqlSearch)
             throws RemoteException {
-        return service.getIssuesFromJqlSearch(token, jqlSearch, 50);
+        return search(jqlSearch, 50);
+    }
+
+    /* (non-Javadoc)
+     * @see hudson.plugins.jira.remote.JiraInteractionSession#getIssuesFromJqlSearch(java.lang.String, int, int)
+     */
+    public RemoteIssue[] getIssuesFromJqlSearch(final String jqlSearch, int startAt, int maxResults)
+            throws RemoteException {
+        // the SOAP API has no offset for JQL searches, so the issues up to the end of the page are fetched,
+        // and the next pages are sliced from them as far as they reach
+        int end = (int) Math.min((long) startAt + maxResults, Integer.MAX_VALUE);
+        PagedSearch paged = pagedSearch;
+        boolean next = startAt > 0 && paged != null && paged.jqlSearch.equals(jqlSearch);
+        if (!next || paged.lacks(end)) {
+            // beyond what was fetched, fetch twice as many, so that paging through N issues fetches O(N)
+            int limit = next ? (int) Math.min(Math.max(end, 2L * paged.limit), Integer.MAX_VALUE) : end;
+            paged = new PagedSearch(jqlSearch, limit, search(jqlSearch, limit));
+            pagedSearch = paged;
+        }
+
+        RemoteIssue[] issues = paged.issues;
+        if (issues.length <= startAt) {
+            return new RemoteIssue[0];
+        }
+        return Arrays.copyOfRange(issues, startAt, Math.min(issues.length, end));
+    }
+
+    /**
+     * The last paged search, which its next pages are taken from.
+     */
+    private volatile PagedSearch pagedSearch;
+
+    private static final class PagedSearch {
+        final String jqlSearch;
+        final int limit;
+        final RemoteIssue[] issues;
+
+        PagedSearch(String jqlSearch, int limit, RemoteIssue[] issues) {
+            this.jqlSearch = jqlSearch;
+            this.limit = limit;
+            this.issues = issues != null ? issues : new RemoteIssue[0];
+        }
+
+        /**
+         * Whether issues up to the given index might exist, but weren't fetched.
+         */
+        boolean lacks(int end) {
+            return end > issues.length && issues.length >= limit;
+        }
     }
 
     /* (non-Javadoc)
@@ -233,9 +303,9 @@ public class JiraSoapSession implements JiraInteractionSession {
     public RemoteIssue[] getIssuesWithFixVersion(String projectKey, String version, String filter) throws RemoteException {
         LOGGER.fine("Fetching versions from project: " + projectKey + " with fixVersion:" + version);
         if (isNotEmpty(filter)) {
-            return service.getIssuesFromJqlSearch(token, String.format("project = \"%s\" and fixVersion = \"%s\" and " + filter, projectKey, version), Integer.MAX_VALUE);
+            return search(String.format("project = \"%s\" and fixVersion = \"%s\" and " + filter, projectKey, version), Integer.MAX_VALUE);
         }
-        return service.getIssuesFromJqlSearch(token, String.format("project = \"%s\" and fixVersion = \"%s\"", projectKey, version), Integer.MAX_VALUE);
+        return search(String.format("project = \"%s\" and fixVersion = \"%s\"", projectKey, version), Integer.MAX_VALUE);
     }
 
     /* (non-Javadoc)
@@ -275,7 +345,7 @@ public class JiraSoapSession implements JiraInteractionSession {
         }
 
         LOGGER.fine("Fetching versions with JQL:" + query);
-        RemoteIssue[] issues = service.getIssuesFromJqlSearch(token, query, Integer.MAX_VALUE);
+        RemoteIssue[] issues = search(query, Integer.MAX_VALUE);
         if (issues == null) {
             return;
         }
@@ -299,7 +369,7 @@ public class JiraSoapSession implements JiraInteractionSession {
         }
 
         LOGGER.fine("Fetching versions with JQL:" + query);
-        RemoteIssue[] issues = service.getIssuesFromJqlSearch(token, query, Integer.MAX_VALUE);
+        RemoteIssue[] issues = search(query, Integer.MAX_VALUE);
         if (issues == null) {
             return;
         }
@@ -406,14 +476,30 @@ public class JiraSoapSession implements JiraInteractionSession {
     public void addCommentWithoutConstrains(String issueId, String comment) throws RemoteException {
         RemoteComment rc = new RemoteComment();
         rc.setBody(comment);
-        service.addComment(token, issueId, rc);
+        postComment(issueId, rc);
     }
 
     /* (non-Javadoc)
      * @see hudson.plugins.jira.remote.JiraInteractionSession#getIssueByKey(java.lang.String)
      */
     public RemoteIssue getIssueByKey(String issueId) throws RemoteException {
-        return service.getIssue(token, issueId);
+        return fetchIssue(issueId);
+    }
+
+    /**
+     * Gets an issue from JIRA. The operations called most often go through this and
+     * the other protected methods, so that a subclass can make them cheaper.
+     */
+    protected RemoteIssue fetchIssue(String issueKey) throws RemoteException {
+        return service.getIssue(token, issueKey);
+    }
+
+    protected RemoteIssue[] search(String jqlSearch, int maxNumResults) throws RemoteException {
+        return service.getIssuesFromJqlSearch(token, jqlSearch, maxNumResults);
+    }
+
+    protected void postComment(String issueKey, RemoteComment comment) throws RemoteException {
+        service.addComment(token, issueKey, comment);
     }
 
     /* (non-Javadoc)
@@ -0,0 +1,51 @@
+package hudson.plugins.jira.remote.soap;
+
+import hudson.plugins.jira.remote.JiraTimeouts;
+import hudson.plugins.jira.soap.JiraSoapService;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.axis.AxisFault;
+import org.apache.axis.client.Stub;
+
+/**
+ * Applies the timeouts of a site to a SOAP service, and counts the calls which timed out.
+ * <p>
+ * Axis has a single timeout for connecting and for each read, so the read timeout is used.
+ * A call is as long as its single request, so there is no separate call timeout.
+ */
+final class SoapTimeouts {
+    private SoapTimeouts() {
+    }
+
+    static JiraSoapService apply(JiraSoapService service, final JiraTimeouts timeouts) {
+        ((Stub) service).setTimeout((int) TimeUnit.SECONDS.toMillis(timeouts.getReadTimeout()));
+
+        final JiraSoapService target = service;
+        return (JiraSoapService) Proxy.newProxyInstance(JiraSoapService.class.getClassLoader(),
+                new Class<?>[]{JiraSoapService.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        try {
+                            return method.invoke(target, args);
+                        } catch (InvocationTargetException e) {
+                            if (isTimeout(e.getCause())) {
+                                timeouts.recordTimeout(method.getName());
+                            }
+                            throw e.getCause();
+                        }
+                    }
+                });
+    }
+
+    private static boolean isTimeout(Throwable t) {
+        if (t instanceof AxisFault) {
+            t = ((AxisFault) t).detail;
+        }
+        return t instanceof SocketTimeoutException;
+    }
+}
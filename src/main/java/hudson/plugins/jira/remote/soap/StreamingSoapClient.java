@@ -0,0 +1,535 @@
+package hudson.plugins.jira.remote.soap;
+
+import hudson.plugins.jira.remote.JiraTimeouts;
+import hudson.plugins.jira.soap.RemoteAuthenticationException;
+import hudson.plugins.jira.soap.RemoteComment;
+import hudson.plugins.jira.soap.RemoteComponent;
+import hudson.plugins.jira.soap.RemoteIssue;
+import hudson.plugins.jira.soap.RemotePermissionException;
+import hudson.plugins.jira.soap.RemoteValidationException;
+import hudson.plugins.jira.soap.RemoteVersion;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.DatatypeConverter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.axis.AxisFault;
+
+/**
+ * Talks the rpc/encoded SOAP of JIRA for the few operations which are called for every build and
+ * changelog view, without the Axis stubs.
+ * <p>
+ * Requests are written and answers read with StAX. Of an answer only the fields the plugin looks at
+ * are kept, everything else is skipped while reading. As Axis puts the issues of a search after the
+ * result array as multi-references, the issues are read one by one into these fields, and joined up
+ * with the array at the end of the answer.
+ */
+final class StreamingSoapClient {
+    static final String SERVICE_PATH = "rpc/soap/jirasoapservice-v2";
+
+    private static final String SOAPENV_NS = "http://schemas.xmlsoap.org/soap/envelope/";
+    private static final String SOAPENC_NS = "http://schemas.xmlsoap.org/soap/encoding/";
+    private static final String XSI_NS = "http://www.w3.org/2001/XMLSchema-instance";
+    private static final String XSD_NS = "http://www.w3.org/2001/XMLSchema";
+    private static final String SERVICE_NS = "http://soap.rpc.jira.atlassian.com";
+    private static final String BEANS_NS = "http://beans.soap.rpc.jira.atlassian.com";
+
+    /**
+     * Fields of issues, versions and components which are read, all others are skipped.
+     */
+    private static final Set<String> FIELDS = new HashSet<String>(Arrays.asList(
+            "id", "key", "summary", "description", "status", "type", "priority", "resolution", "project",
+            "assignee", "reporter", "created", "updated", "fixVersions", "components",
+            "name", "released", "archived", "releaseDate"));
+
+    private static final XMLInputFactory INPUT = createInputFactory();
+    private static final XMLOutputFactory OUTPUT = XMLOutputFactory.newInstance();
+
+    private final URL endpoint;
+
+    /**
+     * Value of the authorization header for HTTP authentication, null when logging in with a token.
+     */
+    private final String authorization;
+
+    private final JiraTimeouts timeouts;
+
+    StreamingSoapClient(URL url, String username, String password, boolean useHttpAuth, JiraTimeouts timeouts)
+            throws MalformedURLException {
+        this.endpoint = new URL(url, SERVICE_PATH);
+        this.authorization = useHttpAuth ? basic(username, password) : null;
+        this.timeouts = timeouts;
+    }
+
+    private static String basic(String username, String password) {
+        try {
+            return "Basic " + DatatypeConverter.printBase64Binary((username + ":" + password).getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * @return null if the issue doesn't exist
+     */
+    RemoteIssue getIssue(String token, String issueKey) throws RemoteException {
+        return issue(call("getIssue", string(token), string(issueKey)));
+    }
+
+    void addComment(String token, String issueKey, RemoteComment comment) throws RemoteException {
+        call("addComment", string(token), string(issueKey), comment(comment));
+    }
+
+    RemoteIssue[] getIssuesFromJqlSearch(String token, String jqlSearch, int maxNumResults) throws RemoteException {
+        List<?> values = (List<?>) call("getIssuesFromJqlSearch", string(token), string(jqlSearch), integer(maxNumResults));
+        if (values == null) {
+            return new RemoteIssue[0];
+        }
+        RemoteIssue[] issues = new RemoteIssue[values.size()];
+        for (int i = 0; i < issues.length; i++) {
+            issues[i] = issue(values.get(i));
+        }
+        return issues;
+    }
+
+    /**
+     * Calls an operation of the SOAP service.
+     *
+     * @return the returned value with its references resolved; null, a text, a list or the fields of a bean
+     */
+    private Object call(String operation, Argument... arguments) throws RemoteException {
+        try {
+            byte[] request = envelope(operation, arguments);
+
+            HttpURLConnection connection = (HttpURLConnection) endpoint.openConnection();
+            connection.setConnectTimeout((int) TimeUnit.SECONDS.toMillis(timeouts.getConnectTimeout()));
+            connection.setReadTimeout((int) TimeUnit.SECONDS.toMillis(timeouts.getReadTimeout()));
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(request.length);
+            connection.setRequestProperty("Content-Type", "text/xml; charset=utf-8");
+            connection.setRequestProperty("SOAPAction", "\"\"");
+            if (authorization != null) {
+                connection.setRequestProperty("Authorization", authorization);
+            }
+            OutputStream out = connection.getOutputStream();
+            try {
+                out.write(request);
+            } finally {
+                out.close();
+            }
+
+            // faults come with an error status, but as SOAP
+            int status = connection.getResponseCode();
+            InputStream in = status < HttpURLConnection.HTTP_BAD_REQUEST ? connection.getInputStream() : connection.getErrorStream();
+            String contentType = connection.getContentType();
+            if (in == null || contentType == null || !contentType.contains("xml")) {
+                if (in != null) {
+                    in.close();
+                }
+                throw new RemoteException("JIRA answered " + status + " " + connection.getResponseMessage() + " to " + operation);
+            }
+            try {
+                XMLStreamReader reader = INPUT.createXMLStreamReader(in);
+                try {
+                    return new Answer(reader).read();
+                } finally {
+                    reader.close();
+                }
+            } finally {
+                in.close();
+            }
+        } catch (SocketTimeoutException e) {
+            timeouts.recordTimeout(operation);
+            throw new RemoteException("Timed out calling " + operation, e);
+        } catch (RemoteException e) {
+            throw e;    // a fault, as is
+        } catch (IOException e) {
+            throw new RemoteException("Failed to call " + operation, e);
+        } catch (XMLStreamException e) {
+            throw new RemoteException("Failed to read the answer to " + operation, e);
+        }
+    }
+
+    private static byte[] envelope(String operation, Argument... arguments) throws XMLStreamException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+        XMLStreamWriter writer = OUTPUT.createXMLStreamWriter(out, "UTF-8");
+        writer.writeStartDocument("UTF-8", "1.0");
+        writer.writeStartElement("soapenv", "Envelope", SOAPENV_NS);
+        writer.writeNamespace("soapenv", SOAPENV_NS);
+        writer.writeNamespace("soapenc", SOAPENC_NS);
+        writer.writeNamespace("xsi", XSI_NS);
+        writer.writeNamespace("xsd", XSD_NS);
+        writer.writeStartElement("soapenv", "Body", SOAPENV_NS);
+        writer.writeStartElement("ns1", operation, SERVICE_NS);
+        writer.writeNamespace("ns1", SERVICE_NS);
+        writer.writeAttribute("soapenv", SOAPENV_NS, "encodingStyle", SOAPENC_NS);
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i].write(writer, "in" + i);
+        }
+        writer.writeEndDocument();
+        writer.close();
+        return out.toByteArray();
+    }
+
+    /**
+     * A parameter of an operation.
+     */
+    private interface Argument {
+        void write(XMLStreamWriter writer, String name) throws XMLStreamException;
+    }
+
+    private static Argument string(final String value) {
+        return new Argument() {
+            public void write(XMLStreamWriter writer, String name) throws XMLStreamException {
+                writeString(writer, name, value);
+            }
+        };
+    }
+
+    private static Argument integer(final int value) {
+        return new Argument() {
+            public void write(XMLStreamWriter writer, String name) throws XMLStreamException {
+                writer.writeStartElement(name);
+                writer.writeAttribute("xsi", XSI_NS, "type", "xsd:int");
+                writer.writeCharacters(Integer.toString(value));
+                writer.writeEndElement();
+            }
+        };
+    }
+
+    private static Argument comment(final RemoteComment comment) {
+        return new Argument() {
+            public void write(XMLStreamWriter writer, String name) throws XMLStreamException {
+                writer.writeStartElement(name);
+                writer.writeNamespace("ns2", BEANS_NS);
+                writer.writeAttribute("xsi", XSI_NS, "type", "ns2:RemoteComment");
+                writeString(writer, "body", comment.getBody());
+                writeString(writer, "groupLevel", comment.getGroupLevel());
+                writeString(writer, "roleLevel", comment.getRoleLevel());
+                writer.writeEndElement();
+            }
+        };
+    }
+
+    private static void writeString(XMLStreamWriter writer, String name, String value) throws XMLStreamException {
+        writer.writeStartElement(name);
+        if (value == null) {
+            writer.writeAttribute("xsi", XSI_NS, "nil", "true");
+        } else {
+            writer.writeAttribute("xsi", XSI_NS, "type", "xsd:string");
+            writer.writeCharacters(value);
+        }
+        writer.writeEndElement();
+    }
+
+    /**
+     * A multi-reference of the answer, resolved once the whole answer has been read.
+     */
+    private static final class Ref {
+        final String id;
+
+        Ref(String id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * Reads the body of an answer.
+     */
+    private static final class Answer {
+        private final XMLStreamReader reader;
+
+        /**
+         * Values of the multi-references, by id.
+         */
+        private final Map<String, Object> refs = new HashMap<String, Object>();
+
+        Answer(XMLStreamReader reader) {
+            this.reader = reader;
+        }
+
+        Object read() throws XMLStreamException, RemoteException {
+            reader.nextTag();   // Envelope
+            while (nextChild() && !"Body".equals(reader.getLocalName())) {
+                skip();
+            }
+            if (reader.getEventType() != XMLStreamConstants.START_ELEMENT) {
+                throw new XMLStreamException("Not a SOAP envelope");
+            }
+
+            Object result = null;
+            RemoteException fault = null;
+            while (nextChild()) {
+                String name = reader.getLocalName();
+                if ("Fault".equals(name) && SOAPENV_NS.equals(reader.getNamespaceURI())) {
+                    fault = readFault();
+                } else if ("multiRef".equals(name)) {
+                    refs.put(reader.getAttributeValue(null, "id"), readValue());
+                } else {
+                    // the response element, with the returned value if the operation has one
+                    while (nextChild()) {
+                        result = readValue();
+                    }
+                }
+            }
+            if (fault != null) {
+                throw fault;
+            }
+            return resolve(result);
+        }
+
+        /**
+         * Reads the element at the cursor into null, a reference, a text, a list or the fields of a bean.
+         */
+        private Object readValue() throws XMLStreamException {
+            String href = reader.getAttributeValue(null, "href");
+            if (href != null) {
+                skip();
+                return new Ref(href.substring(1));
+            }
+            if ("true".equals(reader.getAttributeValue(XSI_NS, "nil"))) {
+                skip();
+                return null;
+            }
+            boolean array = reader.getAttributeValue(SOAPENC_NS, "arrayType") != null;
+            List<Object> items = array ? new ArrayList<Object>() : null;
+            Map<String, Object> fields = null;
+            StringBuilder text = null;
+            while (true) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.END_ELEMENT) {
+                    break;
+                } else if (event == XMLStreamConstants.START_ELEMENT) {
+                    if (array) {
+                        items.add(readValue());
+                    } else {
+                        if (fields == null) {
+                            fields = new HashMap<String, Object>();
+                        }
+                        String name = reader.getLocalName();
+                        if (FIELDS.contains(name)) {
+                            fields.put(name, readValue());
+                        } else {
+                            skip();
+                        }
+                    }
+                } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                    if (!array && fields == null) {
+                        if (text == null) {
+                            text = new StringBuilder();
+                        }
+                        text.append(reader.getText());
+                    }
+                }
+            }
+            if (array) {
+                return items;
+            }
+            if (fields != null) {
+                return fields;
+            }
+            return text == null ? "" : text.toString();
+        }
+
+        private RemoteException readFault() throws XMLStreamException {
+            String message = null;
+            String type = null;
+            while (nextChild()) {
+                String name = reader.getLocalName();
+                if ("faultstring".equals(name)) {
+                    message = reader.getElementText();
+                } else if ("detail".equals(name)) {
+                    // the first element is named after the class of the exception on the server
+                    while (nextChild()) {
+                        if (type == null) {
+                            type = reader.getLocalName();
+                        }
+                        skip();
+                    }
+                } else {
+                    skip();
+                }
+            }
+            return fault(type, message);
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object resolve(Object value) {
+            if (value instanceof Ref) {
+                return resolve(refs.get(((Ref) value).id));
+            }
+            if (value instanceof List) {
+                List<Object> items = (List<Object>) value;
+                for (int i = 0; i < items.size(); i++) {
+                    items.set(i, resolve(items.get(i)));
+                }
+            } else if (value instanceof Map) {
+                for (Map.Entry<String, Object> field : ((Map<String, Object>) value).entrySet()) {
+                    field.setValue(resolve(field.getValue()));
+                }
+            }
+            return value;
+        }
+
+        /**
+         * Moves to the next child element.
+         *
+         * @return false at the end of the current element instead
+         */
+        private boolean nextChild() throws XMLStreamException {
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    return true;
+                }
+                if (event == XMLStreamConstants.END_ELEMENT) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Skips the element at the cursor, with everything in it.
+         */
+        private void skip() throws XMLStreamException {
+            int depth = 1;
+            while (depth > 0) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Turns a fault into the exception the Axis stubs would have thrown for it.
+     */
+    private static RemoteException fault(String type, String message) {
+        AxisFault fault;
+        if (type == null) {
+            return new RemoteException(message);
+        } else if (type.endsWith("RemotePermissionException")) {
+            fault = new RemotePermissionException();
+        } else if (type.endsWith("RemoteAuthenticationException")) {
+            fault = new RemoteAuthenticationException();
+        } else if (type.endsWith("RemoteValidationException")) {
+            fault = new RemoteValidationException();
+        } else {
+            return new RemoteException(message);
+        }
+        fault.setFaultString(message);
+        return fault;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> bean(Object value) {
+        return value instanceof Map ? (Map<String, Object>) value : null;
+    }
+
+    private static String text(Map<String, Object> bean, String field) {
+        Object value = bean.get(field);
+        return value instanceof String ? (String) value : null;
+    }
+
+    private static Calendar date(Map<String, Object> bean, String field) {
+        String value = text(bean, field);
+        return value == null || value.length() == 0 ? null : DatatypeConverter.parseDateTime(value);
+    }
+
+    private static List<?> list(Map<String, Object> bean, String field) {
+        Object value = bean.get(field);
+        return value instanceof List ? (List<?>) value : new ArrayList<Object>();
+    }
+
+    private static RemoteIssue issue(Object value) {
+        Map<String, Object> bean = bean(value);
+        if (bean == null) {
+            return null;
+        }
+        RemoteIssue issue = new RemoteIssue();
+        issue.setId(text(bean, "id"));
+        issue.setKey(text(bean, "key"));
+        issue.setSummary(text(bean, "summary"));
+        issue.setDescription(text(bean, "description"));
+        issue.setStatus(text(bean, "status"));
+        issue.setType(text(bean, "type"));
+        issue.setPriority(text(bean, "priority"));
+        issue.setResolution(text(bean, "resolution"));
+        issue.setProject(text(bean, "project"));
+        issue.setAssignee(text(bean, "assignee"));
+        issue.setReporter(text(bean, "reporter"));
+        issue.setCreated(date(bean, "created"));
+        issue.setUpdated(date(bean, "updated"));
+
+        List<?> versions = list(bean, "fixVersions");
+        RemoteVersion[] fixVersions = new RemoteVersion[versions.size()];
+        for (int i = 0; i < fixVersions.length; i++) {
+            fixVersions[i] = version(versions.get(i));
+        }
+        issue.setFixVersions(fixVersions);
+
+        List<?> parts = list(bean, "components");
+        RemoteComponent[] components = new RemoteComponent[parts.size()];
+        for (int i = 0; i < components.length; i++) {
+            Map<String, Object> part = bean(parts.get(i));
+            if (part != null) {
+                components[i] = new RemoteComponent();
+                components[i].setId(text(part, "id"));
+                components[i].setName(text(part, "name"));
+            }
+        }
+        issue.setComponents(components);
+        return issue;
+    }
+
+    private static RemoteVersion version(Object value) {
+        Map<String, Object> bean = bean(value);
+        if (bean == null) {
+            return null;
+        }
+        RemoteVersion version = new RemoteVersion();
+        version.setId(text(bean, "id"));
+        version.setName(text(bean, "name"));
+        version.setReleased(Boolean.parseBoolean(text(bean, "released")));
+        version.setArchived(Boolean.parseBoolean(text(bean, "archived")));
+        version.setReleaseDate(date(bean, "releaseDate"));
+        return version;
+    }
+}
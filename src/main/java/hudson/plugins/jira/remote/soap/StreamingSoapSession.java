@@ -0,0 +1,54 @@
+package hudson.plugins.jira.remote.soap;
+
+import hudson.plugins.jira.JiraSite;
+import hudson.plugins.jira.soap.RemoteComment;
+import hudson.plugins.jira.soap.RemoteIssue;
+
+import java.io.IOException;
+import java.net.URL;
+import java.rmi.RemoteException;
+
+import javax.xml.rpc.ServiceException;
+
+/**
+ * SOAP session which gets issues, searches and comments with {@link StreamingSoapClient},
+ * and leaves the rarer operations to the Axis stubs.
+ */
+public class StreamingSoapSession extends JiraSoapSession {
+
+    private final StreamingSoapClient client;
+
+    /**
+     * Logs in like {@link JiraSoapSession#createSession(JiraSite, URL, String, String, boolean)}.
+     *
+     * @return null if remote access is not supported
+     */
+    public static StreamingSoapSession createSession(JiraSite site, URL url, String username, String password, boolean useHttpAuth) throws IOException, ServiceException {
+        JiraSoapSession session = JiraSoapSession.createSession(site, url, username, password, useHttpAuth);
+        if (session == null) {
+            return null;
+        }
+        StreamingSoapClient client = new StreamingSoapClient(url, username, password, useHttpAuth, site.getTimeouts());
+        return new StreamingSoapSession(site, url.toExternalForm(), session, client);
+    }
+
+    /* package */StreamingSoapSession(JiraSite site, String urlExternalForm, JiraSoapSession session, StreamingSoapClient client) {
+        super(site, urlExternalForm, session.service, session.token);
+        this.client = client;
+    }
+
+    @Override
+    protected RemoteIssue fetchIssue(String issueKey) throws RemoteException {
+        return client.getIssue(token, issueKey);
+    }
+
+    @Override
+    protected RemoteIssue[] search(String jqlSearch, int maxNumResults) throws RemoteException {
+        return client.getIssuesFromJqlSearch(token, jqlSearch, maxNumResults);
+    }
+
+    @Override
+    protected void postComment(String issueKey, RemoteComment comment) throws RemoteException {
+        client.addComment(token, issueKey, comment);
+    }
+}
@@ -0,0 +1,123 @@
+package hudson.plugins.jira;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import hudson.plugins.jira.remote.JiraInteractionSession;
+import hudson.plugins.jira.soap.RemotePermissionException;
+
+import java.rmi.RemoteException;
+
+import com.atlassian.jira.rest.client.api.RestClientException;
+import com.google.common.base.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class CommentCoalescerTest {
+
+    private JiraSite site;
+    private JiraInteractionSession session;
+
+    @Before
+    public void createSite() throws Exception {
+        site = mock(JiraSite.class);
+        session = mock(JiraInteractionSession.class);
+        when(site.getSession()).thenReturn(session);
+    }
+
+    @Test
+    public void testCommentsOfAnIssueAreMerged() throws Exception {
+        CommentCoalescer coalescer = new CommentCoalescer(site, 3600);
+        coalescer.add("FOO-1", "Integrated in job-a #1");
+        coalescer.add("foo-1", "Integrated in job-b #7");
+        coalescer.add("FOO-1", "Integrated in job-a #1");
+        coalescer.add("FOO-2", "Integrated in job-a #1");
+        assertEquals(2, coalescer.getPendingCount());
+
+        coalescer.flush("FOO-1");
+
+        verify(session).addComment(Mockito.eq("FOO-1"), Mockito.eq("Integrated in job-a #1\nIntegrated in job-b #7"),
+                Mockito.anyString(), Mockito.anyString());
+        assertEquals(1, coalescer.getPendingCount());
+    }
+
+    @Test
+    public void testFlushingTwiceAddsOneComment() throws Exception {
+        CommentCoalescer coalescer = new CommentCoalescer(site, 3600);
+        coalescer.add("FOO-1", "Integrated in job-a #1");
+
+        coalescer.flush("FOO-1");
+        coalescer.flush("FOO-1");
+
+        verify(session, times(1)).addComment(Mockito.anyString(), Mockito.anyString(),
+                Mockito.anyString(), Mockito.anyString());
+    }
+
+    @Test
+    public void testFailedCommentIsQueuedAgain() throws Exception {
+        doThrow(new RemoteException("JIRA is down")).doNothing().when(session).addComment(Mockito.anyString(),
+                Mockito.anyString(), Mockito.anyString(), Mockito.anyString());
+        CommentCoalescer coalescer = new CommentCoalescer(site, 3600);
+        coalescer.add("FOO-1", "Integrated in job-a #1");
+
+        coalescer.flush("FOO-1");
+        assertEquals(1, coalescer.getPendingCount());
+        coalescer.add("FOO-1", "Integrated in job-b #7");
+
+        coalescer.flushAll();
+        verify(session, times(2)).addComment(Mockito.eq("FOO-1"), Mockito.anyString(),
+                Mockito.anyString(), Mockito.anyString());
+        verify(session).addComment(Mockito.eq("FOO-1"), Mockito.eq("Integrated in job-a #1\nIntegrated in job-b #7"),
+                Mockito.anyString(), Mockito.anyString());
+        assertEquals(0, coalescer.getPendingCount());
+    }
+
+    @Test
+    public void testCommentForMissingIssueIsDropped() throws Exception {
+        RestClientException notFound = mock(RestClientException.class);
+        when(notFound.getStatusCode()).thenReturn(Optional.of(404));
+        doThrow(new RemoteException("No such issue", notFound)).when(session).addComment(Mockito.anyString(),
+                Mockito.anyString(), Mockito.anyString(), Mockito.anyString());
+        CommentCoalescer coalescer = new CommentCoalescer(site, 3600);
+        coalescer.add("FOO-1", "Integrated in job-a #1");
+
+        coalescer.flush("FOO-1");
+
+        assertEquals(0, coalescer.getPendingCount());
+    }
+
+    @Test
+    public void testRefusedCommentIsDropped() throws Exception {
+        RestClientException forbidden = mock(RestClientException.class);
+        when(forbidden.getStatusCode()).thenReturn(Optional.of(403));
+        doThrow(new RemoteException("Not allowed to comment", forbidden))
+                .doThrow(new RemotePermissionException()).when(session).addComment(Mockito.anyString(),
+                Mockito.anyString(), Mockito.anyString(), Mockito.anyString());
+        CommentCoalescer coalescer = new CommentCoalescer(site, 3600);
+
+        coalescer.add("FOO-1", "Integrated in job-a #1");
+        coalescer.flush("FOO-1");
+        assertEquals(0, coalescer.getPendingCount());
+
+        coalescer.add("FOO-2", "Integrated in job-a #1");
+        coalescer.flush("FOO-2");
+        assertEquals(0, coalescer.getPendingCount());
+    }
+
+    @Test
+    public void testFailingCommentIsDroppedEventually() throws Exception {
+        doThrow(new RemoteException("JIRA is down")).when(session).addComment(Mockito.anyString(),
+                Mockito.anyString(), Mockito.anyString(), Mockito.anyString());
+        CommentCoalescer coalescer = new CommentCoalescer(site, 3600);
+        coalescer.add("FOO-1", "Integrated in job-a #1");
+
+        for (int i = 0; i < CommentCoalescer.ATTEMPTS; i++) {
+            coalescer.flush("FOO-1");
+        }
+
+        assertEquals(0, coalescer.getPendingCount());
+        verify(session, times(CommentCoalescer.ATTEMPTS)).addComment(Mockito.anyString(), Mockito.anyString(),
+                Mockito.anyString(), Mockito.anyString());
+    }
+}
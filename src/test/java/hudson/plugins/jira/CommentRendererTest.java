@@ -0,0 +1,66 @@
+package hudson.plugins.jira;
+
+import hudson.model.AbstractBuild;
+import hudson.model.User;
+import hudson.scm.ChangeLogSet;
+import hudson.scm.ChangeLogSet.Entry;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test case for {@link CommentRenderer}.
+ */
+@SuppressWarnings("unchecked")
+public class CommentRendererTest {
+
+    private static class MockEntry extends Entry {
+        private final String msg;
+
+        MockEntry(String msg) {
+            this.msg = msg;
+        }
+
+        @Override
+        public Collection<String> getAffectedPaths() {
+            return null;
+        }
+
+        @Override
+        public User getAuthor() {
+            return null;
+        }
+
+        @Override
+        public String getMsg() {
+            return msg;
+        }
+    }
+
+    @Test
+    public void changeMentioningTheIssueTwiceIsRenderedOnce() {
+        // more changes than Integer caches boxes for
+        List<Entry> entries = new ArrayList<Entry>();
+        for (int i = 0; i < 200; i++) {
+            entries.add(new MockEntry("change " + i + ": FOO-1, again FOO-1"));
+        }
+        ChangeLogSet<Entry> changeLog = mock(ChangeLogSet.class);
+        when(changeLog.iterator()).thenReturn(entries.iterator());
+        AbstractBuild build = mock(AbstractBuild.class);
+        when(build.getChangeSet()).thenReturn(changeLog);
+
+        CommentRenderer renderer = new CommentRenderer(build, "http://jenkins/", false, false,
+                JiraSite.DEFAULT_ISSUE_PATTERN);
+        String comments = renderer.getScmComments(new JiraIssue("FOO-1", null));
+
+        assertThat(comments.split("\n").length, equalTo(200));
+        assertThat(comments, containsString("change 199: FOO-1, again FOO-1\n"));
+    }
+}
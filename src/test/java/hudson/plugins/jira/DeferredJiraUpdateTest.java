@@ -0,0 +1,39 @@
+package hudson.plugins.jira;
+
+import hudson.maven.MavenModuleSetBuild;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test case for {@link DeferredJiraUpdate}.
+ */
+public class DeferredJiraUpdateTest {
+
+    @Test
+    public void modulesShareTheUpdateOfTheirModuleSetBuild() {
+        MavenModuleSetBuild previous = mock(MavenModuleSetBuild.class);
+        when(previous.getAction(JiraCarryOverAction.class)).thenReturn(
+                new JiraCarryOverAction(Collections.singletonList(new JiraIssue("JENKINS-1", "carried over"))));
+        MavenModuleSetBuild build = mock(MavenModuleSetBuild.class);
+        when(build.getPreviousBuild()).thenReturn(previous);
+
+        DeferredJiraUpdate.merge(build, new LinkedHashSet<String>(Arrays.asList("JENKINS-2", "JENKINS-3")));
+        ArgumentCaptor<DeferredJiraUpdate> update = ArgumentCaptor.forClass(DeferredJiraUpdate.class);
+        verify(build).addAction(update.capture());
+
+        when(build.getAction(DeferredJiraUpdate.class)).thenReturn(update.getValue());
+        DeferredJiraUpdate.merge(build, new LinkedHashSet<String>(Arrays.asList("JENKINS-3", "JENKINS-4")));
+
+        verify(build, times(1)).addAction(any(DeferredJiraUpdate.class));
+        assertThat(update.getValue().getIDs(), contains("JENKINS-2", "JENKINS-3", "JENKINS-1", "JENKINS-4"));
+    }
+}
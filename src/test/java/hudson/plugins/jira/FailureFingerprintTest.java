@@ -0,0 +1,98 @@
+package hudson.plugins.jira;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class FailureFingerprintTest {
+
+    @Test
+    public void testSameExceptionInDifferentJobsMatches() {
+        FailureFingerprint a = FailureFingerprint.ofConsole(Arrays.asList(
+                "Building in workspace /var/lib/jenkins/workspace/job-a",
+                "java.net.ConnectException: Connection refused to nexus:8081",
+                "Finished: FAILURE"), "job-a");
+        FailureFingerprint b = FailureFingerprint.ofConsole(Arrays.asList(
+                "Building in workspace /var/lib/jenkins/workspace/job-b",
+                "Caused by: java.net.ConnectException: Connection refused to nexus:8082"), "job-b");
+
+        assertEquals("exceptions", a.getKind());
+        assertEquals(a.getSignature(), b.getSignature());
+    }
+
+    @Test
+    public void testSameExceptionWithDifferentMessagesDiffers() {
+        FailureFingerprint a = FailureFingerprint.ofConsole(Arrays.asList(
+                "java.io.IOException: No space left on device"), "job-a");
+        FailureFingerprint b = FailureFingerprint.ofConsole(Arrays.asList(
+                "java.io.IOException: Connection reset by peer"), "job-b");
+
+        assertEquals("exceptions", a.getKind());
+        assertFalse(a.getSignature().equals(b.getSignature()));
+    }
+
+    @Test
+    public void testBareExceptionIsToldApartByItsTopFrame() {
+        FailureFingerprint a = FailureFingerprint.ofConsole(Arrays.asList(
+                "java.lang.NullPointerException",
+                "\tat java.util.HashMap.get(HashMap.java:42)",
+                "\tat com.acme.billing.Invoice.total(Invoice.java:17)"), "job-a");
+        FailureFingerprint b = FailureFingerprint.ofConsole(Arrays.asList(
+                "java.lang.NullPointerException",
+                "\tat com.acme.shop.Cart.add(Cart.java:99)"), "job-b");
+        FailureFingerprint c = FailureFingerprint.ofConsole(Arrays.asList(
+                "java.lang.NullPointerException",
+                "\tat java.util.HashMap.get(HashMap.java:43)",
+                "\tat com.acme.billing.Invoice.total(Invoice.java:18)"), "job-c");
+
+        assertEquals("exceptions", a.getKind());
+        assertFalse(a.getSignature().equals(b.getSignature()));
+        assertEquals(a.getSignature(), c.getSignature());
+    }
+
+    @Test
+    public void testExceptionWithoutMessageOrFrameFallsBackToConsole() {
+        FailureFingerprint a = FailureFingerprint.ofConsole(Arrays.asList(
+                "Deploying to staging", "java.lang.NullPointerException"), "job-a");
+        FailureFingerprint b = FailureFingerprint.ofConsole(Arrays.asList(
+                "Running migrations", "java.lang.NullPointerException"), "job-b");
+
+        assertEquals("console", a.getKind());
+        assertFalse(a.getSignature().equals(b.getSignature()));
+    }
+
+    @Test
+    public void testErrorLinesAreNormalized() {
+        FailureFingerprint a = FailureFingerprint.ofConsole(Arrays.asList(
+                "[INFO] Downloading 12 artifacts",
+                "[ERROR] Failed to deploy /home/a/job-a/target/app-1.0.jar: timed out after 30s"), "job-a");
+        FailureFingerprint b = FailureFingerprint.ofConsole(Arrays.asList(
+                "[INFO] Downloading 14 artifacts",
+                "[ERROR] Failed to deploy /home/b/job-b/target/app-2.3.jar: timed out after 60s"), "job-b");
+        FailureFingerprint c = FailureFingerprint.ofConsole(Arrays.asList(
+                "[ERROR] Compilation failure: cannot find symbol"), "job-c");
+
+        assertEquals("console", a.getKind());
+        assertEquals(a.getSignature(), b.getSignature());
+        assertFalse(a.getSignature().equals(c.getSignature()));
+    }
+
+    @Test
+    public void testUnrelatedFailuresWithoutErrorsDiffer() {
+        FailureFingerprint a = FailureFingerprint.ofConsole(Arrays.asList("step one", "step two"), "job-a");
+        FailureFingerprint b = FailureFingerprint.ofConsole(Arrays.asList("other step"), "job-b");
+
+        assertFalse(a.getSignature().equals(b.getSignature()));
+    }
+
+    @Test
+    public void testFailedTestsIgnoreOrder() {
+        FailureFingerprint a = FailureFingerprint.ofTests(Arrays.asList("com.acme.FooTest.testA", "com.acme.BarTest.testB"));
+        FailureFingerprint b = FailureFingerprint.ofTests(Arrays.asList("com.acme.BarTest.testB", "com.acme.FooTest.testA"));
+
+        assertEquals("tests", a.getKind());
+        assertEquals(a.getSignature(), b.getSignature());
+    }
+}
@@ -0,0 +1,122 @@
+package hudson.plugins.jira;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import hudson.model.FreeStyleBuild;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class JiraBuildActionTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FreeStyleBuild build;
+
+    @Before
+    public void createBuild() throws Exception {
+        build = mock(FreeStyleBuild.class);
+        when(build.getRootDir()).thenReturn(folder.getRoot());
+    }
+
+    @Test
+    public void testIssuesAreSortedAndLookedUpById() {
+        JiraBuildAction action = new JiraBuildAction(build, Arrays.asList(
+                new JiraIssue("FOO-3", "three"), new JiraIssue("FOO-1", "one"), new JiraIssue("BAR-2", "two")));
+
+        JiraIssue[] issues = action.getIssues();
+        assertEquals(3, issues.length);
+        assertEquals("BAR-2", issues[0].id);
+        assertEquals("FOO-1", issues[1].id);
+        assertEquals("FOO-3", issues[2].id);
+
+        assertEquals("one", action.getIssue("FOO-1").title);
+        assertNull(action.getIssue("FOO-2"));
+    }
+
+    @Test
+    public void testIssuesAreReadLazilyFromTheBuildDirectory() {
+        JiraBuildAction action = new JiraBuildAction(build, Collections.singleton(
+                new JiraIssue("FOO-1", "tab\tand\nnewline \\ slash")));
+        action.onAttached(build);
+        action.addIssues(new HashSet<JiraIssue>(Arrays.asList(
+                new JiraIssue("FOO-1", "duplicate"), new JiraIssue("FOO-2", null))));
+        assertTrue(new File(folder.getRoot(), JiraBuildAction.ISSUES_FILE).exists());
+
+        JiraBuildAction reloaded = new JiraBuildAction(build, null);
+        assertEquals(2, reloaded.getIssues().length);
+        assertEquals("tab\tand\nnewline \\ slash", reloaded.getIssue("FOO-1").title);
+        assertNull(reloaded.getIssue("FOO-2").title);
+    }
+
+    @Test
+    public void testIssuesOfOldBuildRecordAreMigratedOnce() throws Exception {
+        JiraBuildAction action = new JiraBuildAction(build, null);
+        action.onAttached(build);
+        action.addIssues(Collections.singleton(new JiraIssue("FOO-2", "added to the file")));
+
+        // as read from a build record with the issues in it
+        JiraBuildAction old = new JiraBuildAction(null, null);
+        Field issues = JiraBuildAction.class.getDeclaredField("issues");
+        issues.setAccessible(true);
+        issues.set(old, new JiraIssue[]{new JiraIssue("FOO-1", "in the build record")});
+        old.onLoad(build);
+
+        assertEquals(2, old.getIssues().length);
+        assertNull(issues.get(old));
+        // loading a build doesn't write its record
+        verify(build, never()).save();
+
+        // until the build is saved again, the record still has the issues
+        JiraBuildAction reloaded = new JiraBuildAction(null, null);
+        issues.set(reloaded, new JiraIssue[]{new JiraIssue("FOO-1", "in the build record")});
+        reloaded.onLoad(build);
+        assertEquals(2, reloaded.getIssues().length);
+        assertEquals(2, new JiraBuildAction(build, null).getIssues().length);
+    }
+
+    @Test
+    public void testSecondActionKeepsTheIssuesOfTheFirst() throws Exception {
+        final JiraBuildAction[] attached = new JiraBuildAction[1];
+        when(build.getAction(JiraBuildAction.class)).thenAnswer(new Answer<JiraBuildAction>() {
+            public JiraBuildAction answer(InvocationOnMock invocation) {
+                return attached[0];
+            }
+        });
+        doAnswer(new Answer<Object>() {
+            public Object answer(InvocationOnMock invocation) {
+                attached[0] = (JiraBuildAction) invocation.getArguments()[0];
+                attached[0].onAttached(build);
+                return null;
+            }
+        }).when(build).addAction(Mockito.any(JiraBuildAction.class));
+
+        assertTrue(JiraBuildAction.record(build, Collections.singleton(new JiraIssue("FOO-1", "annotated"))));
+        assertFalse(JiraBuildAction.record(build, Collections.singleton(new JiraIssue("FOO-2", "updated"))));
+        assertEquals(2, attached[0].getIssues().length);
+
+        // a stray second action merges with the file, too
+        JiraBuildAction other = new JiraBuildAction(build, Collections.singleton(new JiraIssue("FOO-3", "other")));
+        other.onAttached(build);
+        assertEquals(3, new JiraBuildAction(build, null).getIssues().length);
+    }
+
+    @Test
+    public void testEscaping() {
+        String title = "a\\b\tc\nd\re";
+        assertEquals(title, JiraBuildAction.unescape(JiraBuildAction.escape(title)));
+        assertNull(JiraBuildAction.unescape(JiraBuildAction.escape(null)));
+    }
+}
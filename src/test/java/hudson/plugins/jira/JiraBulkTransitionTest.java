@@ -0,0 +1,137 @@
+package hudson.plugins.jira;
+
+import hudson.plugins.jira.remote.JiraInteractionSession;
+import hudson.plugins.jira.soap.RemoteFieldValue;
+import hudson.plugins.jira.soap.RemoteIssue;
+import hudson.plugins.jira.soap.RemotePermissionException;
+
+import com.atlassian.jira.rest.client.api.RestClientException;
+import com.google.common.base.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.rmi.RemoteException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test case for {@link JiraBulkTransition}.
+ */
+public class JiraBulkTransitionTest {
+    private static final String JQL = "project = JENKINS";
+    private static final String ACTION = "Resolve Issue";
+
+    private JiraInteractionSession session;
+    private ByteArrayOutputStream out;
+    private PrintStream console;
+
+    private static RemoteIssue[] issues(int from, int count) {
+        RemoteIssue[] issues = new RemoteIssue[count];
+        for (int i = 0; i < count; i++) {
+            issues[i] = new RemoteIssue();
+            issues[i].setKey("JENKINS-" + (from + i));
+            issues[i].setStatus("1");
+        }
+        return issues;
+    }
+
+    @Before
+    public void before() throws RemoteException {
+        session = mock(JiraInteractionSession.class);
+        out = new ByteArrayOutputStream();
+        console = new PrintStream(out, true);
+        when(session.getActionIdForIssue(anyString(), eq(ACTION))).thenReturn("5");
+        when(session.progressWorkflowAction(anyString(), eq("5"), Matchers.any(RemoteFieldValue[].class))).thenReturn("Resolved");
+    }
+
+    @Test
+    public void everyPageIsUpdated() throws Exception {
+        int pageSize = JiraBulkTransition.PAGE_SIZE;
+        when(session.getIssuesFromJqlSearch(JQL, 0, pageSize)).thenReturn(issues(0, pageSize));
+        when(session.getIssuesFromJqlSearch(JQL, pageSize, pageSize)).thenReturn(issues(pageSize, 3));
+
+        boolean success = new JiraBulkTransition(session, ACTION, "fixed", false, console).run(JQL);
+
+        assertThat(success, is(true));
+        verify(session, times(pageSize + 3)).addComment(anyString(), eq("fixed"), anyString(), anyString());
+        verify(session).progressWorkflowAction(eq("JENKINS-" + (pageSize + 2)), eq("5"), Matchers.any(RemoteFieldValue[].class));
+        assertThat(out.toString(), containsString((pageSize + 3) + " transitioned, 0 only commented, 0 failed"));
+    }
+
+    @Test
+    public void dryRunOnlyChecks() throws Exception {
+        when(session.getIssuesFromJqlSearch(JQL, 0, JiraBulkTransition.PAGE_SIZE)).thenReturn(issues(1, 2));
+        when(session.getActionIdForIssue("JENKINS-2", ACTION)).thenReturn(null);
+
+        boolean success = new JiraBulkTransition(session, ACTION, "fixed", true, console).run(JQL);
+
+        assertThat(success, is(false));
+        verify(session, never()).addComment(anyString(), anyString(), anyString(), anyString());
+        verify(session, never()).progressWorkflowAction(anyString(), anyString(), Matchers.any(RemoteFieldValue[].class));
+        assertThat(out.toString(), containsString("1 would be updated, 1 would fail"));
+    }
+
+    @Test
+    public void transientFailureIsRetried() throws Exception {
+        when(session.getIssuesFromJqlSearch(JQL, 0, JiraBulkTransition.PAGE_SIZE)).thenReturn(issues(1, 1));
+        when(session.progressWorkflowAction(eq("JENKINS-1"), eq("5"), Matchers.any(RemoteFieldValue[].class)))
+                .thenThrow(new RemoteException("Gave up after 30 seconds")).thenReturn("Resolved");
+
+        boolean success = new JiraBulkTransition(session, ACTION, null, false, console).run(JQL);
+
+        assertThat(success, is(true));
+        assertThat(out.toString(), containsString("1 call(s) retried"));
+    }
+
+    @Test
+    public void transitionWhichWentThroughIsNotRetried() throws Exception {
+        when(session.getIssuesFromJqlSearch(JQL, 0, JiraBulkTransition.PAGE_SIZE)).thenReturn(issues(1, 1));
+        when(session.progressWorkflowAction(eq("JENKINS-1"), eq("5"), Matchers.any(RemoteFieldValue[].class)))
+                .thenThrow(new RemoteException("Gave up after 30 seconds"));
+        RemoteIssue resolved = issues(1, 1)[0];
+        resolved.setStatus("5");
+        when(session.getIssueByKey("JENKINS-1")).thenReturn(resolved);
+
+        boolean success = new JiraBulkTransition(session, ACTION, null, false, console).run(JQL);
+
+        assertThat(success, is(true));
+        verify(session, times(1)).progressWorkflowAction(anyString(), anyString(), Matchers.any(RemoteFieldValue[].class));
+        assertThat(out.toString(), containsString("0 failed, 0 call(s) retried"));
+    }
+
+    @Test
+    public void restErrorsAreClassifiedByStatus() {
+        assertThat(JiraBulkTransition.isTransient(new RemoteException("Gave up after 30 seconds")), is(true));
+        assertThat(JiraBulkTransition.isTransient(restFailure(503)), is(true));
+        assertThat(JiraBulkTransition.isTransient(restFailure(400)), is(false));
+        assertThat(JiraBulkTransition.isTransient(restFailure(401)), is(false));
+        assertThat(JiraBulkTransition.isTransient(restFailure(403)), is(false));
+    }
+
+    private static RemoteException restFailure(int status) {
+        RestClientException answer = mock(RestClientException.class);
+        when(answer.getStatusCode()).thenReturn(Optional.of(status));
+        return new RemoteException("Failed to progress JENKINS-1", answer);
+    }
+
+    @Test
+    public void refusedTransitionIsNotRetried() throws Exception {
+        when(session.getIssuesFromJqlSearch(JQL, 0, JiraBulkTransition.PAGE_SIZE)).thenReturn(issues(1, 1));
+        when(session.progressWorkflowAction(eq("JENKINS-1"), eq("5"), Matchers.any(RemoteFieldValue[].class)))
+                .thenThrow(new RemotePermissionException());
+
+        boolean success = new JiraBulkTransition(session, ACTION, null, false, console).run(JQL);
+
+        assertThat(success, is(false));
+        verify(session, times(1)).progressWorkflowAction(anyString(), anyString(), Matchers.any(RemoteFieldValue[].class));
+        assertThat(out.toString(), containsString("1 failed, 0 call(s) retried"));
+    }
+}
@@ -0,0 +1,98 @@
+package hudson.plugins.jira;
+
+import hudson.plugins.jira.remote.JiraInteractionSession;
+import hudson.plugins.jira.soap.RemoteFieldValue;
+import hudson.plugins.jira.soap.RemoteIssue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.rmi.RemoteException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test case for {@link JiraCallStats}.
+ */
+public class JiraCallStatsTest {
+    private JiraCallStats stats;
+    private JiraInteractionSession session;
+
+    @Before
+    public void before() throws RemoteException {
+        stats = new JiraCallStats();
+        JiraInteractionSession real = mock(JiraInteractionSession.class);
+        when(real.existsIssue("JENKINS-1")).thenReturn(true);
+        when(real.getIssue("JENKINS-1")).thenAnswer(new Answer<RemoteIssue>() {
+            public RemoteIssue answer(InvocationOnMock invocation) throws InterruptedException {
+                Thread.sleep(20);
+                return new RemoteIssue();
+            }
+        });
+        when(real.progressWorkflowAction(eq("JENKINS-1"), eq("5"), Matchers.any(RemoteFieldValue[].class)))
+                .thenThrow(new RemoteException("timed out")).thenReturn("Resolved");
+        session = stats.instrument(real);
+    }
+
+    @Test
+    public void everyCallIsRecorded() throws Exception {
+        assertThat(session.existsIssue("JENKINS-1"), is(true));
+        assertThat(session.getIssue("JENKINS-1"), notNullValue());
+        try {
+            session.progressWorkflowAction("JENKINS-1", "5", null);
+            fail();
+        } catch (RemoteException e) {
+            assertThat(e.getMessage(), equalTo("timed out"));
+        }
+        assertThat(session.progressWorkflowAction("JENKINS-1", "5", null), equalTo("Resolved"));
+
+        assertThat(stats.getCalls(), equalTo(4));
+        assertThat(stats.getFailures(), equalTo(1));
+        assertThat(stats.getRetries(), equalTo(1));
+        assertThat(stats.getTotalMillis(), greaterThanOrEqualTo(20L));
+        assertThat(stats.getOperations(), hasSize(3));
+
+        JiraCallStats.Call slowest = stats.getSlowestCalls().get(0);
+        assertThat(slowest.getOperation(), equalTo("getIssue"));
+        assertThat(slowest.getSubject(), equalTo("JENKINS-1"));
+        int failed = 0;
+        for (JiraCallStats.Call call : stats.getSlowestCalls()) {
+            if ("RemoteException".equals(call.getFailure())) {
+                failed++;
+            }
+        }
+        assertThat(failed, equalTo(1));
+    }
+
+    @Test
+    public void stepsAddUp() throws Exception {
+        session.getIssue("JENKINS-1");
+        JiraCallStats build = new JiraCallStats();
+        build.add(stats);
+        build.add(stats);
+
+        assertThat(build.getCalls(), equalTo(2));
+        assertThat(build.getOperations().get(0).getCalls(), equalTo(2));
+        assertThat(build.getSlowestCalls(), hasSize(2));
+    }
+
+    @Test
+    public void summaryIsOnlyPrintedAfterCalls() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        stats.printSummary(new PrintStream(out, true));
+        assertThat(out.size(), equalTo(0));
+
+        session.getIssue("JENKINS-1");
+        stats.printSummary(new PrintStream(out, true));
+        assertThat(out.toString(), containsString("1 JIRA call(s)"));
+        assertThat(out.toString(), containsString("getIssue(JENKINS-1)"));
+    }
+}
@@ -20,6 +20,7 @@ import javax.xml.rpc.ServiceException;
 import java.io.IOException;
 import java.net.URL;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.regex.Pattern;
 
 import static org.mockito.Mockito.*;
@@ -231,4 +232,53 @@ public class JiraChangeLogAnnotatorTest {
         Assert.assertTrue(text.toString(false).contains("<a href='http://altdummy/DUMMY-1'"));
     }
 
+    /**
+     * The markup of a completed build is computed once, until the sites are reconfigured.
+     */
+    @Test
+    public void testCompletedBuildIsAnnotatedOnce() throws Exception {
+        FreeStyleBuild b = mock(FreeStyleBuild.class);
+        when(b.getAction(JiraBuildAction.class)).thenReturn(new JiraBuildAction(b, Collections.singleton(new JiraIssue("DUMMY-1", TITLE))));
+
+        JiraChangeLogAnnotator annotator = spy(new JiraChangeLogAnnotator());
+        doReturn(site).when(annotator).getSiteForProject((AbstractProject<?, ?>) Mockito.any());
+        doReturn("testCompletedBuildIsAnnotatedOnce#1").when(annotator).getBuildKey(b);
+
+        MarkupText first = new MarkupText("marking up DUMMY-1.");
+        annotator.annotate(b, null, first);
+        MarkupText second = new MarkupText("marking up DUMMY-1.");
+        annotator.annotate(b, null, second);
+
+        Assert.assertEquals(first.toString(false), second.toString(false));
+        Assert.assertTrue(second.toString(false).contains(TITLE));
+        verify(site, times(1)).getUrl("DUMMY-1");
+
+        JiraChangeLogAnnotator.invalidateAnnotations();
+        annotator.annotate(b, null, new MarkupText("marking up DUMMY-1."));
+        verify(site, times(2)).getUrl("DUMMY-1");
+    }
+
+    /**
+     * An issue no site is known to have isn't settled while some site couldn't tell its projects.
+     */
+    @Test
+    public void testUnknownIssueIsAnnotatedAgainUntilAllProjectsAreKnown() throws Exception {
+        FreeStyleBuild b = mock(FreeStyleBuild.class);
+        when(site.hasProjectKeys()).thenCallRealMethod();
+
+        JiraChangeLogAnnotator annotator = spy(new JiraChangeLogAnnotator());
+        doReturn(site).when(annotator).getSiteForProject((AbstractProject<?, ?>) Mockito.any());
+        doReturn("testUnknownIssueIsAnnotatedAgainUntilAllProjectsAreKnown#1").when(annotator).getBuildKey(b);
+        doReturn(JiraSiteRouter.NONE).when(annotator).getRouter();
+
+        annotator.annotate(b, null, new MarkupText("fixed OTHER-1"));
+        annotator.annotate(b, null, new MarkupText("fixed OTHER-1"));
+        verify(annotator, times(2)).getRouter();
+
+        doReturn(new JiraSiteRouter(new HashMap<String, JiraSite>(), true)).when(annotator).getRouter();
+        annotator.annotate(b, null, new MarkupText("fixed OTHER-1"));
+        annotator.annotate(b, null, new MarkupText("fixed OTHER-1"));
+        verify(annotator, times(3)).getRouter();
+    }
+
 }
@@ -0,0 +1,120 @@
+package hudson.plugins.jira;
+
+import hudson.model.AbstractBuild;
+import hudson.model.User;
+import hudson.scm.ChangeLogSet;
+import hudson.scm.ChangeLogSet.Entry;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * Test case for {@link JiraChangeLogIndex}.
+ */
+@SuppressWarnings("unchecked")
+public class JiraChangeLogIndexTest {
+
+    private static class MockEntry extends Entry {
+
+        private final String msg;
+
+        public MockEntry(String msg) {
+            this.msg = msg;
+        }
+
+        @Override
+        public Collection<String> getAffectedPaths() {
+            return null;
+        }
+
+        @Override
+        public User getAuthor() {
+            return null;
+        }
+
+        @Override
+        public String getMsg() {
+            return this.msg;
+        }
+    }
+
+    private static ChangeLogSet<Entry> changeLog(List<Entry> entries) {
+        ChangeLogSet<Entry> changeLogSet = mock(ChangeLogSet.class);
+        when(changeLogSet.iterator()).thenReturn(entries.iterator(), entries.iterator(), entries.iterator());
+        return changeLogSet;
+    }
+
+    @Test
+    public void testIndexKeysAndOffsets() {
+        Entry first = new MockEntry("Fixed foo-12 and BAR-3.");
+        Entry second = new MockEntry("no issue here");
+        List<Entry> entries = Arrays.asList(first, second);
+
+        JiraChangeLogIndex index = JiraChangeLogIndex.create(changeLog(entries), JiraSite.DEFAULT_ISSUE_PATTERN);
+
+        Assert.assertEquals(Arrays.asList("FOO-12", "BAR-3"), Arrays.asList(index.getIssueKeys().toArray()));
+
+        JiraChangeLogIndex.EntryIssues issues = index.getEntry(changeLog(entries), first);
+        Assert.assertEquals(2, issues.size());
+        Assert.assertEquals("FOO-12", issues.getKey(0));
+        Assert.assertEquals("foo-12", first.getMsg().substring(issues.getStart(0), issues.getEnd(0)));
+        Assert.assertEquals("BAR-3", first.getMsg().substring(issues.getStart(1), issues.getEnd(1)));
+
+        Assert.assertEquals(0, index.getEntry(changeLog(entries), second).size());
+        Assert.assertNull(index.getEntry(changeLog(entries), new MockEntry("Fixed foo-12 and BAR-3.")));
+    }
+
+    @Test
+    public void testPatternWithoutGroupIsNotIndexed() {
+        Pattern pattern = Pattern.compile("[a-zA-Z][a-zA-Z0-9_]+-[1-9][0-9]*");
+        List<Entry> entries = Arrays.<Entry>asList(new MockEntry("Fixed FOO-1"));
+
+        Assert.assertNull(JiraChangeLogIndex.create(changeLog(entries), pattern));
+    }
+
+    @Test
+    public void testIndexIsBoundToPattern() {
+        List<Entry> entries = Arrays.<Entry>asList(new MockEntry("Fixed FOO-1"));
+        JiraChangeLogIndex index = JiraChangeLogIndex.create(changeLog(entries), JiraSite.DEFAULT_ISSUE_PATTERN);
+
+        Assert.assertTrue(index.isBuiltWith(JiraSite.DEFAULT_ISSUE_PATTERN));
+        Assert.assertFalse(index.isBuiltWith(Pattern.compile("\\[(\\w+-\\d+)\\]")));
+    }
+
+    @Test
+    public void testChangedChangeLogIsNotMatched() {
+        Entry entry = new MockEntry("Fixed FOO-1");
+        JiraChangeLogIndex index = JiraChangeLogIndex.create(changeLog(Arrays.asList(entry)), JiraSite.DEFAULT_ISSUE_PATTERN);
+
+        List<Entry> reloaded = Arrays.asList(entry, new MockEntry("Fixed FOO-2"));
+        Assert.assertNull(index.getEntry(changeLog(reloaded), entry));
+    }
+
+    @Test
+    public void testBuildIsIndexedAndSavedOnce() throws Exception {
+        AbstractBuild build = mock(AbstractBuild.class);
+        ChangeLogSet<Entry> changeLog = changeLog(Arrays.<Entry>asList(new MockEntry("Fixed FOO-1")));
+        when(build.getChangeSet()).thenReturn(changeLog);
+
+        JiraChangeLogIndex.index(build, JiraSite.DEFAULT_ISSUE_PATTERN, true);
+
+        ArgumentCaptor<JiraChangeLogIndex> index = ArgumentCaptor.forClass(JiraChangeLogIndex.class);
+        verify(build).addAction(index.capture());
+        verify(build).save();
+        Assert.assertEquals(Arrays.asList("FOO-1"), Arrays.asList(index.getValue().getIssueKeys().toArray()));
+
+        when(build.getAction(JiraChangeLogIndex.class)).thenReturn(index.getValue());
+        JiraChangeLogIndex.index(build, JiraSite.DEFAULT_ISSUE_PATTERN, true);
+
+        verify(build, times(1)).getChangeSet();
+        verify(build, times(1)).save();
+    }
+}
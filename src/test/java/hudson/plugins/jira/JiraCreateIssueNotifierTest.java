@@ -0,0 +1,93 @@
+package hudson.plugins.jira;
+
+import hudson.EnvVars;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.BuildListener;
+import hudson.model.Result;
+import hudson.model.TaskListener;
+import hudson.plugins.jira.remote.JiraInteractionSession;
+import hudson.plugins.jira.soap.RemoteComponent;
+import hudson.plugins.jira.soap.RemoteIssue;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * Test case for {@link JiraCreateIssueNotifier}.
+ */
+@SuppressWarnings("unchecked")
+public class JiraCreateIssueNotifierTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private AbstractProject project;
+    private JiraInteractionSession session;
+    private BuildListener listener;
+    private JiraCreateIssueState state;
+
+    private JiraCreateIssueNotifier notifier = new JiraCreateIssueNotifier("FOO", "", "", "", false) {
+        @Override
+        JiraCreateIssueState getState(AbstractProject<?, ?> project) {
+            return state;
+        }
+    };
+
+    @Before
+    public void createJob() throws Exception {
+        session = mock(JiraInteractionSession.class);
+        JiraSite site = mock(JiraSite.class);
+        when(site.getSession()).thenReturn(session);
+        JiraProjectProperty property = mock(JiraProjectProperty.class);
+        when(property.getSite()).thenReturn(site);
+        project = mock(AbstractProject.class);
+        when(project.getProperty(JiraProjectProperty.class)).thenReturn(property);
+
+        listener = mock(BuildListener.class);
+        when(listener.getLogger()).thenReturn(new PrintStream(new ByteArrayOutputStream()));
+        state = JiraCreateIssueState.of(tmp.getRoot());
+    }
+
+    private AbstractBuild build(int number, Result result, AbstractBuild previous, AbstractBuild previousCompleted)
+            throws Exception {
+        EnvVars env = new EnvVars();
+        env.put("BUILD_NUMBER", String.valueOf(number));
+        env.put("BUILD_URL", "http://jenkins/job/app/" + number + "/");
+        AbstractBuild build = mock(AbstractBuild.class);
+        when(build.getProject()).thenReturn(project);
+        when(build.getNumber()).thenReturn(number);
+        when(build.getResult()).thenReturn(result);
+        when(build.getPreviousBuild()).thenReturn(previous);
+        when(build.getPreviousCompletedBuild()).thenReturn(previousCompleted);
+        when(build.getEnvironment(TaskListener.NULL)).thenReturn(env);
+        return build;
+    }
+
+    @Test
+    public void failureWhileTheBuildBeforeIsRunningCommentsOnTheIssue() throws Exception {
+        RemoteIssue issue = new RemoteIssue();
+        issue.setKey("FOO-1");
+        issue.setStatus("1");
+        when(session.getIssueByKey("FOO-1")).thenReturn(issue);
+        state.setIssueKey("FOO-1", 1);
+
+        AbstractBuild first = build(1, Result.FAILURE, null, null);
+        AbstractBuild running = build(2, null, first, first);
+        AbstractBuild failed = build(3, Result.FAILURE, running, first);
+
+        notifier.perform(failed, null, listener);
+
+        verify(session).addCommentWithoutConstrains(Mockito.eq("FOO-1"), Mockito.contains("Job is still failing"));
+        verify(session, never()).createIssue(Mockito.anyString(), Mockito.anyString(), Mockito.anyString(),
+                Mockito.any(RemoteComponent[].class), Mockito.anyString());
+    }
+}
@@ -0,0 +1,224 @@
+package hudson.plugins.jira;
+
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Result;
+import hudson.model.User;
+import hudson.scm.ChangeLogSet;
+import hudson.scm.ChangeLogSet.Entry;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Matchers;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test case for {@link JiraIssueBuildIndex}.
+ */
+@SuppressWarnings("unchecked")
+public class JiraIssueBuildIndexTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File dir;
+    private JiraIssueBuildIndex index;
+
+    private static class MockEntry extends Entry {
+        private final String msg;
+
+        MockEntry(String msg) {
+            this.msg = msg;
+        }
+
+        @Override
+        public Collection<String> getAffectedPaths() {
+            return null;
+        }
+
+        @Override
+        public User getAuthor() {
+            return null;
+        }
+
+        @Override
+        public String getMsg() {
+            return msg;
+        }
+    }
+
+    private static AbstractProject job(String name) {
+        AbstractProject job = mock(AbstractProject.class);
+        when(job.getFullName()).thenReturn(name);
+        return job;
+    }
+
+    private static AbstractBuild build(AbstractProject job, int number, String msg) {
+        List<Entry> entries = Arrays.<Entry>asList(new MockEntry(msg));
+        ChangeLogSet<Entry> changeLog = mock(ChangeLogSet.class);
+        when(changeLog.iterator()).thenReturn(entries.iterator());
+
+        AbstractBuild build = mock(AbstractBuild.class);
+        when(build.getProject()).thenReturn(job);
+        when(build.getNumber()).thenReturn(number);
+        when(build.getResult()).thenReturn(Result.SUCCESS);
+        when(build.getAction(JiraChangeLogIndex.class))
+                .thenReturn(JiraChangeLogIndex.create(changeLog, JiraSite.DEFAULT_ISSUE_PATTERN));
+        return build;
+    }
+
+    private static List<String> refs(List<JiraIssueBuildIndex.BuildRef> builds) {
+        List<String> refs = new ArrayList<String>();
+        for (JiraIssueBuildIndex.BuildRef build : builds) {
+            refs.add(build.job + "#" + build.number);
+        }
+        return refs;
+    }
+
+    @Before
+    public void before() {
+        dir = new File(tmp.getRoot(), "jira-issue-builds");
+        index = new JiraIssueBuildIndex(dir);
+    }
+
+    @Test
+    public void buildsAreFoundOldestFirst() throws Exception {
+        AbstractProject job = job("folder/app");
+        index.add(build(job, 1, "FOO-1 started"));
+        index.add(build(job, 2, "FOO-1 done, and BAR-7"));
+
+        assertThat(refs(index.getBuilds("foo-1")), contains("folder/app#1", "folder/app#2"));
+        assertThat(refs(index.getBuilds("BAR-7")), contains("folder/app#2"));
+        assertThat(index.getBuilds("FOO-2"), empty());
+    }
+
+    @Test
+    public void unknownProjectIsNotCreated() throws Exception {
+        assertThat(index.getBuilds("NOPE-1"), empty());
+        index.flush();
+        assertThat(new File(dir, "NOPE.xml").exists(), is(false));
+    }
+
+    @Test
+    public void removedBuildIsForgotten() throws Exception {
+        AbstractProject job = job("app");
+        AbstractBuild first = build(job, 1, "FOO-1");
+        index.add(first);
+        index.add(build(job, 2, "FOO-1"));
+
+        index.remove(first);
+
+        assertThat(refs(index.getBuilds("FOO-1")), contains("app#2"));
+    }
+
+    @Test
+    public void indexIsReadBackFromDisk() throws Exception {
+        index.add(build(job("app"), 1, "FOO-1"));
+        index.flush();
+
+        JiraIssueBuildIndex reloaded = new JiraIssueBuildIndex(dir);
+        assertThat(refs(reloaded.getBuilds("FOO-1")), contains("app#1"));
+    }
+
+    @Test
+    public void rebuildKeepsChangesMadeMeanwhile() throws Exception {
+        final AbstractProject job = job("app");
+        final AbstractBuild scanned = build(job, 1, "FOO-1");
+        final AbstractBuild completed = build(job, 2, "FOO-1");
+        index.add(build(job("gone"), 5, "FOO-1"));
+        index.flush();
+
+        index = new JiraIssueBuildIndex(dir) {
+            @Override
+            List<AbstractBuild<?, ?>> buildsOf(AbstractProject<?, ?> project) {
+                // a build completes while the jobs are scanned
+                add(completed);
+                return Collections.<AbstractBuild<?, ?>>singletonList(scanned);
+            }
+
+            @Override
+            Pattern patternOf(AbstractProject<?, ?> project) {
+                return JiraSite.DEFAULT_ISSUE_PATTERN;
+            }
+        };
+
+        assertThat(index.rebuild(Arrays.asList(job)), equalTo(1));
+
+        assertThat(refs(index.getBuilds("FOO-1")), contains("app#1", "app#2"));
+        index.flush();
+        assertThat(refs(new JiraIssueBuildIndex(dir).getBuilds("FOO-1")), contains("app#1", "app#2"));
+    }
+
+    @Test
+    public void rebuildIndexesOldBuilds() throws Exception {
+        AbstractProject job = job("app");
+        final AbstractBuild old = mock(AbstractBuild.class);
+        List<Entry> entries = Arrays.<Entry>asList(new MockEntry("FOO-3 from before the changelog was indexed"));
+        ChangeLogSet<Entry> changeLog = mock(ChangeLogSet.class);
+        when(changeLog.iterator()).thenReturn(entries.iterator());
+        when(old.getChangeSet()).thenReturn(changeLog);
+        when(old.getProject()).thenReturn(job);
+        when(old.getNumber()).thenReturn(4);
+        when(old.getResult()).thenReturn(Result.SUCCESS);
+        final JiraChangeLogIndex[] added = new JiraChangeLogIndex[1];
+        doAnswer(new Answer<Object>() {
+            public Object answer(InvocationOnMock invocation) {
+                added[0] = (JiraChangeLogIndex) invocation.getArguments()[0];
+                return null;
+            }
+        }).when(old).addAction(Matchers.any(JiraChangeLogIndex.class));
+        when(old.getAction(JiraChangeLogIndex.class)).thenAnswer(new Answer<JiraChangeLogIndex>() {
+            public JiraChangeLogIndex answer(InvocationOnMock invocation) {
+                return added[0];
+            }
+        });
+
+        index = new JiraIssueBuildIndex(dir) {
+            @Override
+            List<AbstractBuild<?, ?>> buildsOf(AbstractProject<?, ?> project) {
+                return Collections.<AbstractBuild<?, ?>>singletonList(old);
+            }
+
+            @Override
+            Pattern patternOf(AbstractProject<?, ?> project) {
+                return JiraSite.DEFAULT_ISSUE_PATTERN;
+            }
+        };
+
+        assertThat(index.rebuild(Arrays.asList(job)), equalTo(1));
+
+        assertThat(refs(index.getBuilds("FOO-3")), contains("app#4"));
+        verify(old).save();
+    }
+
+    @Test
+    public void buildsFollowTheirJob() throws Exception {
+        index.add(build(job("folder/app"), 1, "FOO-1"));
+        index.add(build(job("folder/other"), 1, "FOO-1"));
+        index.add(build(job("lib"), 3, "BAR-1"));
+        index.flush();
+
+        index.moveJob("folder", "renamed");
+        assertThat(refs(index.getBuilds("FOO-1")), contains("renamed/app#1", "renamed/other#1"));
+
+        // a shard which isn't loaded is updated on disk
+        JiraIssueBuildIndex other = new JiraIssueBuildIndex(dir);
+        other.moveJob("lib", null);
+        assertThat(other.getBuilds("BAR-1"), empty());
+    }
+}
@@ -0,0 +1,42 @@
+package hudson.plugins.jira;
+
+import com.atlassian.jira.rest.client.api.RestClientException;
+import com.google.common.base.Optional;
+
+import hudson.plugins.jira.remote.JiraInteractionSession;
+
+import org.junit.Test;
+
+import java.rmi.RemoteException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test case for the lookups of {@link JiraMailAddressResolver}.
+ */
+public class JiraMailAddressResolverTest {
+
+    private static JiraSite siteAnswering(int status) throws Exception {
+        RestClientException answer = mock(RestClientException.class);
+        when(answer.getStatusCode()).thenReturn(Optional.of(status));
+        JiraInteractionSession session = mock(JiraInteractionSession.class);
+        when(session.getEmailForUsername(anyString())).thenThrow(new RemoteException("Failed to get the user", answer));
+        JiraSite site = mock(JiraSite.class);
+        when(site.getSession()).thenReturn(session);
+        return site;
+    }
+
+    @Test
+    public void userUnknownToJiraIsRemembered() throws Exception {
+        assertThat(JiraMailAddressResolver.resolve("nobody", new JiraSite[]{siteAnswering(404)}), nullValue());
+        assertThat(JiraMailAddressResolver.UNKNOWN_USERS.getIfPresent("nobody"), notNullValue());
+    }
+
+    @Test
+    public void userIsNotTakenForUnknownWhenJiraFails() throws Exception {
+        assertThat(JiraMailAddressResolver.resolve("somebody", new JiraSite[]{siteAnswering(503)}), nullValue());
+        assertThat(JiraMailAddressResolver.UNKNOWN_USERS.getIfPresent("somebody"), nullValue());
+    }
+}
@@ -0,0 +1,95 @@
+package hudson.plugins.jira;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * Test case for {@link JiraSiteRegistry}.
+ */
+public class JiraSiteRegistryTest {
+
+    private static JiraSite site(String url) throws Exception {
+        return new JiraSite(new URL(url), null, false, false, null, false, null, "", "", false);
+    }
+
+    @Test
+    public void testLookupByName() throws Exception {
+        JiraSite first = site("http://first.example.com/");
+        JiraSite second = site("http://second.example.com");
+        JiraSiteRegistry registry = new JiraSiteRegistry(Arrays.asList(first, second));
+
+        Assert.assertSame(first, registry.get("http://first.example.com/"));
+        // names are normalized to end with '/'
+        Assert.assertSame(second, registry.get("http://second.example.com/"));
+        Assert.assertNull(registry.get("http://third.example.com/"));
+        Assert.assertNull(registry.get(null));
+        Assert.assertSame(first, registry.getDefault());
+        Assert.assertEquals(2, registry.size());
+    }
+
+    @Test
+    public void testFirstSiteWithSameNameWins() throws Exception {
+        JiraSite first = site("http://jira.example.com/");
+        JiraSite duplicate = site("http://jira.example.com/");
+        JiraSiteRegistry registry = new JiraSiteRegistry(Arrays.asList(first, duplicate));
+
+        Assert.assertSame(first, registry.get("http://jira.example.com/"));
+    }
+
+    @Test
+    public void testEmptyRegistry() {
+        JiraSiteRegistry registry = new JiraSiteRegistry(Collections.<JiraSite>emptyList());
+
+        Assert.assertNull(registry.getDefault());
+        Assert.assertEquals(0, registry.getSites().length);
+    }
+
+    @Test
+    public void testSnapshotsAreNotShared() throws Exception {
+        JiraSiteRegistry registry = new JiraSiteRegistry(Arrays.asList(site("http://jira.example.com/")));
+        registry.getSites()[0] = null;
+        Assert.assertNotNull(registry.getSites()[0]);
+
+        JiraSiteRegistry newer = new JiraSiteRegistry(Collections.<JiraSite>emptyList());
+        Assert.assertTrue(newer.getGeneration() > registry.getGeneration());
+    }
+
+    @Test
+    public void testRouterIsBuiltInTheBackground() throws Exception {
+        final CountDownLatch answer = new CountDownLatch(1);
+        JiraSite slow = mock(JiraSite.class);
+        when(slow.getProjectKeys()).thenAnswer(new Answer<Set<String>>() {
+            public Set<String> answer(InvocationOnMock invocation) throws Throwable {
+                answer.await();
+                return Collections.singleton("JENKINS");
+            }
+        });
+        when(slow.hasProjectKeys()).thenReturn(true);
+        JiraSite other = mock(JiraSite.class);
+        when(other.getProjectKeys()).thenReturn(Collections.singleton("CORE"));
+        when(other.hasProjectKeys()).thenReturn(true);
+        JiraSiteRegistry registry = new JiraSiteRegistry(Arrays.asList(slow, other));
+
+        // doesn't wait for the slow site
+        Assert.assertNull(registry.getRouter().route("JENKINS-1"));
+        Assert.assertFalse(registry.getRouter().isComplete());
+
+        answer.countDown();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!registry.getRouter().isComplete() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertSame(slow, registry.getRouter().route("JENKINS-1"));
+        Assert.assertSame(other, registry.getRouter().route("CORE-2"));
+    }
+}
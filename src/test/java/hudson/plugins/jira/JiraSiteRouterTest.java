@@ -0,0 +1,109 @@
+package hudson.plugins.jira;
+
+import com.google.common.collect.Sets;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * Test case for {@link JiraSiteRouter}.
+ */
+public class JiraSiteRouterTest {
+    private JiraSite first;
+    private JiraSite second;
+
+    private static JiraSite site(String... projectKeys) {
+        JiraSite site = mock(JiraSite.class);
+        when(site.getProjectKeys()).thenReturn(Sets.newHashSet(projectKeys));
+        when(site.hasProjectKeys()).thenReturn(true);
+        when(site.existsIssue(Mockito.anyString())).thenCallRealMethod();
+        return site;
+    }
+
+    private static JiraSite unreachableSite() {
+        JiraSite site = mock(JiraSite.class);
+        when(site.getProjectKeys()).thenReturn(Collections.<String>emptySet());
+        return site;
+    }
+
+    @Before
+    public void before() {
+        first = site("JENKINS", "CORE");
+        second = site("HUDSON", "CORE");
+    }
+
+    @Test
+    public void testRouteByProjectKey() {
+        JiraSiteRouter router = JiraSiteRouter.build(new JiraSite[]{first, second});
+
+        Assert.assertSame(first, router.route("JENKINS-1"));
+        Assert.assertSame(second, router.route("hudson-2"));
+        // the first configured site wins
+        Assert.assertSame(first, router.route("CORE-3"));
+        Assert.assertNull(router.route("UTF-8"));
+        Assert.assertNull(router.route("nodash"));
+    }
+
+    @Test
+    public void testPreferredSiteKeepsItsAndUnknownIssues() {
+        JiraSiteRouter router = JiraSiteRouter.build(new JiraSite[]{first, second});
+
+        Assert.assertSame(second, router.route("CORE-3", second));
+        Assert.assertSame(first, router.route("JENKINS-1", second));
+        Assert.assertSame(second, router.route("UTF-8", second));
+    }
+
+    @Test
+    public void testPartition() {
+        JiraSiteRouter router = JiraSiteRouter.build(new JiraSite[]{first, second});
+
+        Map<JiraSite, Set<String>> keysBySite = router.partition(
+                Arrays.asList("HUDSON-1", "JENKINS-2", "UTF-8", "CORE-3"), second);
+
+        Iterator<Map.Entry<JiraSite, Set<String>>> it = keysBySite.entrySet().iterator();
+        Map.Entry<JiraSite, Set<String>> preferred = it.next();
+        Assert.assertSame(second, preferred.getKey());
+        Assert.assertEquals(Sets.newHashSet("HUDSON-1", "UTF-8", "CORE-3"), preferred.getValue());
+        Map.Entry<JiraSite, Set<String>> other = it.next();
+        Assert.assertSame(first, other.getKey());
+        Assert.assertEquals(Collections.singleton("JENKINS-2"), other.getValue());
+        Assert.assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void testUnreachableSiteMakesRouterStaleLater() {
+        JiraSite unreachable = unreachableSite();
+        JiraSiteRouter router = JiraSiteRouter.build(new JiraSite[]{first, unreachable});
+
+        Assert.assertSame(first, router.route("JENKINS-1"));
+        Assert.assertFalse(router.isComplete());
+        // only replaced after a while, not on every lookup
+        Assert.assertFalse(router.isStale());
+    }
+
+    @Test
+    public void testSiteWithoutProjectsIsNotUnreachable() {
+        JiraSiteRouter router = JiraSiteRouter.build(new JiraSite[]{first, site()});
+
+        Assert.assertTrue(router.isComplete());
+    }
+
+    @Test
+    public void testSingleSiteNeedsNoProjectKeys() {
+        JiraSiteRouter router = JiraSiteRouter.build(new JiraSite[]{first});
+        verify(first, never()).getProjectKeys();
+
+        Assert.assertNull(router.route("JENKINS-1"));
+        Assert.assertSame(first, router.route("JENKINS-1", first));
+    }
+}
@@ -0,0 +1,76 @@
+package hudson.plugins.jira;
+
+import hudson.plugins.jira.remote.JiraAsyncSession;
+import hudson.plugins.jira.remote.JiraInteractionSession;
+import hudson.plugins.jira.soap.RemoteIssueType;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.net.URL;
+
+import com.google.common.util.concurrent.Futures;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test case for the sessions of {@link JiraSite}.
+ */
+public class JiraSiteTest {
+
+    private static JiraSite site(String credentialsId) throws Exception {
+        return new JiraSite(new URL("http://jira.example.com/"), null, false, false, null, false,
+                credentialsId, null, null, false, 0, 0, 0, 0);
+    }
+
+    private static void setSession(JiraSite site, JiraInteractionSession session) throws Exception {
+        Field created = JiraSite.class.getDeclaredField("jiraSessionCreated");
+        created.setAccessible(true);
+        created.setLong(site, System.currentTimeMillis());
+        Field field = JiraSite.class.getDeclaredField("jiraSession");
+        field.setAccessible(true);
+        field.set(site, session);
+    }
+
+    @Test
+    public void unchangedSiteKeepsItsSession() throws Exception {
+        JiraInteractionSession session = mock(JiraInteractionSession.class);
+        JiraSite replaced = site("jira-user");
+        setSession(replaced, session);
+        JiraSite saved = site("jira-user");
+
+        assertThat(saved.takeOver(replaced), is(true));
+
+        assertThat(saved.getSession(), sameInstance(session));
+        // builds still holding the replaced site use the same session
+        assertThat(replaced.getSession(), sameInstance(session));
+        assertThat(replaced.isDestroyed(), is(false));
+    }
+
+    @Test
+    public void siteConnectingDifferentlyDoesNotTakeOver() throws Exception {
+        JiraSite replaced = site("jira-user");
+        setSession(replaced, mock(JiraInteractionSession.class));
+
+        assertThat(site("other-user").takeOver(replaced), is(false));
+    }
+
+    @Test
+    public void issueTypesAreKeptByTheSite() throws Exception {
+        RemoteIssueType[] types = { new RemoteIssueType() };
+        JiraAsyncSession async = mock(JiraAsyncSession.class);
+        when(async.getIssueTypes()).thenReturn(Futures.immediateFuture(types));
+        JiraSite replaced = site("jira-user");
+        setSession(replaced, mock(JiraInteractionSession.class));
+
+        assertThat(replaced.getIssueTypes(async).get(), sameInstance(types));
+        assertThat(replaced.getIssueTypes(async).get(), sameInstance(types));
+        JiraSite saved = site("jira-user");
+        saved.takeOver(replaced);
+        assertThat(saved.getIssueTypes(async).get(), sameInstance(types));
+
+        verify(async, times(1)).getIssueTypes();
+    }
+}
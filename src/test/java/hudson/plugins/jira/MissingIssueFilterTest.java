@@ -0,0 +1,56 @@
+package hudson.plugins.jira;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * Test case for {@link MissingIssueFilter}.
+ */
+public class MissingIssueFilterTest {
+
+    @Test
+    public void recordedKeysAreKnownInAnyCase() {
+        MissingIssueFilter filter = new MissingIssueFilter(100, 0.001, 1, TimeUnit.HOURS);
+        filter.add("JENKINS-1");
+
+        assertThat(filter.mightContain("JENKINS-1"), is(true));
+        assertThat(filter.mightContain("jenkins-1"), is(true));
+        assertThat(filter.mightContain("JENKINS-2"), is(false));
+    }
+
+    @Test
+    public void fewOtherKeysAreClaimed() {
+        MissingIssueFilter filter = new MissingIssueFilter(1000, 0.001, 1, TimeUnit.HOURS);
+        for (int i = 0; i < 1000; i++) {
+            filter.add("JENKINS-" + i);
+        }
+        int claimed = 0;
+        for (int i = 1000; i < 11000; i++) {
+            if (filter.mightContain("JENKINS-" + i)) {
+                claimed++;
+            }
+        }
+        assertThat(claimed, lessThan(50));
+    }
+
+    @Test
+    public void oldestKeysAreDroppedWhenFull() {
+        MissingIssueFilter filter = new MissingIssueFilter(2, 0.001, 1, TimeUnit.HOURS);
+        filter.add("JENKINS-1");
+        filter.add("JENKINS-2");
+        filter.add("JENKINS-3");
+
+        // still in the previous generation
+        assertThat(filter.mightContain("JENKINS-1"), is(true));
+
+        filter.add("JENKINS-4");
+        assertThat(filter.mightContain("JENKINS-1"), is(false));
+        assertThat(filter.mightContain("JENKINS-3"), is(true));
+        assertThat(filter.mightContain("JENKINS-4"), is(true));
+    }
+}
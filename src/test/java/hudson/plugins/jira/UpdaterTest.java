@@ -1,10 +1,13 @@
 package hudson.plugins.jira;
 
+import com.atlassian.jira.rest.client.api.RestClientException;
+import com.google.common.base.Optional;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 import hudson.model.*;
 import hudson.plugins.jira.listissuesparameter.JiraIssueParameterValue;
+import hudson.plugins.jira.remote.JiraInteractionSession;
 import hudson.plugins.jira.remote.soap.JiraSoapSession;
 import hudson.plugins.jira.soap.RemoteComment;
 import hudson.plugins.jira.soap.RemoteGroup;
@@ -22,6 +25,7 @@ import org.mockito.stubbing.Answer;
 import javax.xml.rpc.ServiceException;
 
 import java.io.IOException;
+import java.rmi.RemoteException;
 import java.util.*;
 import java.util.regex.Pattern;
 
@@ -266,6 +270,37 @@ public class UpdaterTest {
 
     }
 
+    /**
+     * An issue JIRA fails to look up is neither taken for missing nor dropped, but carried over
+     * together with the issues not looked up yet.
+     */
+    @Test
+    public void testIssueIsCarriedOverWhenJiraFails() throws Exception {
+        RestClientException unavailable = mock(RestClientException.class);
+        when(unavailable.getStatusCode()).thenReturn(Optional.of(503));
+        JiraInteractionSession session = mock(JiraInteractionSession.class);
+        when(session.existsIssue(Mockito.anyString())).thenReturn(Boolean.TRUE);
+        RemoteIssue found = new RemoteIssue();
+        found.setKey("FOO-1");
+        when(session.getIssue("FOO-1")).thenReturn(found);
+        when(session.getIssue("FOO-2")).thenReturn(null);
+        when(session.getIssue("FOO-3")).thenThrow(new RemoteException("Failed to get issue FOO-3", unavailable));
+        JiraSite site = mock(JiraSite.class);
+
+        Set<String> ids = new LinkedHashSet<String>(Arrays.asList("FOO-1", "FOO-2", "FOO-3", "FOO-4"));
+        List<JiraIssue> carriedOver = new ArrayList<JiraIssue>();
+        List<JiraIssue> issues = Updater.getJiraIssues(ids, site, session, System.out, carriedOver);
+
+        Assert.assertEquals(1, issues.size());
+        Assert.assertEquals("FOO-1", issues.get(0).id);
+        Assert.assertEquals(2, carriedOver.size());
+        Assert.assertEquals("FOO-3", carriedOver.get(0).id);
+        Assert.assertEquals("FOO-4", carriedOver.get(1).id);
+        verify(site).recordMissing("FOO-2");
+        verify(site, never()).recordMissing("FOO-3");
+        verify(session, never()).getIssue("FOO-4");
+    }
+
     /**
      * Tests that the default pattern doesn't match strings like
      * 'project-1.1'.
@@ -0,0 +1,87 @@
+package hudson.plugins.jira.listissuesparameter;
+
+import com.atlassian.jira.rest.client.api.RestClientException;
+import com.google.common.base.Optional;
+
+import hudson.plugins.jira.JiraSite;
+import hudson.plugins.jira.remote.JiraInteractionSession;
+import hudson.plugins.jira.soap.RemoteIssue;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.rmi.RemoteException;
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * Test case for the typeahead search of {@link JiraIssueParameterDefinition}.
+ */
+public class JiraIssueParameterDefinitionTest {
+
+    @Test
+    public void testNarrowJqlWithoutText() {
+        Assert.assertEquals("project = FOO", JiraIssueParameterDefinition.narrowJql("project = FOO", null));
+        Assert.assertEquals("project = FOO", JiraIssueParameterDefinition.narrowJql(" project = FOO ", "  "));
+    }
+
+    @Test
+    public void testNarrowJqlBySummary() {
+        Assert.assertEquals("(project = FOO) AND summary ~ \"crash*\"",
+                JiraIssueParameterDefinition.narrowJql("project = FOO", "crash"));
+        Assert.assertEquals("summary ~ \"crash*\"",
+                JiraIssueParameterDefinition.narrowJql("", "crash"));
+    }
+
+    @Test
+    public void testNarrowJqlByKey() {
+        Assert.assertEquals("(project = FOO) AND issuekey = \"FOO-42\"",
+                JiraIssueParameterDefinition.narrowJql("project = FOO", "FOO-42"));
+    }
+
+    @Test
+    public void testNarrowJqlByStartOfKey() {
+        Assert.assertEquals("(project = FOO) AND summary ~ \"FOO-*\"",
+                JiraIssueParameterDefinition.narrowJql("project = FOO", "FOO-"));
+        Assert.assertEquals("(project = FOO) AND summary ~ \"FOO-42*\"",
+                JiraIssueParameterDefinition.narrowJql("project = FOO", "FOO-42", null));
+    }
+
+    @Test
+    public void testSearchForMissingKeyFallsBackToSummary() throws Exception {
+        RestClientException refused = mock(RestClientException.class);
+        when(refused.getStatusCode()).thenReturn(Optional.of(400));
+        JiraInteractionSession session = mock(JiraInteractionSession.class);
+        when(session.getIssuesFromJqlSearch("(project = FOO) AND issuekey = \"FOO-12\"", 0, JiraIssueParameterDefinition.PAGE_SIZE))
+                .thenThrow(new RemoteException("An issue with key 'FOO-12' does not exist", refused));
+        RemoteIssue issue = new RemoteIssue();
+        issue.setKey("FOO-123");
+        when(session.getIssuesFromJqlSearch("(project = FOO) AND summary ~ \"FOO-12*\"", 0, JiraIssueParameterDefinition.PAGE_SIZE))
+                .thenReturn(new RemoteIssue[]{issue});
+        JiraSite site = mock(JiraSite.class);
+        when(site.getName()).thenReturn("http://jira.example.com/missing-key");
+        when(site.getIssuePattern()).thenReturn(JiraSite.DEFAULT_ISSUE_PATTERN);
+        when(site.getSession()).thenReturn(session);
+
+        List<JiraIssueParameterDefinition.Result> page =
+                new JiraIssueParameterDefinition("issue", "", "project = FOO").search(site, "FOO-12", 0);
+
+        Assert.assertEquals(1, page.size());
+        Assert.assertEquals("FOO-123", page.get(0).key);
+    }
+
+    @Test
+    public void testNarrowJqlKeepsOrderBy() {
+        Assert.assertEquals("(project = FOO) AND summary ~ \"crash*\" ORDER BY created DESC",
+                JiraIssueParameterDefinition.narrowJql("project = FOO ORDER BY created DESC", "crash"));
+        Assert.assertEquals("summary ~ \"crash*\" order by key",
+                JiraIssueParameterDefinition.narrowJql("order by key", "crash"));
+    }
+
+    @Test
+    public void testNarrowJqlEscapesQuotes() {
+        Assert.assertEquals("(project = FOO) AND summary ~ \"say \\\"hi\\\"*\"",
+                JiraIssueParameterDefinition.narrowJql("project = FOO", "say \"hi\""));
+    }
+}
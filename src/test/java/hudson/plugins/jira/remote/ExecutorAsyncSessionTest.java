@@ -0,0 +1,82 @@
+package hudson.plugins.jira.remote;
+
+import hudson.plugins.jira.soap.RemoteIssueType;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.rmi.RemoteException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
+
+public class ExecutorAsyncSessionTest {
+
+    private ListeningExecutorService executor;
+    private JiraInteractionSession session;
+    private JiraAsyncSession async;
+
+    @Before
+    public void setUp() {
+        executor = MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
+        session = mock(JiraInteractionSession.class);
+        async = new ExecutorAsyncSession(session, executor);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void answerIsClaimed() throws Exception {
+        RemoteIssueType[] types = new RemoteIssueType[0];
+        when(session.getIssueTypes()).thenReturn(types);
+
+        assertThat(JiraFutures.claim(async.getIssueTypes(), "get the issue types"), sameInstance(types));
+    }
+
+    @Test
+    public void remoteExceptionIsRethrownAsIs() throws Exception {
+        RemoteException failure = new RemoteException("down");
+        when(session.getProjectKeys()).thenThrow(failure);
+
+        try {
+            JiraFutures.claim(async.getProjectKeys(), "get the project keys");
+            fail();
+        } catch (RemoteException e) {
+            assertThat(e, sameInstance(failure));
+        }
+    }
+
+    @Test
+    public void callIsCancelledAtDeadline() throws Exception {
+        when(session.getIssueTypes()).thenAnswer(new Answer<RemoteIssueType[]>() {
+            public RemoteIssueType[] answer(InvocationOnMock invocation) throws Throwable {
+                Thread.sleep(10000);
+                return new RemoteIssueType[0];
+            }
+        });
+
+        ListenableFuture<RemoteIssueType[]> types = JiraFutures.withDeadline(async.getIssueTypes(), 100, TimeUnit.MILLISECONDS);
+        try {
+            JiraFutures.claim(types, "get the issue types");
+            fail();
+        } catch (RemoteException e) {
+            assertThat(e.getCause(), instanceOf(CancellationException.class));
+        }
+        assertThat(types.isCancelled(), is(true));
+    }
+}
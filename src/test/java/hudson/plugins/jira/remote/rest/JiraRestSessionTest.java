@@ -0,0 +1,271 @@
+package hudson.plugins.jira.remote.rest;
+
+import hudson.plugins.jira.remote.JiraTimeouts;
+import hudson.plugins.jira.soap.RemoteComponent;
+import hudson.plugins.jira.soap.RemoteIssue;
+import hudson.plugins.jira.soap.RemoteIssueType;
+import hudson.plugins.jira.soap.RemoteVersion;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.atlassian.jira.rest.client.auth.AnonymousAuthenticationHandler;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that the REST session answers like the SOAP session would, against a stand-in JIRA
+ * which serves canned JSON.
+ */
+public class JiraRestSessionTest {
+
+    private HttpServer server;
+    private JiraRestSession session;
+
+    /**
+     * Canned answers by method and path, e.g. "GET /rest/api/2/project".
+     */
+    private final Map<String, String> answers = new HashMap<String, String>();
+
+    /**
+     * Status of the error answers by method and path, 404 if not given.
+     */
+    private final Map<String, Integer> errors = new HashMap<String, Integer>();
+
+    /**
+     * Requests received, as method, path and body.
+     */
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                String request = exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath();
+                requests.add(request + " " + read(exchange.getRequestBody()));
+
+                if (request.contains("/slow/")) {
+                    try {
+                        Thread.sleep(5000);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                String answer = answers.get(request);
+                byte[] body = (answer != null ? answer : "{\"errorMessages\":[\"not found\"]}").getBytes("UTF-8");
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                Integer error = errors.get(request);
+                exchange.sendResponseHeaders(answer != null ? 200 : error != null ? error : 404, body.length > 0 ? body.length : -1);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+
+        session = session(JiraTimeouts.defaults());
+
+        answers.put("GET /rest/api/2/project", "[{\"key\":\"JENKINS\"},{\"key\":\"core\"}]");
+    }
+
+    private JiraRestSession session(JiraTimeouts timeouts) {
+        URI uri = URI.create("http://localhost:" + server.getAddress().getPort() + "/");
+        return new JiraRestSession(uri, PooledHttpClientFactory.createClient(uri, new AnonymousAuthenticationHandler(), timeouts), timeouts);
+    }
+
+    @After
+    public void stopServer() {
+        session.close();
+        server.stop(0);
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[1024];
+        int n;
+        while ((n = in.read(buf)) > 0) {
+            out.write(buf, 0, n);
+        }
+        return out.toString("UTF-8");
+    }
+
+    @Test
+    public void projectKeysAreUpperCaseAndFetchedOnce() throws Exception {
+        assertThat(session.getProjectKeys(), containsInAnyOrder("JENKINS", "CORE"));
+        assertThat(session.existsIssue("core-1"), is(true));
+        assertThat(session.existsIssue("OTHER-1"), is(false));
+        assertThat(requests, hasSize(1));
+    }
+
+    @Test
+    public void issueHasIdsLikeSoap() throws Exception {
+        answers.put("GET /rest/api/2/issue/JENKINS-1", "{\"id\":\"10001\",\"key\":\"JENKINS-1\",\"fields\":{"
+                + "\"summary\":\"Broken\",\"status\":{\"id\":\"1\",\"name\":\"Open\"},"
+                + "\"issuetype\":{\"id\":\"3\",\"name\":\"Task\"},\"project\":{\"key\":\"JENKINS\"},"
+                + "\"assignee\":{\"name\":\"bob\"},\"fixVersions\":[{\"id\":\"20\",\"name\":\"1.0\",\"released\":true,"
+                + "\"releaseDate\":\"2014-03-01\"}],\"components\":[{\"id\":\"30\",\"name\":\"core\"}]}}");
+
+        RemoteIssue issue = session.getIssue("JENKINS-1");
+        assertThat(issue.getId(), equalTo("10001"));
+        assertThat(issue.getKey(), equalTo("JENKINS-1"));
+        assertThat(issue.getSummary(), equalTo("Broken"));
+        assertThat(issue.getStatus(), equalTo("1"));
+        assertThat(issue.getType(), equalTo("3"));
+        assertThat(issue.getProject(), equalTo("JENKINS"));
+        assertThat(issue.getAssignee(), equalTo("bob"));
+        assertThat(issue.getPriority(), nullValue());
+        assertThat(issue.getFixVersions()[0].getName(), equalTo("1.0"));
+        assertThat(issue.getFixVersions()[0].isReleased(), is(true));
+        assertThat(issue.getComponents()[0].getId(), equalTo("30"));
+    }
+
+    @Test
+    public void missingIssueIsNull() throws Exception {
+        assertThat(session.getIssue("JENKINS-2"), nullValue());
+        assertThat(session.getIssue("OTHER-2"), nullValue());
+    }
+
+    @Test
+    public void errorAnswerIsNotTakenForMissingIssue() throws Exception {
+        errors.put("GET /rest/api/2/issue/JENKINS-3", 503);
+        try {
+            session.getIssue("JENKINS-3");
+            fail();
+        } catch (RemoteException e) {
+            assertThat(RestErrors.getStatusCode(e), equalTo(503));
+        }
+        try {
+            session.getProjectedIssue("JENKINS-3", "summary");
+            fail();
+        } catch (RemoteException e) {
+            assertThat(RestErrors.isNotFound(e), is(false));
+        }
+        assertThat(session.getProjectedIssue("JENKINS-4", "summary"), nullValue());
+    }
+
+    @Test
+    public void refusedCredentialsMarkTheSession() throws Exception {
+        errors.put("GET /rest/api/2/issue/JENKINS-3", 503);
+        errors.put("GET /rest/api/2/issue/JENKINS-4", 401);
+        try {
+            session.getIssue("JENKINS-3");
+            fail();
+        } catch (RemoteException e) {
+            assertThat(session.isUnauthorized(), is(false));
+        }
+        try {
+            session.getIssue("JENKINS-4");
+            fail();
+        } catch (RemoteException e) {
+            assertThat(session.isUnauthorized(), is(true));
+        }
+    }
+
+    @Test
+    public void searchPagesThroughFixVersion() throws Exception {
+        answers.put("POST /rest/api/2/search", "{\"total\":2,\"issues\":[{\"id\":\"1\",\"key\":\"JENKINS-1\"},"
+                + "{\"id\":\"2\",\"key\":\"JENKINS-2\"}]}");
+
+        RemoteIssue[] issues = session.getIssuesWithFixVersion("JENKINS", "1.0");
+        assertThat(issues.length, equalTo(2));
+        assertThat(issues[1].getKey(), equalTo("JENKINS-2"));
+        assertThat(requests.get(0), containsString("fixVersion = \\\"1.0\\\""));
+    }
+
+    @Test
+    public void versionsAndComponents() throws Exception {
+        answers.put("GET /rest/api/2/project/JENKINS/versions",
+                "[{\"id\":\"20\",\"name\":\"1.0\",\"released\":false,\"archived\":true}]");
+        answers.put("GET /rest/api/2/project/JENKINS/components", "[{\"id\":\"30\",\"name\":\"core\"}]");
+
+        RemoteVersion[] versions = session.getVersions("JENKINS");
+        assertThat(versions.length, equalTo(1));
+        assertThat(versions[0].getId(), equalTo("20"));
+        assertThat(versions[0].isReleased(), is(false));
+        assertThat(versions[0].isArchived(), is(true));
+        assertThat(versions[0].getReleaseDate(), nullValue());
+
+        RemoteComponent[] components = session.getComponents("JENKINS");
+        assertThat(components[0].getName(), equalTo("core"));
+    }
+
+    @Test
+    public void issueTypesAreParsed() throws Exception {
+        answers.put("GET /rest/api/2/issuetype", "[{\"id\":\"1\",\"name\":\"Bug\",\"subtask\":false}]");
+
+        RemoteIssueType[] types = session.getIssueTypes();
+        assertThat(types[0].getId(), equalTo("1"));
+        assertThat(types[0].getName(), equalTo("Bug"));
+    }
+
+    @Test
+    public void roleVisibilityWinsOverGroup() throws Exception {
+        answers.put("POST /rest/api/2/issue/JENKINS-1/comment", "{\"id\":\"1\"}");
+
+        session.addComment("JENKINS-1", "hello", "jira-users", "Developers");
+
+        assertThat(requests.get(0), containsString("\"type\":\"role\""));
+        assertThat(requests.get(0), containsString("\"value\":\"Developers\""));
+    }
+
+    @Test
+    public void workflowActionReturnsStatusName() throws Exception {
+        answers.put("GET /rest/api/2/issue/JENKINS-1/transitions",
+                "{\"transitions\":[{\"id\":\"5\",\"name\":\"Resolve Issue\"}]}");
+        answers.put("POST /rest/api/2/issue/JENKINS-1/transitions", "");
+        answers.put("GET /rest/api/2/issue/JENKINS-1", "{\"key\":\"JENKINS-1\",\"fields\":{\"status\":{\"id\":\"5\",\"name\":\"Resolved\"}}}");
+
+        String actionId = session.getActionIdForIssue("JENKINS-1", "resolve issue");
+        assertThat(actionId, equalTo("5"));
+        assertThat(session.getActionIdForIssue("JENKINS-1", "Reopen"), nullValue());
+        assertThat(session.progressWorkflowAction("JENKINS-1", actionId, null), equalTo("Resolved"));
+    }
+
+    @Test
+    public void createdIssueHasWhatWasSent() throws Exception {
+        answers.put("POST /rest/api/2/issue", "{\"id\":\"10002\",\"key\":\"JENKINS-2\"}");
+
+        RemoteIssue issue = session.createIssue("jenkins", "description", "bob", new RemoteComponent[0], "summary");
+
+        assertThat(issue.getKey(), equalTo("JENKINS-2"));
+        assertThat(issue.getProject(), equalTo("JENKINS"));
+        assertThat(issue.getType(), equalTo("1"));
+        assertThat(requests.get(0), containsString("\"assignee\":{\"name\":\"bob\"}"));
+    }
+
+    @Test
+    public void operationIsGivenUpAfterCallTimeout() throws Exception {
+        answers.put("GET /rest/api/2/project/slow/versions", "[]");
+        JiraTimeouts timeouts = new JiraTimeouts(0, 0, 1);
+        JiraRestSession slowSession = session(timeouts);
+        try {
+            slowSession.getVersions("slow");
+            fail();
+        } catch (RemoteException e) {
+            assertThat(e.getMessage(), containsString("Gave up after 1 seconds"));
+        } finally {
+            slowSession.close();
+        }
+        assertThat(timeouts.getTimeoutCounts().get("getVersions"), equalTo(1L));
+    }
+}
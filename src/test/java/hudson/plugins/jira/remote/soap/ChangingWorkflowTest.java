@@ -26,6 +26,7 @@ import static org.apache.commons.lang.RandomStringUtils.randomAlphanumeric;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isNull;
@@ -115,7 +116,7 @@ public class ChangingWorkflowTest {
     @Test
     public void addCommentsOnNonEmptyWorkflowAndNonEmptyComment() throws IOException, ServiceException {
         when(site.getSession()).thenReturn(mockSession);
-        when(mockSession.getIssuesFromJqlSearch(anyString())).thenReturn(new RemoteIssue[]{mock(RemoteIssue.class)});
+        when(mockSession.getIssuesFromJqlSearch(anyString(), anyInt(), anyInt())).thenReturn(new RemoteIssue[]{mock(RemoteIssue.class)});
         when(mockSession.getActionIdForIssue(anyString(),
                 eq(NON_EMPTY_WORKFLOW_LOWERCASE))).thenReturn(randomAlphanumeric(5));
         when(site.progressMatchingIssues(anyString(), anyString(), anyString(), Matchers.any(PrintStream.class)))
@@ -134,7 +135,7 @@ public class ChangingWorkflowTest {
     @Test
     public void addCommentsOnNullWorkflowAndNonEmptyComment() throws IOException, ServiceException {
         when(site.getSession()).thenReturn(mockSession);
-        when(mockSession.getIssuesFromJqlSearch(anyString())).thenReturn(new RemoteIssue[]{mock(RemoteIssue.class)});
+        when(mockSession.getIssuesFromJqlSearch(anyString(), anyInt(), anyInt())).thenReturn(new RemoteIssue[]{mock(RemoteIssue.class)});
         when(site.progressMatchingIssues(anyString(), anyString(), anyString(), Matchers.any(PrintStream.class)))
                 .thenCallRealMethod();
 
@@ -148,7 +149,7 @@ public class ChangingWorkflowTest {
     @Test
     public void dontAddCommentsOnNullWorkflowAndNullComment() throws IOException, ServiceException {
         when(site.getSession()).thenReturn(mockSession);
-        when(mockSession.getIssuesFromJqlSearch(anyString())).thenReturn(new RemoteIssue[]{mock(RemoteIssue.class)});
+        when(mockSession.getIssuesFromJqlSearch(anyString(), anyInt(), anyInt())).thenReturn(new RemoteIssue[]{mock(RemoteIssue.class)});
         when(site.progressMatchingIssues(anyString(), anyString(), anyString(), Matchers.any(PrintStream.class)))
                 .thenCallRealMethod();
 
@@ -0,0 +1,72 @@
+package hudson.plugins.jira.remote.soap;
+
+import hudson.plugins.jira.JiraSite;
+import hudson.plugins.jira.soap.JiraSoapService;
+import hudson.plugins.jira.soap.RemoteIssue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test case for the paged searches of {@link JiraSoapSession}.
+ */
+public class JiraSoapSessionTest {
+    private static final int MATCHES = 350;
+
+    private JiraSoapService service;
+    private JiraSoapSession session;
+
+    @Before
+    public void createSession() throws Exception {
+        service = mock(JiraSoapService.class);
+        when(service.getIssuesFromJqlSearch(anyString(), anyString(), anyInt())).thenAnswer(new Answer<RemoteIssue[]>() {
+            public RemoteIssue[] answer(InvocationOnMock invocation) {
+                int max = (Integer) invocation.getArguments()[2];
+                RemoteIssue[] issues = new RemoteIssue[Math.min(max, MATCHES)];
+                for (int i = 0; i < issues.length; i++) {
+                    issues[i] = new RemoteIssue();
+                    issues[i].setKey("FOO-" + i);
+                }
+                return issues;
+            }
+        });
+        session = new JiraSoapSession(mock(JiraSite.class), "http://jira.example.com/", service, "TOKEN");
+    }
+
+    @Test
+    public void pagesAreNotFetchedFromTheStartEachTime() throws Exception {
+        int startAt = 0;
+        RemoteIssue[] page;
+        do {
+            page = session.getIssuesFromJqlSearch("project = FOO", startAt, 100);
+            for (int i = 0; i < page.length; i++) {
+                assertThat(page[i].getKey(), equalTo("FOO-" + (startAt + i)));
+            }
+            startAt += page.length;
+        } while (page.length == 100);
+
+        assertThat(startAt, equalTo(MATCHES));
+        // the limit doubles, rather than growing by a page
+        verify(service).getIssuesFromJqlSearch("TOKEN", "project = FOO", 100);
+        verify(service).getIssuesFromJqlSearch("TOKEN", "project = FOO", 200);
+        verify(service).getIssuesFromJqlSearch("TOKEN", "project = FOO", 400);
+        verifyNoMoreInteractions(service);
+    }
+
+    @Test
+    public void firstPageIsFetchedAgain() throws Exception {
+        session.getIssuesFromJqlSearch("project = FOO", 0, 100);
+        session.getIssuesFromJqlSearch("project = FOO", 0, 100);
+
+        verify(service, times(2)).getIssuesFromJqlSearch(eq("TOKEN"), eq("project = FOO"), eq(100));
+    }
+}
@@ -0,0 +1,184 @@
+package hudson.plugins.jira.remote.soap;
+
+import hudson.plugins.jira.remote.JiraTimeouts;
+import hudson.plugins.jira.soap.RemoteComment;
+import hudson.plugins.jira.soap.RemoteIssue;
+import hudson.plugins.jira.soap.RemotePermissionException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks the streaming SOAP client against a stand-in JIRA which serves canned answers,
+ * shaped like those of Axis with multi-references.
+ */
+public class StreamingSoapClientTest {
+
+    private static final String ENVELOPE = "<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+            + "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\""
+            + " xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">"
+            + "<soapenv:Body>%s</soapenv:Body></soapenv:Envelope>";
+
+    private HttpServer server;
+    private StreamingSoapClient client;
+
+    private volatile int status = 200;
+    private volatile String answer;
+
+    /**
+     * Bodies of the requests received.
+     */
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.add(exchange.getRequestURI().getPath() + " " + read(exchange.getRequestBody()));
+                byte[] body = String.format(ENVELOPE, answer).getBytes("UTF-8");
+                exchange.getResponseHeaders().set("Content-Type", "text/xml;charset=utf-8");
+                exchange.sendResponseHeaders(status, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+
+        URL url = new URL("http://localhost:" + server.getAddress().getPort() + "/");
+        client = new StreamingSoapClient(url, "user", "secret", false, JiraTimeouts.defaults());
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[1024];
+        int n;
+        while ((n = in.read(buf)) > 0) {
+            out.write(buf, 0, n);
+        }
+        return out.toString("UTF-8");
+    }
+
+    private static String issue(String ref, String key, String versionsRef) {
+        return "<multiRef id=\"" + ref + "\" xsi:type=\"ns2:RemoteIssue\" xmlns:ns2=\"http://beans.soap.rpc.jira.atlassian.com\""
+                + " xmlns:soapenc=\"http://schemas.xmlsoap.org/soap/encoding/\">"
+                + "<affectsVersions soapenc:arrayType=\"ns2:RemoteVersion[0]\" xsi:type=\"soapenc:Array\"/>"
+                + "<assignee xsi:type=\"xsd:string\">bob</assignee>"
+                + "<customFieldValues soapenc:arrayType=\"ns2:RemoteCustomFieldValue[1]\" xsi:type=\"soapenc:Array\">"
+                + "<customFieldValues><customfieldId>customfield_1</customfieldId></customFieldValues></customFieldValues>"
+                + "<description xsi:nil=\"true\"/>"
+                + "<fixVersions soapenc:arrayType=\"ns2:RemoteVersion[1]\" xsi:type=\"soapenc:Array\">"
+                + "<fixVersions href=\"#" + versionsRef + "\"/></fixVersions>"
+                + "<key xsi:type=\"xsd:string\">" + key + "</key>"
+                + "<status xsi:type=\"xsd:string\">1</status>"
+                + "<summary xsi:type=\"xsd:string\">Fix &amp; test " + key + "</summary>"
+                + "</multiRef>";
+    }
+
+    private static String version(String ref) {
+        return "<multiRef id=\"" + ref + "\" xsi:type=\"ns3:RemoteVersion\" xmlns:ns3=\"http://beans.soap.rpc.jira.atlassian.com\">"
+                + "<archived xsi:type=\"xsd:boolean\">false</archived>"
+                + "<id xsi:type=\"xsd:string\">10000</id>"
+                + "<name xsi:type=\"xsd:string\">1.0</name>"
+                + "<releaseDate xsi:type=\"xsd:dateTime\">2014-03-01T00:00:00.000Z</releaseDate>"
+                + "<released xsi:type=\"xsd:boolean\">true</released>"
+                + "</multiRef>";
+    }
+
+    @Test
+    public void issueIsReadFromMultiReferences() throws Exception {
+        answer = "<ns1:getIssueResponse xmlns:ns1=\"http://soap.rpc.jira.atlassian.com\">"
+                + "<getIssueReturn href=\"#id0\"/></ns1:getIssueResponse>"
+                + issue("id0", "TEST-1", "id1") + version("id1");
+
+        RemoteIssue issue = client.getIssue("token", "TEST-1");
+
+        assertThat(issue.getKey(), is("TEST-1"));
+        assertThat(issue.getSummary(), is("Fix & test TEST-1"));
+        assertThat(issue.getDescription(), nullValue());
+        assertThat(issue.getAssignee(), is("bob"));
+        assertThat(issue.getStatus(), is("1"));
+        assertThat(issue.getFixVersions()[0].getName(), is("1.0"));
+        assertThat(issue.getFixVersions()[0].isReleased(), is(true));
+        assertThat(issue.getFixVersions()[0].getReleaseDate(), notNullValue());
+        assertThat(issue.getComponents().length, is(0));
+
+        assertThat(requests.get(0), startsWith("/rpc/soap/jirasoapservice-v2 "));
+        assertThat(requests.get(0), containsString("getIssue"));
+        assertThat(requests.get(0), containsString(">TEST-1</in1>"));
+    }
+
+    @Test
+    public void searchResolvesEveryIssue() throws Exception {
+        answer = "<ns1:getIssuesFromJqlSearchResponse xmlns:ns1=\"http://soap.rpc.jira.atlassian.com\">"
+                + "<getIssuesFromJqlSearchReturn soapenc:arrayType=\"ns2:RemoteIssue[2]\" xsi:type=\"soapenc:Array\""
+                + " xmlns:soapenc=\"http://schemas.xmlsoap.org/soap/encoding/\" xmlns:ns2=\"http://beans.soap.rpc.jira.atlassian.com\">"
+                + "<getIssuesFromJqlSearchReturn href=\"#id0\"/><getIssuesFromJqlSearchReturn href=\"#id1\"/>"
+                + "</getIssuesFromJqlSearchReturn></ns1:getIssuesFromJqlSearchResponse>"
+                + issue("id0", "TEST-1", "id2") + issue("id1", "TEST-2", "id2") + version("id2");
+
+        RemoteIssue[] issues = client.getIssuesFromJqlSearch("token", "project = TEST", 50);
+
+        assertThat(issues.length, is(2));
+        assertThat(issues[0].getKey(), is("TEST-1"));
+        assertThat(issues[1].getKey(), is("TEST-2"));
+        assertThat(issues[1].getFixVersions()[0].getId(), is("10000"));
+        assertThat(requests.get(0), containsString(">50</in2>"));
+    }
+
+    @Test
+    public void commentIsSentWithVisibility() throws Exception {
+        answer = "<ns1:addCommentResponse xmlns:ns1=\"http://soap.rpc.jira.atlassian.com\"/>";
+        RemoteComment comment = new RemoteComment();
+        comment.setBody("built <ok>");
+        comment.setRoleLevel("Developers");
+
+        client.addComment("token", "TEST-1", comment);
+
+        assertThat(requests.get(0), containsString("built &lt;ok"));
+        assertThat(requests.get(0), containsString(">Developers</roleLevel>"));
+    }
+
+    @Test
+    public void permissionFaultIsThrownLikeAxisDoes() throws Exception {
+        status = 500;
+        answer = "<soapenv:Fault><faultcode>soapenv:Server.userException</faultcode>"
+                + "<faultstring>com.atlassian.jira.rpc.exception.RemotePermissionException: no permission</faultstring>"
+                + "<detail><com.atlassian.jira.rpc.exception.RemotePermissionException xmlns:ns1=\"http://exception.rpc.jira.atlassian.com\"/>"
+                + "<ns2:hostname xmlns:ns2=\"http://xml.apache.org/axis/\">jira</ns2:hostname></detail>"
+                + "</soapenv:Fault>";
+
+        try {
+            client.getIssue("token", "TEST-1");
+            fail();
+        } catch (RemoteException e) {
+            assertThat(e, instanceOf(RemotePermissionException.class));
+        }
+    }
+}